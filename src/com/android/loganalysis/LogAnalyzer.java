@@ -30,23 +30,54 @@ import com.android.loganalysis.parser.MemoryHealthParser;
 import com.android.loganalysis.parser.MonkeyLogParser;
 import com.android.loganalysis.rule.RuleEngine;
 import com.android.loganalysis.rule.RuleEngine.RuleType;
+import com.android.loganalysis.util.JsonWriter;
+import com.android.loganalysis.util.LogReaderUtil;
+import com.android.loganalysis.util.MappedLineReader;
+import com.android.loganalysis.util.SectionIndex;
 import com.android.loganalysis.util.config.ArgsOptionParser;
 import com.android.loganalysis.util.config.ConfigurationException;
 import com.android.loganalysis.util.config.Option;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A command line tool to parse a bugreport, logcat, or kernel log file and return the output.
@@ -62,10 +93,12 @@ public class LogAnalyzer {
         RAW, ANALYSIS;
     }
 
-    @Option(name="bugreport", description="The path to the bugreport")
+    @Option(name="bugreport", description="The path to the bugreport, which may be a bugreport "
+            + "zip, gzipped, or - for stdin")
     private String mBugreportPath = null;
 
-    @Option(name="logcat", description="The path to the logcat")
+    @Option(name="logcat", description="The path to the logcat, which may be gzipped, or - for "
+            + "stdin")
     private String mLogcatPath = null;
 
     @Option(name="kernel-log", description="The path to the kernel log")
@@ -83,16 +116,106 @@ public class LogAnalyzer {
     @Option(name="rule-type", description="The type of rules to be applied")
     private RuleType mRuleType = RuleType.ALL;
 
+    @Option(name="rule-timeout", description="The number of milliseconds to wait for each rule "
+            + "before reporting that it timed out, or 0 to wait for every rule")
+    private long mRuleTimeoutMs = 0;
+
+    @Option(name="rule-runtimes", description="Add the name of each rule and how long it took to "
+            + "the analysis")
+    private boolean mRuleRuntimes = false;
+
     @Option(name="print", description="Print the result type")
     private List<ResultType> mResultType = new ArrayList<ResultType>();
 
     @Option(name="events-log", description="The path to the events log")
     private String mEventsLogPath = null;
 
+    @Option(name="parallel", description="Parse and print the bugreport sections in parallel, "
+            + "or parse the logcat in chunks in parallel")
+    private boolean mParallel = false;
+
+    @Option(name="index", description="Read the section index of each bugreport from FILE.idx, "
+            + "or write it if it is missing or out of date")
+    private boolean mUseIndex = false;
+
+    @Option(name="lazy", description="Only parse the dumpsys, activity service, memory info and "
+            + "top sections of the bugreport if they are printed or analyzed.  Implies --index")
+    private boolean mLazy = false;
+
+    @Option(name="sections", description="A comma separated list of the bugreport sections to "
+            + "parse, such as system-log,kernel-log,dumpsys:batterystats.  All sections are "
+            + "parsed by default")
+    private String mSections = null;
+
+    @Option(name="batch-dir", description="The path to a directory of bugreports to analyze, "
+            + "printing one line of JSON per bugreport")
+    private String mBatchDir = null;
+
+    @Option(name="batch-list", description="The path to a file listing bugreports to analyze, "
+            + "one per line, printing one line of JSON per bugreport")
+    private String mBatchList = null;
+
+    @Option(name="threads", description="The number of bugreports to analyze at once in batch "
+            + "or service mode")
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name="service-port", description="Run as a service which analyzes bugreports posted "
+            + "to http://127.0.0.1:PORT/analyze, or 0 to pick a free port")
+    private Integer mServicePort = null;
+
+    @Option(name="service-root", description="Allow the path query parameter in service mode, "
+            + "for bugreports under this directory only")
+    private String mServiceRoot = null;
+
     /** Constant for JSON output */
     private static final String RAW_DATA = "RAW";
     /** Constant for JSON output */
     private static final String ANALYSIS_DATA = "ANALYSIS";
+    /** Constant for JSON output in batch mode */
+    private static final String FILE_DATA = "FILE";
+    /** Constant for JSON output in batch mode */
+    private static final String RESULT_DATA = "RESULT";
+    /** Constant for JSON output in batch mode */
+    private static final String ERROR_DATA = "ERROR";
+
+    /** How long an idle thread of the rule executor is kept */
+    private static final long RULE_THREAD_KEEP_ALIVE_S = 60;
+
+    /** The path which bugreports are posted to in service mode */
+    private static final String SERVICE_PATH = "/analyze";
+
+    /** The {@link BugreportParser} of each thread in batch or service mode */
+    private final ThreadLocal<BugreportParser> mBugreportParsers =
+            new ThreadLocal<BugreportParser>() {
+        @Override
+        protected BugreportParser initialValue() {
+            return new BugreportParser();
+        }
+    };
+
+    /** The HTTP server in service mode */
+    private HttpServer mServer = null;
+    /** The executor which handles the requests in service mode */
+    private ExecutorService mServiceExecutor = null;
+
+    /** The executor which applies the rules, from {@link #getRuleExecutor()} */
+    private ExecutorService mRuleExecutor = null;
+
+    /**
+     * Class for storing the result of analyzing a bugreport in batch mode.
+     */
+    private static class BatchResult {
+        public int mIndex;
+        public File mFile;
+        public long mTimeMs = 0;
+        public String mError = null;
+        public String mJson = null;
+
+        public BatchResult(int index, File file) {
+            mIndex = index;
+            mFile = file;
+        }
+    }
 
     /**
      * Run the command line tool
@@ -111,17 +234,39 @@ public class LogAnalyzer {
         }
 
         BufferedReader reader = null;
+        MappedLineReader mappedReader = null;
         try {
+            if (mBatchDir != null || mBatchList != null) {
+                runBatch(getBatchFiles());
+                return;
+            }
+
+            if (mServicePort != null) {
+                runService();
+                return;
+            }
+
             if (mBugreportPath != null) {
-                reader = getBufferedReader(mBugreportPath);
-                BugreportItem bugreport = new BugreportParser().parse(reader);
+                BugreportItem bugreport = parseBugreport(new File(mBugreportPath));
                 printBugreport(bugreport);
                 return;
             }
 
             if (mLogcatPath != null) {
-                reader = getBufferedReader(mLogcatPath);
-                LogcatItem logcat = new LogcatParser().parse(reader);
+                LogcatParser parser = new LogcatParser();
+                if (mParallel) {
+                    parser.setExecutor(ForkJoinPool.commonPool());
+                }
+                LogcatItem logcat;
+                if (LogReaderUtil.isStream(mLogcatPath)) {
+                    reader = getBufferedReader(mLogcatPath);
+                    logcat = parser.parse(reader);
+                } else if (mParallel) {
+                    logcat = parser.parse(new File(mLogcatPath), ForkJoinPool.commonPool());
+                } else {
+                    mappedReader = new MappedLineReader(new File(mLogcatPath));
+                    logcat = parser.parse(mappedReader);
+                }
                 printLogcat(logcat);
                 return;
             }
@@ -162,12 +307,441 @@ public class LogAnalyzer {
             System.err.println(e.getMessage());
         } finally {
             close(reader);
+            close(mappedReader);
         }
 
         // Should never reach here.
         printUsage();
     }
 
+    /**
+     * Get a {@link BugreportParser} with the options set on the command line.  Each thread reuses
+     * its own parser, which is reset before each bugreport.
+     */
+    private BugreportParser getBugreportParser() {
+        BugreportParser parser = mBugreportParsers.get();
+        parser.reset();
+        parser.setParallel(mParallel);
+        parser.setLazy(mLazy);
+        parser.setSections(getSections());
+        return parser;
+    }
+
+    /**
+     * Get the bugreport sections to parse.  These are the sections selected by
+     * {@code --sections}, and the sections which the rules read if the analysis is printed.  If
+     * only the analysis is printed, the sections which the rules read are enough.
+     *
+     * @return The names of the sections, or null if all sections are parsed.
+     */
+    private Set<String> getSections() {
+        Set<String> sections = null;
+        if (mSections != null) {
+            sections = new HashSet<String>();
+            for (String section : mSections.split(",")) {
+                if (!section.trim().isEmpty()) {
+                    sections.add(section.trim());
+                }
+            }
+        }
+
+        if (mResultType.contains(ResultType.ANALYSIS)) {
+            Set<String> ruleSections = RuleEngine.getRequiredSections(mRuleType);
+            if (ruleSections == null) {
+                return null;
+            } else if (sections != null) {
+                sections.addAll(ruleSections);
+            } else if (new HashSet<ResultType>(mResultType).size() == 1) {
+                sections = ruleSections;
+            }
+        }
+        return sections;
+    }
+
+    /**
+     * Parse a bugreport file, using its saved {@link SectionIndex} if {@code --index} is set.  A
+     * {@link SectionIndex} is also needed to parse sections lazily with {@code --lazy}, so
+     * {@code --lazy} saves and reuses the index too.  Building the index reads the whole file, so
+     * building it on every run would cost more than the sections which are not parsed.  A
+     * compressed bugreport or stdin is parsed as it is read, and does not use an index.
+     */
+    BugreportItem parseBugreport(File file) throws IOException {
+        BugreportParser parser = getBugreportParser();
+        if (LogReaderUtil.isStream(file.getPath())) {
+            // Compressed bugreports and stdin are parsed as they are read, without an index.
+            BufferedReader input = getBufferedReader(file.getPath());
+            try {
+                return parser.parse(input);
+            } finally {
+                input.close();
+            }
+        }
+        MappedLineReader reader = new MappedLineReader(file);
+        try {
+            if (mUseIndex || mLazy) {
+                try {
+                    return parser.parse(reader, getSectionIndex(parser, file));
+                } catch (SectionIndex.StaleIndexException e) {
+                    // The file was changed without changing its length or modification time, so
+                    // the saved index is out of date.  Index the file again and parse it again.
+                    SectionIndex.getIndexFile(file).delete();
+                    parser = getBugreportParser();
+                    return parser.parse(reader, getSectionIndex(parser, file));
+                }
+            }
+            return parser.parse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Load the saved {@link SectionIndex} of a bugreport, or build and save it if it is missing or
+     * out of date.
+     */
+    private SectionIndex getSectionIndex(BugreportParser parser, File file) throws IOException {
+        File indexFile = SectionIndex.getIndexFile(file);
+        if (indexFile.exists()) {
+            try {
+                SectionIndex index = SectionIndex.load(indexFile);
+                if (index.isValidFor(file)) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // Rebuild the index below.
+            }
+        }
+
+        SectionIndex index = parser.buildIndex(file);
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            System.err.println(String.format("Could not save the section index: %s",
+                    e.getMessage()));
+        }
+        return index;
+    }
+
+    /**
+     * Start an HTTP server on the loopback interface which analyzes bugreports.  The server keeps
+     * running after this method returns, so the parsers and patterns stay loaded between
+     * requests.
+     */
+    private void runService() throws IOException {
+        mServer = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), mServicePort), 0);
+        mServer.createContext(SERVICE_PATH, new AnalyzeHandler());
+        mServiceExecutor = Executors.newFixedThreadPool(Math.max(1, mThreads));
+        mServer.setExecutor(mServiceExecutor);
+        mServer.start();
+        System.err.println(String.format("Listening on http://127.0.0.1:%d%s",
+                mServer.getAddress().getPort(), SERVICE_PATH));
+    }
+
+    /**
+     * Stop the HTTP server started by {@link #runService()}.  Exposed for unit testing.
+     */
+    void stopService() {
+        if (mServer != null) {
+            mServer.stop(0);
+            mServiceExecutor.shutdownNow();
+            mServer = null;
+            mServiceExecutor = null;
+        }
+    }
+
+    /**
+     * Handles a request to analyze a bugreport in service mode.
+     * <p>
+     * The bugreport is either the file named by the {@code path} query parameter, or the body of
+     * the request.  The response is the same JSON that {@code --bugreport} prints, or an object
+     * with an {@code ERROR} if the bugreport could not be analyzed.
+     * </p><p>
+     * Since any web page can post to the loopback interface, requests with an {@code Origin} or
+     * with a {@code Host} other than 127.0.0.1 or localhost are rejected, and the {@code path}
+     * parameter is only allowed for files under {@code --service-root}.
+     * </p>
+     */
+    private class AnalyzeHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendError(exchange, 405, "Bugreports must be sent with POST");
+                    return;
+                }
+                if (exchange.getRequestHeaders().containsKey("Origin")) {
+                    sendError(exchange, 403, "Requests from web pages are not allowed");
+                    return;
+                }
+                if (!isLocalHost(exchange)) {
+                    sendError(exchange, 403, "The Host must be 127.0.0.1 or localhost");
+                    return;
+                }
+
+                BugreportItem bugreport;
+                JSONArray analysis;
+                String path = getQueryParameter(exchange.getRequestURI(), "path");
+                File file = null;
+                if (path != null) {
+                    file = getServiceFile(path);
+                    if (file == null) {
+                        sendError(exchange, 403, String.format(
+                                "%s is not under the --service-root directory", path));
+                        return;
+                    }
+                }
+                try {
+                    if (file != null) {
+                        bugreport = parseBugreport(file);
+                    } else {
+                        bugreport = getBugreportParser().parse(new BufferedReader(
+                                new InputStreamReader(exchange.getRequestBody(),
+                                StandardCharsets.UTF_8)));
+                    }
+                    analysis = getPrintedAnalysis(bugreport);
+                } catch (FileNotFoundException e) {
+                    sendError(exchange, 404, e.getMessage());
+                    return;
+                } catch (Throwable t) {
+                    if (isFatal(t)) {
+                        throw (VirtualMachineError) t;
+                    }
+                    sendError(exchange, 500, t.toString());
+                    return;
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, 0);
+                JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                        exchange.getResponseBody(), StandardCharsets.UTF_8)));
+                writeBugreport(bugreport, analysis, writer);
+                writer.flush();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void sendError(HttpExchange exchange, int status, String message)
+                throws IOException {
+            StringWriter buffer = new StringWriter();
+            new JsonWriter(buffer).beginObject().name(ERROR_DATA).value(message).endObject();
+            byte[] body = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+
+        /**
+         * Check that the {@code Host} of the request is 127.0.0.1 or localhost with the port of
+         * the server, so that a web page cannot reach the service through DNS rebinding.
+         */
+        private boolean isLocalHost(HttpExchange exchange) {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            if (host == null) {
+                return false;
+            }
+            final int port = exchange.getLocalAddress().getPort();
+            return host.equals(String.format("127.0.0.1:%d", port)) ||
+                    host.equalsIgnoreCase(String.format("localhost:%d", port));
+        }
+
+        /**
+         * Get the file named by the {@code path} parameter, relative to {@code --service-root},
+         * or null if there is no service root or the file is not under it.
+         */
+        private File getServiceFile(String path) throws IOException {
+            if (mServiceRoot == null) {
+                return null;
+            }
+            File root = new File(mServiceRoot).getCanonicalFile();
+            File file = new File(path);
+            if (!file.isAbsolute()) {
+                file = new File(root, path);
+            }
+            file = file.getCanonicalFile();
+            for (File parent = file.getParentFile(); parent != null;
+                    parent = parent.getParentFile()) {
+                if (parent.equals(root)) {
+                    return file;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get the decoded value of a query parameter, or null if it is not set.
+         */
+        private String getQueryParameter(URI uri, String name) throws IOException {
+            String query = uri.getRawQuery();
+            if (query == null) {
+                return null;
+            }
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0 && name.equals(parameter.substring(0, equals))) {
+                    return URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Get the bugreports to analyze in batch mode, from either the batch directory or the batch
+     * list.  The section indexes which {@code --index} saves next to the bugreports are not
+     * bugreports, so they are skipped in the batch directory.
+     */
+    private List<File> getBatchFiles() throws IOException {
+        List<File> files = new ArrayList<File>();
+        if (mBatchDir != null) {
+            File[] children = new File(mBatchDir).listFiles();
+            if (children == null) {
+                throw new FileNotFoundException(String.format("%s is not a directory", mBatchDir));
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isFile() && !SectionIndex.isIndexFile(child)) {
+                    files.add(child);
+                }
+            }
+        } else {
+            BufferedReader reader = getBufferedReader(mBatchList);
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        files.add(new File(line.trim()));
+                    }
+                }
+            } finally {
+                close(reader);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Analyze bugreports with a pool of workers.  A line of JSON is printed to stdout for each
+     * bugreport as soon as it has been analyzed, and a summary of the time taken for each
+     * bugreport and any failures is printed to stderr at the end.
+     */
+    private void runBatch(List<File> files) throws IOException {
+        final long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, mThreads));
+        CompletionService<BatchResult> completionService =
+                new ExecutorCompletionService<BatchResult>(executor);
+        BatchResult[] results = new BatchResult[files.size()];
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                final BatchResult result = new BatchResult(i, files.get(i));
+                completionService.submit(new Callable<BatchResult>() {
+                    @Override
+                    public BatchResult call() {
+                        analyzeBatchFile(result);
+                        return result;
+                    }
+                });
+            }
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+            for (int i = 0; i < files.size(); i++) {
+                BatchResult result = completionService.take().get();
+                out.write(result.mJson);
+                out.write(System.lineSeparator());
+                out.flush();
+                result.mJson = null;
+                results[result.mIndex] = result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch interrupted");
+        } catch (ExecutionException e) {
+            // analyzeBatchFile() records the failure of a single bugreport, so this is an error
+            // in the JVM itself.
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            printBatchSummary(results, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Parse and analyze a single bugreport in batch mode, storing the line of JSON to print in
+     * the result.  If the bugreport could not be analyzed, the JSON contains the error instead.
+     * <p>
+     * A {@link StackOverflowError} or {@link OutOfMemoryError} is also recorded as a failure of the
+     * bugreport, since a pathological regex or a huge bugreport only affects the bugreport being
+     * parsed, and the stack and memory it used are released once it has failed.
+     * </p>
+     */
+    private void analyzeBatchFile(BatchResult result) {
+        final long start = System.currentTimeMillis();
+        StringWriter buffer = new StringWriter();
+        try {
+            BugreportItem bugreport = parseBugreport(result.mFile);
+            JSONArray analysis = getPrintedAnalysis(bugreport);
+
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.beginObject();
+            writer.name(FILE_DATA).value(result.mFile.getPath());
+            writer.name(RESULT_DATA);
+            writeBugreport(bugreport, analysis, writer);
+            writer.endObject();
+        } catch (Throwable t) {
+            if (isFatal(t)) {
+                throw (VirtualMachineError) t;
+            }
+            result.mError = t.toString();
+            buffer = new StringWriter();
+            try {
+                new JsonWriter(buffer).beginObject()
+                        .name(FILE_DATA).value(result.mFile.getPath())
+                        .name(ERROR_DATA).value(result.mError)
+                        .endObject();
+            } catch (IOException ioe) {
+                // Ignore, since a StringWriter does not throw
+            }
+        }
+        result.mJson = buffer.toString();
+        result.mTimeMs = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Check if an error thrown while analyzing a single bugreport should stop the batch or the
+     * service, rather than being reported as a failure of the bugreport.  Only the
+     * {@link VirtualMachineError}s other than {@link StackOverflowError} and
+     * {@link OutOfMemoryError} are fatal.
+     */
+    private static boolean isFatal(Throwable t) {
+        return t instanceof VirtualMachineError && !(t instanceof StackOverflowError) &&
+                !(t instanceof OutOfMemoryError);
+    }
+
+    /**
+     * Print the time taken for each bugreport in batch mode, and any failures, to stderr.
+     */
+    private void printBatchSummary(BatchResult[] results, long totalTimeMs) {
+        int analyzed = 0;
+        int failed = 0;
+        for (BatchResult result : results) {
+            if (result == null) {
+                continue;
+            }
+            analyzed++;
+            if (result.mError == null) {
+                System.err.println(String.format("%s\tOK\t%d ms", result.mFile.getPath(),
+                        result.mTimeMs));
+            } else {
+                failed++;
+                System.err.println(String.format("%s\tFAILED\t%d ms\t%s",
+                        result.mFile.getPath(), result.mTimeMs, result.mError));
+            }
+        }
+        System.err.println(String.format("Analyzed %d of %d bugreports, %d failed, in %d ms",
+                analyzed, results.length, failed, totalTimeMs));
+    }
+
     private void printMemoryHealthLog(MemoryHealthItem item) {
         System.out.println(item.toJson().toString());
     }
@@ -177,47 +751,79 @@ public class LogAnalyzer {
      */
     private void printBugreport(BugreportItem bugreport) {
         if (OutputFormat.JSON.equals(mOutputFormat)) {
-            if (mResultType.size() == 0) {
-                printJson(bugreport);
-            } else if (mResultType.size() == 1) {
-                switch (mResultType.get(0)) {
+            JSONArray analysis = getPrintedAnalysis(bugreport);
+            JsonWriter writer = createJsonWriter();
+            try {
+                writeBugreport(bugreport, analysis, writer);
+                endJson(writer);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            } finally {
+                shutdown(writer);
+            }
+        }
+    }
+
+    /**
+     * Get the analysis of the bugreport if it should be printed.  The analysis is done before
+     * any output is written, so that failures in the rules do not leave partial output.
+     *
+     * @return The analysis, or null if it is not printed.
+     */
+    private JSONArray getPrintedAnalysis(BugreportItem bugreport) {
+        return mResultType.contains(ResultType.ANALYSIS) ? getBugreportAnalysis(bugreport) : null;
+    }
+
+    /**
+     * Write the result types of the bugreport which should be printed as JSON.
+     *
+     * @param analysis The analysis from {@link #getPrintedAnalysis(BugreportItem)}.
+     */
+    private void writeBugreport(BugreportItem bugreport, JSONArray analysis, JsonWriter writer)
+            throws IOException {
+        if (mResultType.size() == 0) {
+            bugreport.writeJson(writer);
+        } else if (mResultType.size() == 1) {
+            switch (mResultType.get(0)) {
+                case RAW:
+                    bugreport.writeJson(writer);
+                    break;
+                case ANALYSIS:
+                    writer.value(analysis.length() > 0 ? analysis : new JSONObject());
+                    break;
+                default:
+                    // should not get here
+                    writer.value(new JSONObject());
+                    break;
+            }
+        } else {
+            writer.beginObject();
+            for (ResultType resultType : new LinkedHashSet<ResultType>(mResultType)) {
+                switch (resultType) {
                     case RAW:
-                        printJson(bugreport);
+                        writer.name(RAW_DATA);
+                        bugreport.writeJson(writer);
                         break;
                     case ANALYSIS:
-                        printBugreportAnalysis(getBugreportAnalysis(bugreport));
+                        writer.name(ANALYSIS_DATA).value(analysis);
                         break;
                     default:
                         // should not get here
-                        return;
-                }
-            } else {
-                JSONObject result = new JSONObject();
-                try {
-                    for (ResultType resultType : mResultType) {
-                        switch (resultType) {
-                            case RAW:
-                                result.put(RAW_DATA, bugreport.toJson());
-                                break;
-                            case ANALYSIS:
-                                result.put(ANALYSIS_DATA, getBugreportAnalysis(bugreport));
-                                break;
-                            default:
-                                // should not get here
-                                break;
-                        }
-                    }
-                } catch (JSONException e) {
-                    // Ignore
+                        break;
                 }
-                printJson(result);
             }
+            writer.endObject();
         }
     }
 
     private JSONArray getBugreportAnalysis(BugreportItem bugreport) {
         RuleEngine ruleEngine = new RuleEngine(bugreport);
         ruleEngine.registerRules(mRuleType);
+        ruleEngine.setRecordRuntimes(mRuleRuntimes);
+        ruleEngine.setTimeout(mRuleTimeoutMs);
+        if (mParallel || mRuleTimeoutMs > 0) {
+            ruleEngine.setExecutor(getRuleExecutor());
+        }
         ruleEngine.executeRules();
         if (ruleEngine.getAnalysis() != null) {
             return ruleEngine.getAnalysis();
@@ -226,12 +832,36 @@ public class LogAnalyzer {
         }
     }
 
-    private void printBugreportAnalysis(JSONArray analysis) {
-        if (analysis != null && analysis.length() > 0) {
-            System.out.println(analysis.toString());
-        } else {
-            System.out.println(new JSONObject().toString());
+    /**
+     * Get the executor which applies the rules, which is shared by all bugreports in batch or
+     * service mode.
+     * <p>
+     * There is a thread for each rule of each bugreport which can be analyzed at once, so the
+     * timeout of a rule starts when it is submitted.  A timed out rule which ignores being
+     * interrupted keeps its thread, so the pool is bounded to stop such threads from piling up
+     * in service mode.  Once they fill the pool, rules wait for a thread and time out instead.
+     * The threads are daemons so that a rule which timed out does not keep the JVM running.
+     * </p>
+     */
+    private synchronized ExecutorService getRuleExecutor() {
+        if (mRuleExecutor == null) {
+            RuleEngine ruleEngine = new RuleEngine(new BugreportItem());
+            ruleEngine.registerRules(mRuleType);
+            final int threads = Math.max(1, mThreads) * Math.max(1, ruleEngine.getRuleCount());
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    RULE_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "rule");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            mRuleExecutor = executor;
         }
+        return mRuleExecutor;
     }
 
     /**
@@ -275,13 +905,54 @@ public class LogAnalyzer {
     }
 
     /**
-     * Print an {@link IItem} to stdout.
+     * Print an {@link IItem} to stdout.  The JSON is written as it is generated, so the whole
+     * output does not need to fit in memory.
      */
     private void printJson(IItem item) {
-        if (item != null && item.toJson() != null) {
-            printJson(item.toJson());
-        } else {
+        if (item == null) {
             printJson(new JSONObject());
+            return;
+        }
+        JsonWriter writer = createJsonWriter();
+        try {
+            item.writeJson(writer);
+            endJson(writer);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        } finally {
+            shutdown(writer);
+        }
+    }
+
+    /**
+     * Create a {@link JsonWriter} which writes to stdout.  If sections should be handled in
+     * parallel, the writer renders them concurrently.
+     */
+    private JsonWriter createJsonWriter() {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        if (mParallel) {
+            writer.setExecutor(Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors()));
+        }
+        return writer;
+    }
+
+    /**
+     * End the output of a {@link JsonWriter} created by {@link #createJsonWriter()} with a new
+     * line and flush it.
+     */
+    private void endJson(JsonWriter writer) throws IOException {
+        writer.flush();
+        System.out.println();
+    }
+
+    /**
+     * Stop the threads used by a {@link JsonWriter} created by {@link #createJsonWriter()}.
+     */
+    private void shutdown(JsonWriter writer) {
+        ExecutorService executor = writer.getExecutor();
+        if (executor != null) {
+            executor.shutdownNow();
         }
     }
 
@@ -302,8 +973,8 @@ public class LogAnalyzer {
      * @return The {@link BufferedReader} containing the contents of the file.
      * @throws FileNotFoundException if the file could not be found.
      */
-    private BufferedReader getBufferedReader(String filepath) throws FileNotFoundException {
-        return new BufferedReader(new FileReader(new File(filepath)));
+    private BufferedReader getBufferedReader(String filepath) throws IOException {
+        return LogReaderUtil.openReader(filepath);
     }
 
     /**
@@ -340,7 +1011,22 @@ public class LogAnalyzer {
         if (mKernelLogPath != null) logCount++;
         if (mMonkeyLogPath != null) logCount++;
         if (mMemoryHealthLogPath != null) logCount++;
-        return (logCount == 1);
+        if (mBatchDir != null) logCount++;
+        if (mBatchList != null) logCount++;
+        if (mServicePort != null) logCount++;
+        if (logCount != 1) {
+            return false;
+        }
+
+        if (mSections != null || mResultType.contains(ResultType.ANALYSIS)) {
+            try {
+                new BugreportParser().setSections(getSections());
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -348,7 +1034,8 @@ public class LogAnalyzer {
      */
     private void printUsage() {
         System.err.println("Usage: loganalysis [--bugreport FILE | --events-log FILE | --logcat FILE | " +
-                "--kernel-log FILE | --monkey-log FILE]");
+                "--kernel-log FILE | --monkey-log FILE | --batch-dir DIR | --batch-list FILE | " +
+                "--service-port PORT]");
     }
 
     /**
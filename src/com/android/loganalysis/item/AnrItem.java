@@ -60,12 +60,13 @@ public class AnrItem extends MiscLogcatItem {
         LoadCategory.LOAD_5.toString(),
         LoadCategory.LOAD_15.toString(),
         ACTIVITY, REASON, TRACE));
+    private static final AttributeSchema SCHEMA = extendSchema(ATTRIBUTES);
 
     /**
      * The constructor for {@link AnrItem}.
      */
     public AnrItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
         setCategory(LogcatParser.ANR);
     }
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.item;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable set of attribute names which maps each name to a slot in a {@link GenericItem}.
+ * <p>
+ * A schema should be created once per item class and shared by all of its instances, so that
+ * each item only needs an array of values.
+ * </p>
+ */
+public final class AttributeSchema {
+    private static final Map<Set<String>, AttributeSchema> sInterned =
+            new ConcurrentHashMap<Set<String>, AttributeSchema>();
+
+    private final String[] mNames;
+    private final Map<String, Integer> mIndexes = new HashMap<String, Integer>();
+    private final Set<String> mNameSet;
+
+    /**
+     * Constructor for {@link AttributeSchema}.
+     *
+     * @param attributes The allowed attribute names.
+     */
+    public AttributeSchema(Collection<String> attributes) {
+        Set<String> names = new TreeSet<String>(attributes);
+        mNames = names.toArray(new String[names.size()]);
+        for (int i = 0; i < mNames.length; i++) {
+            mIndexes.put(mNames[i], i);
+        }
+        mNameSet = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Get a schema with the attributes of this schema and some additional attributes.
+     *
+     * @param attributes The additional attribute names.
+     * @return A new {@link AttributeSchema}.
+     */
+    public AttributeSchema extend(Collection<String> attributes) {
+        Set<String> names = new HashSet<String>(mNameSet);
+        names.addAll(attributes);
+        return new AttributeSchema(names);
+    }
+
+    /**
+     * Get a shared schema for a set of attribute names.
+     * <p>
+     * The schema is looked up by the contents of the set, so this is slower than keeping the
+     * schema in a constant.
+     * </p>
+     */
+    static AttributeSchema forAttributes(Set<String> attributes) {
+        AttributeSchema schema = sInterned.get(attributes);
+        if (schema == null) {
+            schema = new AttributeSchema(attributes);
+            sInterned.put(schema.getAttributes(), schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Get the number of attributes in the schema.
+     */
+    public int size() {
+        return mNames.length;
+    }
+
+    /**
+     * Get the name of the attribute in a slot.
+     */
+    public String getName(int index) {
+        return mNames[index];
+    }
+
+    /**
+     * Get the slot of an attribute.
+     *
+     * @param attribute The name of the attribute.
+     * @return The slot, or -1 if the attribute is not in the schema.
+     */
+    public int indexOf(String attribute) {
+        Integer index = mIndexes.get(attribute);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Get an unmodifiable {@link Set} of the attribute names in the schema.
+     */
+    public Set<String> getAttributes() {
+        return mNameSet;
+    }
+}
@@ -63,6 +63,19 @@ public class BugreportItem extends GenericItem {
         super(ATTRIBUTES);
     }
 
+    /**
+     * Set a section of the bugreport to be parsed the first time it is read, instead of when the
+     * bugreport is parsed.
+     *
+     * @param attribute The section, such as {@link #DUMPSYS}.
+     * @param section The {@link LazyValue} which parses the section.
+     * @throws IllegalArgumentException If the attribute is not a section of the bugreport.
+     */
+    public void setLazySection(String attribute, LazyValue<? extends IItem> section)
+            throws IllegalArgumentException {
+        setAttribute(attribute, section);
+    }
+
     /**
      * Get the time of the bugreport.
      */
@@ -15,28 +15,47 @@
  */
 package com.android.loganalysis.item;
 
+import com.android.loganalysis.util.JsonWriter;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 /**
  * An implementation of the {@link IItem} interface which implements helper methods.
  */
 public class GenericItem implements IItem {
-    private Map<String, Object> mAttributes = new HashMap<String, Object>();
-    private Set<String> mAllowedAttributes;
+    private static final Map<Class<?>, Boolean> sInheritsToJson =
+            new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private final AttributeSchema mSchema;
+    private final Object[] mValues;
 
     protected GenericItem(Set<String> allowedAttributes) {
-        mAllowedAttributes = new HashSet<String>();
-        mAllowedAttributes.addAll(allowedAttributes);
+        this(AttributeSchema.forAttributes(allowedAttributes));
     }
 
     protected GenericItem(Set<String> allowedAttributes, Map<String, Object> attributes) {
-        this(allowedAttributes);
+        this(AttributeSchema.forAttributes(allowedAttributes), attributes);
+    }
+
+    protected GenericItem(AttributeSchema schema) {
+        mSchema = schema;
+        mValues = new Object[schema.size()];
+    }
+
+    protected GenericItem(AttributeSchema schema, Map<String, Object> attributes) {
+        this(schema);
 
         for (Map.Entry<String, Object> entry : attributes.entrySet()) {
             setAttribute(entry.getKey(), entry.getValue());
@@ -55,7 +74,7 @@ public class GenericItem implements IItem {
             throw new ConflictingItemException("Conflicting class types");
         }
 
-        return new GenericItem(mAllowedAttributes, mergeAttributes(other, mAllowedAttributes));
+        return new GenericItem(mSchema, mergeAttributes(other, mSchema.getAttributes()));
     }
 
     /**
@@ -71,7 +90,14 @@ public class GenericItem implements IItem {
     protected Map<String, Object> mergeAttributes(IItem other, Set<String> attributes)
             throws ConflictingItemException {
         if (this == other) {
-            return mAttributes;
+            Map<String, Object> attributesMap = new HashMap<String, Object>();
+            for (int i = 0; i < mValues.length; i++) {
+                final Object value = getValue(i);
+                if (value != null) {
+                    attributesMap.put(mSchema.getName(i), value);
+                }
+            }
+            return attributesMap;
         }
         if (other == null || getClass() != other.getClass()) {
             throw new ConflictingItemException("Conflicting class types");
@@ -97,8 +123,8 @@ public class GenericItem implements IItem {
         }
 
         GenericItem item = (GenericItem) other;
-        for (String attribute : mAllowedAttributes) {
-            if (!areConsistent(getAttribute(attribute), item.getAttribute(attribute))) {
+        for (int i = 0; i < mValues.length; i++) {
+            if (!areConsistent(getValue(i), item.getValue(mSchema, i))) {
                 return false;
             }
         }
@@ -118,8 +144,8 @@ public class GenericItem implements IItem {
         }
 
         GenericItem item = (GenericItem) other;
-        for (String attribute : mAllowedAttributes) {
-            if (!areEqual(getAttribute(attribute), item.getAttribute(attribute))) {
+        for (int i = 0; i < mValues.length; i++) {
+            if (!areEqual(getValue(i), item.getValue(mSchema, i))) {
                 return false;
             }
         }
@@ -130,8 +156,8 @@ public class GenericItem implements IItem {
     @Override
     public int hashCode() {
         int result = 13;
-        for (String attribute : mAllowedAttributes) {
-            Object val = getAttribute(attribute);
+        for (int i = 0; i < mValues.length; i++) {
+            Object val = getValue(i);
             result += 37 * (val == null ? 0 : val.hashCode());
         }
         return result;
@@ -149,9 +175,12 @@ public class GenericItem implements IItem {
     @Override
     public JSONObject toJson() {
         JSONObject object = new JSONObject();
-        for (Map.Entry<String, Object> entry : mAttributes.entrySet()) {
-            final String key = entry.getKey();
-            final Object attribute = entry.getValue();
+        for (int i = 0; i < mValues.length; i++) {
+            final String key = mSchema.getName(i);
+            final Object attribute = getValue(i);
+            if (attribute == null) {
+                continue;
+            }
             try {
                 if (attribute != null && attribute instanceof IItem) {
                     object.put(key, ((IItem) attribute).toJson());
@@ -165,6 +194,85 @@ public class GenericItem implements IItem {
         return object;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Writes the same attributes as {@link #toJson()}.  If an {@link IItem} attribute can be
+     * rendered concurrently, it is.  Subclasses which override {@link #toJson()} without
+     * overriding this method have their {@link #toJson()} written instead.
+     * </p>
+     */
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        if (!inheritsToJson(getClass(), GenericItem.class)) {
+            writer.value(toJson());
+            return;
+        }
+        writer.beginObject();
+        writeAttributes(writer, Collections.<String>emptySet());
+        writer.endObject();
+    }
+
+    /**
+     * Write the attributes of the item as members of the current JSON object, in the same way as
+     * {@link #toJson()}.
+     *
+     * @param writer The {@link JsonWriter} to write to.
+     * @param excluded Attributes which should not be written.
+     */
+    protected void writeAttributes(JsonWriter writer, Collection<String> excluded)
+            throws IOException {
+        List<Future<String>> rendered = new ArrayList<Future<String>>(
+                Collections.<Future<String>>nCopies(mValues.length, null));
+        if (writer.getExecutor() != null) {
+            for (int i = 0; i < mValues.length; i++) {
+                final Object value = getValue(i);
+                if (value instanceof IItem && !excluded.contains(mSchema.getName(i))) {
+                    final IItem item = (IItem) value;
+                    rendered.set(i, writer.render(new JsonWriter.Writable() {
+                        @Override
+                        public void writeJson(JsonWriter itemWriter) throws IOException {
+                            item.writeJson(itemWriter);
+                        }
+                    }));
+                }
+            }
+        }
+
+        for (int i = 0; i < mValues.length; i++) {
+            final String key = mSchema.getName(i);
+            final Object attribute = getValue(i);
+            if (attribute == null || excluded.contains(key) || !JsonWriter.isValid(attribute)) {
+                continue;
+            }
+            writer.name(key);
+            if (rendered.get(i) != null) {
+                writer.renderedValue(rendered.get(i));
+            } else if (attribute instanceof IItem) {
+                ((IItem) attribute).writeJson(writer);
+            } else {
+                writer.value(attribute);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a class does not override {@link IItem#toJson()} from a base class, so
+     * that the base class can write the same output with {@link IItem#writeJson(JsonWriter)}.
+     */
+    static boolean inheritsToJson(Class<?> cls, Class<?> base) {
+        Boolean inherits = sInheritsToJson.get(cls);
+        if (inherits == null) {
+            try {
+                inherits = cls.getMethod("toJson").getDeclaringClass() == base;
+            } catch (NoSuchMethodException e) {
+                inherits = false;
+            }
+            sInheritsToJson.put(cls, inherits);
+        }
+        return inherits;
+    }
+
     /**
      * Set an attribute to a value.
      *
@@ -173,10 +281,7 @@ public class GenericItem implements IItem {
      * @throws IllegalArgumentException If the attribute is not in allowedAttributes.
      */
     protected void setAttribute(String attribute, Object value) throws IllegalArgumentException {
-        if (!mAllowedAttributes.contains(attribute)) {
-            throw new IllegalArgumentException();
-        }
-        mAttributes.put(attribute, value);
+        mValues[getIndex(attribute)] = value;
     }
 
     /**
@@ -187,10 +292,58 @@ public class GenericItem implements IItem {
      * @throws IllegalArgumentException If the attribute is not in allowedAttributes.
      */
     protected Object getAttribute(String attribute) throws IllegalArgumentException {
-        if (!mAllowedAttributes.contains(attribute)) {
+        return materialize(mValues[getIndex(attribute)]);
+    }
+
+    /**
+     * Get the slot of an attribute in this item's schema.
+     *
+     * @throws IllegalArgumentException If the attribute is not in allowedAttributes.
+     */
+    private int getIndex(String attribute) throws IllegalArgumentException {
+        int index = mSchema.indexOf(attribute);
+        if (index < 0) {
             throw new IllegalArgumentException();
         }
-        return mAttributes.get(attribute);
+        return index;
+    }
+
+    /**
+     * Get the value in a slot of this item's schema.
+     */
+    private Object getValue(int index) {
+        return materialize(mValues[index]);
+    }
+
+    /**
+     * Get the value of an attribute given its slot in another schema.
+     *
+     * @throws IllegalArgumentException If the attribute is not in allowedAttributes.
+     */
+    private Object getValue(AttributeSchema schema, int index) throws IllegalArgumentException {
+        if (schema == mSchema) {
+            return getValue(index);
+        }
+        return getAttribute(schema.getName(index));
+    }
+
+    /**
+     * Helper method to convert an attribute stored as a {@link LazyValue} into its value, or an
+     * attribute stored as a lazily built {@link CharSequence}, such as a log tail, into a
+     * {@link String}.
+     *
+     * @param value The stored value
+     * @return The value of a {@link LazyValue}, the value as a {@link String} if it is a
+     * {@link CharSequence}, or the value.
+     */
+    static protected Object materialize(Object value) {
+        if (value instanceof LazyValue) {
+            return materialize(((LazyValue<?>) value).get());
+        }
+        if (value instanceof CharSequence && !(value instanceof String)) {
+            return value.toString();
+        }
+        return value;
     }
 
     /**
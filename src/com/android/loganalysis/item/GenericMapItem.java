@@ -15,9 +15,13 @@
  */
 package com.android.loganalysis.item;
 
+import com.android.loganalysis.util.JsonWriter;
+
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * An IItem that just represents a simple key/value map
@@ -50,4 +54,33 @@ public class GenericMapItem<V> extends HashMap<String, V> implements IItem {
     public JSONObject toJson() {
         return new JSONObject(this);
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Subclasses which override {@link #toJson()} without overriding this method have their
+     * {@link #toJson()} written instead.
+     * </p>
+     */
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        if (!GenericItem.inheritsToJson(getClass(), GenericMapItem.class)) {
+            writer.value(toJson());
+            return;
+        }
+        writeEntries(writer);
+    }
+
+    /**
+     * Write the map as a JSON object, in the same way as {@link #toJson()} in this class.
+     */
+    protected void writeEntries(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        for (Map.Entry<String, V> entry : entrySet()) {
+            if (entry.getKey() != null) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+        }
+        writer.endObject();
+    }
 }
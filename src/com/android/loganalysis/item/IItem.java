@@ -15,8 +15,12 @@
  */
 package com.android.loganalysis.item;
 
+import com.android.loganalysis.util.JsonWriter;
+
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * Interface for all items that are created by any parser.
  */
@@ -56,4 +60,19 @@ public interface IItem {
      * @return The representation of the item as a {@link JSONObject}.
      */
     public JSONObject toJson();
+
+    /**
+     * Write a JSON representation of the item, which is the same as {@link #toJson()}.
+     * <p>
+     * The default implementation writes the result of {@link #toJson()}.  Items with large
+     * representations should write themselves directly, so that the output does not have to be
+     * built in memory first.
+     * </p>
+     *
+     * @param writer The {@link JsonWriter} to write to.
+     * @throws IOException If the output could not be written.
+     */
+    public default void writeJson(JsonWriter writer) throws IOException {
+        writer.value(toJson());
+    }
 }
@@ -33,12 +33,13 @@ public class JavaCrashItem extends MiscLogcatItem {
 
     private static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(
             EXCEPTION, MESSAGE));
+    private static final AttributeSchema SCHEMA = extendSchema(ATTRIBUTES);
 
     /**
      * The constructor for {@link JavaCrashItem}.
      */
     public JavaCrashItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
         setCategory(LogcatParser.JAVA_CRASH);
     }
 
@@ -16,19 +16,30 @@
 package com.android.loganalysis.item;
 
 import com.android.loganalysis.parser.KernelLogParser;
+import com.android.loganalysis.util.JsonWriter;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * A {@link IItem} used to store kernel log info.
+ * <p>
+ * The events are indexed by type and by category as they are added, and the accessors return
+ * unmodifiable views of the lists.  The category of an event must not be changed after it is
+ * added.  The accessors only read the indexes, so once all of the events are added they may be
+ * called from several threads, such as the rules.
+ * </p>
  */
 public class KernelLogItem extends GenericItem {
 
@@ -43,7 +54,15 @@ public class KernelLogItem extends GenericItem {
             START_TIME, STOP_TIME, EVENTS));
 
     @SuppressWarnings("serial")
-    private class ItemList extends LinkedList<MiscKernelLogItem> {}
+    private class ItemList extends ArrayList<MiscKernelLogItem> {}
+
+    private final List<SELinuxItem> mSELinuxEvents = new ArrayList<SELinuxItem>();
+    private final List<LowMemoryKillerItem> mLowMemoryKillerEvents =
+            new ArrayList<LowMemoryKillerItem>();
+    private final List<PageAllocationFailureItem> mPageAllocationFailureEvents =
+            new ArrayList<PageAllocationFailureItem>();
+    private final Map<String, List<MiscKernelLogItem>> mCategoryEvents =
+            new HashMap<String, List<MiscKernelLogItem>>();
 
     /**
      * The constructor for {@link KernelLogItem}.
@@ -88,11 +107,14 @@ public class KernelLogItem extends GenericItem {
      * Get the list of all {@link MiscKernelLogItem} events.
      */
     public List<MiscKernelLogItem> getEvents() {
-        return (ItemList) getAttribute(EVENTS);
+        return Collections.unmodifiableList((ItemList) getAttribute(EVENTS));
     }
 
     /**
      * Add an {@link MiscKernelLogItem} event to the end of the list of events.
+     * <p>
+     * The event is indexed by its category when it is added, so the category must be set first.
+     * </p>
      */
     public void addEvent(MiscKernelLogItem event) {
         // Only take the first kernel reset
@@ -101,58 +123,53 @@ public class KernelLogItem extends GenericItem {
             return;
         }
         ((ItemList) getAttribute(EVENTS)).add(event);
+
+        if (event instanceof SELinuxItem) {
+            mSELinuxEvents.add((SELinuxItem) event);
+        } else if (event instanceof LowMemoryKillerItem) {
+            mLowMemoryKillerEvents.add((LowMemoryKillerItem) event);
+        } else if (event instanceof PageAllocationFailureItem) {
+            mPageAllocationFailureEvents.add((PageAllocationFailureItem) event);
+        }
+
+        List<MiscKernelLogItem> categoryEvents = mCategoryEvents.get(event.getCategory());
+        if (categoryEvents == null) {
+            categoryEvents = new ArrayList<MiscKernelLogItem>();
+            mCategoryEvents.put(event.getCategory(), categoryEvents);
+        }
+        categoryEvents.add(event);
     }
 
     /**
      * Get the list of all {@link MiscKernelLogItem} events for a category.
      */
     public List<MiscKernelLogItem> getMiscEvents(String category) {
-        List<MiscKernelLogItem> items = new LinkedList<MiscKernelLogItem>();
-        for (MiscKernelLogItem item : getEvents()) {
-            if (item.getCategory().equals(category)) {
-                items.add(item);
-            }
+        List<MiscKernelLogItem> categoryEvents = mCategoryEvents.get(category);
+        if (categoryEvents == null) {
+            return Collections.emptyList();
         }
-        return items;
+        return Collections.unmodifiableList(categoryEvents);
     }
 
     /**
      * Get the list of all {@link SELinuxItem} events.
      */
     public List<SELinuxItem> getSELinuxEvents() {
-        List<SELinuxItem> items = new LinkedList<SELinuxItem>();
-        for (MiscKernelLogItem item : getEvents()) {
-            if (item instanceof SELinuxItem) {
-                items.add((SELinuxItem)item);
-            }
-        }
-        return items;
+        return Collections.unmodifiableList(mSELinuxEvents);
     }
 
     /**
      * Get the list of all {@link LowMemoryKillerItem} events.
      */
     public List<LowMemoryKillerItem> getLowMemoryKillerEvents() {
-        List<LowMemoryKillerItem> items = new LinkedList<LowMemoryKillerItem>();
-        for (MiscKernelLogItem item : getEvents()) {
-            if (item instanceof LowMemoryKillerItem) {
-                items.add((LowMemoryKillerItem)item);
-            }
-        }
-        return items;
+        return Collections.unmodifiableList(mLowMemoryKillerEvents);
     }
 
     /**
      * Get the list of all {@link PageAllocationFailureItem} events.
      */
     public List<PageAllocationFailureItem> getPageAllocationFailureEvents() {
-        List<PageAllocationFailureItem> items = new LinkedList<PageAllocationFailureItem>();
-        for (MiscKernelLogItem item : getEvents()) {
-            if (item instanceof PageAllocationFailureItem) {
-                items.add((PageAllocationFailureItem)item);
-            }
-        }
-        return items;
+        return Collections.unmodifiableList(mPageAllocationFailureEvents);
     }
 
     /**
@@ -173,4 +190,19 @@ public class KernelLogItem extends GenericItem {
         }
         return output;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writeAttributes(writer, Collections.singleton(EVENTS));
+        writer.name(EVENTS).beginArray();
+        for (MiscKernelLogItem event : getEvents()) {
+            event.writeJson(writer);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
 }
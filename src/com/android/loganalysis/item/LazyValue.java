@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.item;
+
+/**
+ * A value of a {@link GenericItem} attribute which is computed the first time it is read.
+ * <p>
+ * The value is computed at most once, even if it is read from several threads at the same time.
+ * If {@link #compute()} throws an exception, the exception is passed to the caller and the value
+ * is computed again the next time it is read.
+ * </p>
+ */
+public abstract class LazyValue<T> {
+    private volatile boolean mComputed = false;
+    private T mValue = null;
+
+    /**
+     * Get the value, computing it if this is the first time it is read.
+     */
+    public final T get() {
+        if (!mComputed) {
+            synchronized (this) {
+                if (!mComputed) {
+                    mValue = compute();
+                    mComputed = true;
+                }
+            }
+        }
+        return mValue;
+    }
+
+    /**
+     * Returns true if the value has been computed.
+     */
+    public boolean isComputed() {
+        return mComputed;
+    }
+
+    /**
+     * Compute the value.
+     *
+     * @return The value, which may be null.
+     */
+    protected abstract T compute();
+}
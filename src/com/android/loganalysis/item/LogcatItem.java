@@ -15,19 +15,35 @@
  */
 package com.android.loganalysis.item;
 
+import com.android.loganalysis.util.JsonWriter;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
  * An {@link IItem} used to store logcat info.
+ * <p>
+ * The events are indexed by type and by category as they are added, so the accessors for
+ * {@link AnrItem}s, {@link JavaCrashItem}s, {@link NativeCrashItem}s and the events of a category
+ * don't scan all of the events.  The accessors return unmodifiable views of the lists.
+ * </p><p>
+ * The category of an event must not be changed after it is added.  The accessors only read the
+ * indexes, so once all of the events are added they may be called from several threads, such as
+ * the rules.
+ * </p>
  */
 public class LogcatItem extends GenericItem {
 
@@ -42,7 +58,13 @@ public class LogcatItem extends GenericItem {
             START_TIME, STOP_TIME, EVENTS));
 
     @SuppressWarnings("serial")
-    private class ItemList extends LinkedList<MiscLogcatItem> {}
+    private class ItemList extends ArrayList<MiscLogcatItem> {}
+
+    private final List<AnrItem> mAnrs = new ArrayList<AnrItem>();
+    private final List<JavaCrashItem> mJavaCrashes = new ArrayList<JavaCrashItem>();
+    private final List<NativeCrashItem> mNativeCrashes = new ArrayList<NativeCrashItem>();
+    private final Map<String, List<MiscLogcatItem>> mCategoryEvents =
+            new HashMap<String, List<MiscLogcatItem>>();
 
     /**
      * The constructor for {@link LogcatItem}.
@@ -85,70 +107,73 @@ public class LogcatItem extends GenericItem {
      * Get the list of all {@link MiscLogcatItem} events.
      */
     public List<MiscLogcatItem> getEvents() {
-        return (ItemList) getAttribute(EVENTS);
+        return Collections.unmodifiableList((ItemList) getAttribute(EVENTS));
     }
 
     /**
      * Add an {@link MiscLogcatItem} event to the end of the list of events.
+     * <p>
+     * The event is indexed by its category when it is added, so the category must be set first.
+     * </p>
      */
     public void addEvent(MiscLogcatItem event) {
         ((ItemList) getAttribute(EVENTS)).add(event);
+
+        if (event instanceof AnrItem) {
+            mAnrs.add((AnrItem) event);
+        } else if (event instanceof JavaCrashItem) {
+            mJavaCrashes.add((JavaCrashItem) event);
+        } else if (event instanceof NativeCrashItem) {
+            mNativeCrashes.add((NativeCrashItem) event);
+        }
+
+        List<MiscLogcatItem> categoryEvents = mCategoryEvents.get(event.getCategory());
+        if (categoryEvents == null) {
+            categoryEvents = new ArrayList<MiscLogcatItem>();
+            mCategoryEvents.put(event.getCategory(), categoryEvents);
+        }
+        categoryEvents.add(event);
     }
 
     /**
      * Get the list of all {@link AnrItem} events.
      */
     public List<AnrItem> getAnrs() {
-        List<AnrItem> anrs = new LinkedList<AnrItem>();
-        for (IItem item : getEvents()) {
-            if (item instanceof AnrItem) {
-                anrs.add((AnrItem) item);
-            }
-        }
-        return anrs;
+        return Collections.unmodifiableList(mAnrs);
     }
 
     /**
      * Get the list of all {@link JavaCrashItem} events.
      */
     public List<JavaCrashItem> getJavaCrashes() {
-        List<JavaCrashItem> jcs = new LinkedList<JavaCrashItem>();
-        for (IItem item : getEvents()) {
-            if (item instanceof JavaCrashItem) {
-                jcs.add((JavaCrashItem) item);
-            }
-        }
-        return jcs;
+        return Collections.unmodifiableList(mJavaCrashes);
     }
 
     /**
      * Get the list of all {@link NativeCrashItem} events.
      */
     public List<NativeCrashItem> getNativeCrashes() {
-        List<NativeCrashItem> ncs = new LinkedList<NativeCrashItem>();
-        for (IItem item : getEvents()) {
-            if (item instanceof NativeCrashItem) {
-                ncs.add((NativeCrashItem) item);
-            }
-        }
-        return ncs;
+        return Collections.unmodifiableList(mNativeCrashes);
     }
 
     /**
      * Get the list of all {@link MiscLogcatItem} events for a cateogry.
      */
     public List<MiscLogcatItem> getMiscEvents(String category) {
-        List<MiscLogcatItem> items = new LinkedList<MiscLogcatItem>();
-        for (MiscLogcatItem item : getEvents()) {
-            if (item.getCategory().equals(category)) {
-                items.add(item);
-            }
+        List<MiscLogcatItem> categoryEvents = mCategoryEvents.get(category);
+        if (categoryEvents == null) {
+            return Collections.emptyList();
         }
-        return items;
+        return Collections.unmodifiableList(categoryEvents);
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The events are merged in time order, keeping the order of the events of each logcat.  The
+     * events in the span where the logcats overlap must be in both logcats, and are only included
+     * once.
+     * </p>
      */
     @Override
     public LogcatItem merge(IItem other) throws ConflictingItemException {
@@ -170,37 +195,103 @@ public class LogcatItem extends GenericItem {
         Date overlapStop = logcat.getStopTime().before(getStopTime()) ?
                 logcat.getStopTime() : getStopTime();
 
-        // Make sure that all events in the overlapping span are
-        ItemList mergedEvents = new ItemList();
-        for (MiscLogcatItem event : getEvents()) {
-            final Date eventTime = event.getEventTime();
-            if (eventTime.after(overlapStart) && eventTime.before(overlapStop) &&
-                    !logcat.getEvents().contains(event)) {
-                throw new ConflictingItemException("Event in first logcat not contained in " +
-                        "overlapping portion of other logcat.");
-            }
-            mergedEvents.add(event);
-        }
-
-        for (MiscLogcatItem event : logcat.getEvents()) {
-            final Date eventTime = event.getEventTime();
-            if (eventTime.after(overlapStart) && eventTime.before(overlapStop)) {
-                if (!getEvents().contains(event)) {
+        // Make sure that all events in the overlapping span are in both logcats.  The events are
+        // looked up by fingerprint so that only events which are likely to be equal are compared.
+        Map<Integer, List<MiscLogcatItem>> fingerprints =
+                getFingerprints(getEvents(), overlapStart, overlapStop);
+        Map<Integer, List<MiscLogcatItem>> otherFingerprints =
+                getFingerprints(logcat.getEvents(), overlapStart, overlapStop);
+        for (List<MiscLogcatItem> events : fingerprints.values()) {
+            for (MiscLogcatItem event : events) {
+                if (!containsEvent(otherFingerprints, event)) {
                     throw new ConflictingItemException("Event in first logcat not contained in " +
                             "overlapping portion of other logcat.");
                 }
-            } else {
-                mergedEvents.add(event);
+            }
+        }
+        for (List<MiscLogcatItem> events : otherFingerprints.values()) {
+            for (MiscLogcatItem event : events) {
+                if (!containsEvent(fingerprints, event)) {
+                    throw new ConflictingItemException("Event in second logcat not contained " +
+                            "in overlapping portion of other logcat.");
+                }
             }
         }
 
+        // Merge the events in time order.  The events of the other logcat in the overlapping span
+        // are skipped since they are the same as the events of this logcat.
         LogcatItem mergedLogcat = new LogcatItem();
         mergedLogcat.setStartTime(start);
         mergedLogcat.setStopTime(stop);
-        mergedLogcat.setAttribute(EVENTS, mergedEvents);
+        List<MiscLogcatItem> events = getEvents();
+        List<MiscLogcatItem> otherEvents = logcat.getEvents();
+        int i = 0;
+        int j = 0;
+        while (i < events.size() || j < otherEvents.size()) {
+            if (j < otherEvents.size() &&
+                    isInSpan(otherEvents.get(j), overlapStart, overlapStop)) {
+                j++;
+            } else if (j == otherEvents.size() || (i < events.size() &&
+                    !otherEvents.get(j).getEventTime().before(events.get(i).getEventTime()))) {
+                mergedLogcat.addEvent(events.get(i++));
+            } else {
+                mergedLogcat.addEvent(otherEvents.get(j++));
+            }
+        }
         return mergedLogcat;
     }
 
+    /**
+     * Get the events in a span of time, grouped by fingerprint.
+     */
+    private static Map<Integer, List<MiscLogcatItem>> getFingerprints(
+            List<MiscLogcatItem> events, Date start, Date stop) {
+        Map<Integer, List<MiscLogcatItem>> fingerprints =
+                new HashMap<Integer, List<MiscLogcatItem>>();
+        for (MiscLogcatItem event : events) {
+            if (isInSpan(event, start, stop)) {
+                Integer fingerprint = getFingerprint(event);
+                List<MiscLogcatItem> group = fingerprints.get(fingerprint);
+                if (group == null) {
+                    group = new ArrayList<MiscLogcatItem>(1);
+                    fingerprints.put(fingerprint, group);
+                }
+                group.add(event);
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Returns true if an event equal to the given event is in the events grouped by fingerprint.
+     */
+    private static boolean containsEvent(Map<Integer, List<MiscLogcatItem>> fingerprints,
+            MiscLogcatItem event) {
+        List<MiscLogcatItem> group = fingerprints.get(getFingerprint(event));
+        return group != null && group.contains(event);
+    }
+
+    /**
+     * Get a hash of the time, pid, tid, category and stack of an event.  Equal events have the same
+     * fingerprint, so only events with the same fingerprint need to be compared with
+     * {@link MiscLogcatItem#equals(Object)}, which compares all of the attributes.
+     */
+    private static int getFingerprint(MiscLogcatItem event) {
+        int fingerprint = event.getEventTime().hashCode();
+        fingerprint = 31 * fingerprint + Objects.hashCode(event.getPid());
+        fingerprint = 31 * fingerprint + Objects.hashCode(event.getTid());
+        fingerprint = 31 * fingerprint + Objects.hashCode(event.getCategory());
+        fingerprint = 31 * fingerprint + Objects.hashCode(event.getStack());
+        return fingerprint;
+    }
+
+    /**
+     * Returns true if an event is strictly between the start and stop times.
+     */
+    private static boolean isInSpan(MiscLogcatItem event, Date start, Date stop) {
+        return event.getEventTime().after(start) && event.getEventTime().before(stop);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -219,4 +310,19 @@ public class LogcatItem extends GenericItem {
         }
         return output;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writeAttributes(writer, Collections.singleton(EVENTS));
+        writer.name(EVENTS).beginArray();
+        for (MiscLogcatItem event : getEvents()) {
+            event.writeJson(writer);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
 }
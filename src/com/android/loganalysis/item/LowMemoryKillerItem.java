@@ -37,12 +37,13 @@ public class LowMemoryKillerItem extends MiscKernelLogItem {
 
     private static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(
             PID, PROCESS_NAME, ADJUSTMENT));
+    private static final AttributeSchema SCHEMA = extendSchema(ATTRIBUTES);
 
     /**
      * The constructor for {@link LowMemoryKillerItem}.
      */
     public LowMemoryKillerItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
     }
 
     /**
@@ -36,12 +36,13 @@ public class MiscKernelLogItem extends GenericItem {
 
     private static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(
             EVENT_TIME, PREAMBLE, CATEGORY, STACK));
+    private static final AttributeSchema SCHEMA = new AttributeSchema(ATTRIBUTES);
 
     /**
      * Constructor for {@link MiscKernelLogItem}.
      */
     public MiscKernelLogItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
     }
 
     /**
@@ -53,6 +54,15 @@ public class MiscKernelLogItem extends GenericItem {
         super(getAllAttributes(attributes));
     }
 
+    /**
+     * Constructor for {@link MiscKernelLogItem}.
+     *
+     * @param schema The schema of the subclass, created with {@link #extendSchema(Set)}.
+     */
+    protected MiscKernelLogItem(AttributeSchema schema) {
+        super(schema);
+    }
+
     /**
      * Get the time object when the event happened.
      */
@@ -75,9 +85,10 @@ public class MiscKernelLogItem extends GenericItem {
     }
 
     /**
-     * Set the preamble for the event.
+     * Set the preamble for the event.  The preamble may be a lazily built {@link CharSequence},
+     * which is converted to a {@link String} when it is read.
      */
-    public void setPreamble(String preamble) {
+    public void setPreamble(CharSequence preamble) {
         setAttribute(PREAMBLE, preamble);
     }
 
@@ -89,7 +100,8 @@ public class MiscKernelLogItem extends GenericItem {
     }
 
     /**
-     * Set the category of the event.
+     * Set the category of the event.  The {@link KernelLogItem} which the event is added to indexes
+     * the events by category, so the category must not be changed after the event is added.
      */
     public void setCategory(String category) {
         setAttribute(CATEGORY, category);
@@ -109,6 +121,14 @@ public class MiscKernelLogItem extends GenericItem {
         setAttribute(STACK, stack);
     }
 
+    /**
+     * Create a schema with the internal list of attributes and an additional set of attributes.
+     * Subclasses should keep the schema in a constant.
+     */
+    protected static AttributeSchema extendSchema(Set<String> attributes) {
+        return SCHEMA.extend(attributes);
+    }
+
     /**
      * Combine an array of attributes with the internal list of attributes.
      */
@@ -45,12 +45,13 @@ public class MiscLogcatItem extends GenericItem {
 
     private static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(
             EVENT_TIME, PID, TID, APP, TAG, LAST_PREAMBLE, PROCESS_PREAMBLE, CATEGORY, STACK));
+    private static final AttributeSchema SCHEMA = new AttributeSchema(ATTRIBUTES);
 
     /**
      * Constructor for {@link MiscLogcatItem}.
      */
     public MiscLogcatItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
     }
 
     /**
@@ -62,6 +63,15 @@ public class MiscLogcatItem extends GenericItem {
         super(getAllAttributes(attributes));
     }
 
+    /**
+     * Constructor for {@link MiscLogcatItem}.
+     *
+     * @param schema The schema of the subclass, created with {@link #extendSchema(Set)}.
+     */
+    protected MiscLogcatItem(AttributeSchema schema) {
+        super(schema);
+    }
+
     /**
      * Get the {@link Date} object when the event happened.
      */
@@ -140,9 +150,10 @@ public class MiscLogcatItem extends GenericItem {
     }
 
     /**
-     * Set the last preamble for the event.
+     * Set the last preamble for the event.  The preamble may be a lazily built
+     * {@link CharSequence}, which is converted to a {@link String} when it is read.
      */
-    public void setLastPreamble(String preamble) {
+    public void setLastPreamble(CharSequence preamble) {
         setAttribute(LAST_PREAMBLE, preamble);
     }
 
@@ -154,12 +165,21 @@ public class MiscLogcatItem extends GenericItem {
     }
 
     /**
-     * Set the process preamble for the event.
+     * Set the process preamble for the event.  The preamble may be a lazily built
+     * {@link CharSequence}, which is converted to a {@link String} when it is read.
      */
-    public void setProcessPreamble(String preamble) {
+    public void setProcessPreamble(CharSequence preamble) {
         setAttribute(PROCESS_PREAMBLE, preamble);
     }
 
+    /**
+     * Create a schema with the internal list of attributes and an additional set of attributes.
+     * Subclasses should keep the schema in a constant.
+     */
+    protected static AttributeSchema extendSchema(Set<String> attributes) {
+        return SCHEMA.extend(attributes);
+    }
+
     /**
      * Combine an array of attributes with the internal list of attributes.
      */
@@ -177,7 +197,8 @@ public class MiscLogcatItem extends GenericItem {
     }
 
     /**
-     * Set the category of the event.
+     * Set the category of the event.  The {@link LogcatItem} which the event is added to indexes
+     * the events by category, so the category must not be changed after the event is added.
      */
     public void setCategory(String category) {
         setAttribute(CATEGORY, category);
@@ -31,12 +31,13 @@ public class NativeCrashItem extends MiscLogcatItem {
 
     private static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(
             FINGERPRINT));
+    private static final AttributeSchema SCHEMA = extendSchema(ATTRIBUTES);
 
     /**
      * The constructor for {@link NativeCrashItem}.
      */
     public NativeCrashItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
         setCategory(LogcatParser.NATIVE_CRASH);
     }
 
@@ -33,12 +33,13 @@ public class PageAllocationFailureItem extends MiscKernelLogItem {
     public static final String ORDER = "ORDER";
 
     private static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(ORDER));
+    private static final AttributeSchema SCHEMA = extendSchema(ATTRIBUTES);
 
     /**
      * The constructor for {@link PageAllocationFailureItem}.
      */
     public PageAllocationFailureItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
     }
 
     /**
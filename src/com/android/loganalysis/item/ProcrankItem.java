@@ -15,10 +15,13 @@
  */
 package com.android.loganalysis.item;
 
+import com.android.loganalysis.util.JsonWriter;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -199,4 +202,31 @@ public class ProcrankItem implements IItem {
         }
         return object;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name(LINES).beginArray();
+        for (Entry<Integer, ProcrankValue> entry : mProcrankLines.entrySet()) {
+            final ProcrankValue procrankValue = entry.getValue();
+            writer.beginObject();
+            writer.name(PID).value(entry.getKey());
+            if (procrankValue.mProcessName != null) {
+                writer.name(PROCESS_NAME).value(procrankValue.mProcessName);
+            }
+            writer.name(VSS).value(procrankValue.mVss);
+            writer.name(RSS).value(procrankValue.mRss);
+            writer.name(PSS).value(procrankValue.mPss);
+            writer.name(USS).value(procrankValue.mUss);
+            writer.endObject();
+        }
+        writer.endArray();
+        if (getText() != null) {
+            writer.name(TEXT).value(getText());
+        }
+        writer.endObject();
+    }
 }
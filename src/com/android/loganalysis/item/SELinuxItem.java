@@ -36,12 +36,13 @@ public class SELinuxItem extends MiscKernelLogItem {
 
     private static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(
                 SCONTEXT));
+    private static final AttributeSchema SCHEMA = extendSchema(ATTRIBUTES);
 
     /**
      * The constructor for {@link SELinuxItem}.
      */
     public SELinuxItem() {
-        super(ATTRIBUTES);
+        super(SCHEMA);
         setCategory(KernelLogParser.SELINUX_DENIAL);
     }
 
@@ -15,9 +15,13 @@
  */
 package com.android.loganalysis.item;
 
+import com.android.loganalysis.util.JsonWriter;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * An {@link IItem} used to store the system props info.
  */
@@ -59,4 +63,18 @@ public class SystemPropsItem extends GenericMapItem<String> {
         }
         return object;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name(LINES);
+        writeEntries(writer);
+        if (getText() != null) {
+            writer.name(TEXT).value(getText());
+        }
+        writer.endObject();
+    }
 }
@@ -19,9 +19,16 @@ import com.android.loganalysis.item.IItem;
 import com.android.loganalysis.util.RegexTrie;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * A {@link IParser} that splits an input file into discrete sections and passes each section to an
@@ -30,13 +37,29 @@ import java.util.Map;
  * Before parsing input, {@link IParser}s can be added with
  * {@link #addSectionParser(IParser, String)}. The default parser is {@link NoopParser} but this can
  * be overwritten by calling {@link #setParser(IParser)} before parsing the input.
+ * </p><p>
+ * If an {@link ExecutorService} is set with {@link #setExecutor(ExecutorService)}, the sections
+ * matched by the section parsers are parsed on the executor while the input is still being split,
+ * and the results are collected in {@link #commit()}. The initial parser is always run inline.
+ * </p><p>
+ * Subclasses should call {@link #ensureSetUp()} before parsing input, so the section parsers are
+ * only added by {@link #setup()} once.  Sections are added to the same results until
+ * {@link #reset()} is called, so a parser can be reused for a new input without rebuilding its
+ * {@link RegexTrie}.
  * </p>
  */
 public abstract class AbstractSectionParser implements IParser {
     private RegexTrie<IParser> mSectionTrie = new RegexTrie<IParser>();
-    private IParser mCurrentParser = new NoopParser();
+    private Set<IParser> mSectionParsers = new LinkedHashSet<IParser>();
+    private boolean mIsSetUp = false;
+    private IParser mInitialParser = new NoopParser();
+    private IParser mCurrentParser = mInitialParser;
+    private boolean mCurrentParserIsSection = false;
     private List<String> mParseBlock = new LinkedList<String>();
     private Map<IParser, IItem> mSections = new HashMap<IParser, IItem>();
+    private ExecutorService mExecutor = null;
+    private Map<IParser, Future<IItem>> mPendingSections =
+            new LinkedHashMap<IParser, Future<IItem>>();
 
     /**
      * A method to add a given section parser to the set of potential parsers to use.
@@ -52,35 +75,100 @@ public abstract class AbstractSectionParser implements IParser {
             throw new NullPointerException("Pattern is null");
         }
         mSectionTrie.put(parser, pattern);
+        mSectionParsers.add(parser);
+    }
+
+    /**
+     * Add the section parsers and set the initial parser.  Called by {@link #ensureSetUp()} the
+     * first time that input is parsed.
+     */
+    protected void setup() {
+    }
+
+    /**
+     * Call {@link #setup()} if the parser has not been set up yet.
+     */
+    protected void ensureSetUp() {
+        if (!mIsSetUp) {
+            setup();
+            mIsSetUp = true;
+        }
+    }
+
+    /**
+     * Remove all of the section parsers, so {@link #setup()} is called again the next time that
+     * input is parsed.  Subclasses call this between inputs when the sections they parse change.
+     */
+    protected void clearSectionParsers() {
+        mSectionTrie = new RegexTrie<IParser>();
+        mSectionParsers.clear();
+        mIsSetUp = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sections of the previous input are discarded, and the initial parser and all of the
+     * section parsers are reset.
+     * </p>
+     */
+    @Override
+    public void reset() {
+        for (Future<IItem> pending : mPendingSections.values()) {
+            pending.cancel(true);
+        }
+        mPendingSections.clear();
+        mSections.clear();
+        mParseBlock = new LinkedList<String>();
+        mCurrentParser = mInitialParser;
+        mCurrentParserIsSection = false;
+
+        if (mInitialParser != null) {
+            mInitialParser.reset();
+        }
+        for (IParser parser : mSectionParsers) {
+            parser.reset();
+        }
     }
 
     /**
      * Parse a line of input, either adding the input to the current block or switching parsers and
      * running the current parser.
+     * <p>
+     * The line is only converted to a {@link String} if it is buffered for the current parser, so
+     * callers reading from a {@link com.android.loganalysis.util.MappedLineReader} can pass the
+     * line view directly. Lines in sections handled by a {@link NoopParser} are skipped without
+     * being buffered.
+     * </p>
      *
      * @param line The line to parse
      */
-    protected void parseLine(String line) {
+    protected void parseLine(CharSequence line) {
         IParser nextParser = mSectionTrie.retrieve(line);
 
         if (nextParser == null) {
-            // no match, so buffer this for the current parser, if there is one
-            if (mCurrentParser != null) {
-                mParseBlock.add(line);
-            } else {
-                // CLog.w("Line outside of parsed section: %s", line);
+            // no match, so buffer this for the current parser, if it is not skipping the section
+            if (!isSkipping()) {
+                mParseBlock.add(line.toString());
             }
         } else {
             runCurrentParser();
             mCurrentParser = nextParser;
+            mCurrentParserIsSection = true;
         }
     }
 
     /**
-     * Signal that the input has finished and run the last parser.
+     * Signal that the input has finished, run the last parser, and wait for any sections which are
+     * being parsed on the executor.
      */
     protected void commit() {
         runCurrentParser();
+
+        for (Map.Entry<IParser, Future<IItem>> entry : mPendingSections.entrySet()) {
+            putSection(entry.getKey(), getResult(entry.getValue()));
+        }
+        mPendingSections.clear();
     }
 
     /**
@@ -99,7 +187,47 @@ public abstract class AbstractSectionParser implements IParser {
      * @param parser The {@link IParser} to set.
      */
     protected void setParser(IParser parser) {
+        mInitialParser = parser;
         mCurrentParser = parser;
+        mCurrentParserIsSection = false;
+    }
+
+    /**
+     * Set the {@link ExecutorService} used to parse sections in parallel.
+     * <p>
+     * Sections run on the executor are only available from {@link #getSection(IParser)} after
+     * {@link #commit()}. Blocks for the same {@link IParser} are still parsed one at a time and
+     * in order.
+     * </p>
+     *
+     * @param executor The {@link ExecutorService}, or {@code null} to parse sections inline.
+     */
+    protected void setExecutor(ExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns true if a line is the header of a section, which switches to another parser.
+     */
+    protected boolean isSectionHeader(CharSequence line) {
+        return mSectionTrie.retrieve(line) != null;
+    }
+
+    /**
+     * Get the {@link IParser} for the section starting with a header line.
+     *
+     * @return The {@link IParser}, or null if the line is not a section header.
+     */
+    protected IParser getSectionParser(CharSequence header) {
+        return mSectionTrie.retrieve(header);
+    }
+
+    /**
+     * Returns true if the lines of the current section are being skipped, either because there is
+     * no current parser or because the current parser is a {@link NoopParser}.
+     */
+    protected boolean isSkipping() {
+        return mCurrentParser == null || mCurrentParser instanceof NoopParser;
     }
 
     /**
@@ -112,16 +240,66 @@ public abstract class AbstractSectionParser implements IParser {
      * Run the current parser and add the {@link IItem} to the sections map.
      */
     private void runCurrentParser() {
-        if (mCurrentParser != null) {
-            IItem item = mCurrentParser.parse(mParseBlock);
-            if (item != null && !(mCurrentParser instanceof NoopParser)) {
-                mSections.put(mCurrentParser, item);
-                // CLog.v("Just ran the %s parser", mCurrentParser.getClass().getSimpleName());
+        if (!isSkipping()) {
+            if (mExecutor != null && mCurrentParserIsSection) {
+                submitCurrentParser();
+            } else {
+                putSection(mCurrentParser, mCurrentParser.parse(mParseBlock));
             }
         }
 
-        mParseBlock.clear();
+        mParseBlock = new LinkedList<String>();
         onSwitchParser();
     }
+
+    /**
+     * Submit the current parser and block to the executor.
+     */
+    private void submitCurrentParser() {
+        final IParser parser = mCurrentParser;
+        final List<String> block = mParseBlock;
+
+        // The same parser can't parse two blocks at once, so wait for the previous block.
+        Future<IItem> previous = mPendingSections.remove(parser);
+        if (previous != null) {
+            putSection(parser, getResult(previous));
+        }
+        mPendingSections.put(parser, mExecutor.submit(new Callable<IItem>() {
+            @Override
+            public IItem call() {
+                return parser.parse(block);
+            }
+        }));
+    }
+
+    /**
+     * Add the {@link IItem} for a parser to the sections map.
+     */
+    private void putSection(IParser parser, IItem item) {
+        if (item != null && !(parser instanceof NoopParser)) {
+            mSections.put(parser, item);
+            // CLog.v("Just ran the %s parser", parser.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Wait for a section parsed on the executor, rethrowing any exception from the parser.
+     */
+    private static IItem getResult(Future<IItem> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
 }
 
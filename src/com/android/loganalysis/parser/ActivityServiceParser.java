@@ -44,7 +44,7 @@ public class ActivityServiceParser extends AbstractSectionParser {
      */
     @Override
     public ActivityServiceItem parse(List<String> lines) {
-        setup();
+        ensureSetUp();
         for (String line : lines) {
             if (!mParsedInput && !"".equals(line.trim())) {
                 mParsedInput = true;
@@ -58,11 +58,22 @@ public class ActivityServiceParser extends AbstractSectionParser {
     /**
      * Sets up the parser by adding the section parsers.
      */
+    @Override
     protected void setup() {
         addSectionParser(mLocationParser, LOCATION_SECTION_REGEX);
         addSectionParser(new NoopParser(), NOOP_SECTION_REGEX);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        mActivityServiceItem = null;
+        mParsedInput = false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -111,7 +111,7 @@ public class BatteryStatsDetailedInfoParser extends AbstractSectionParser {
      */
     @Override
     public BatteryStatsDetailedInfoItem parse(List<String> lines) {
-        setup();
+        ensureSetUp();
         for (String line : lines) {
             if (!mParsedInput && !"".equals(line.trim())) {
                 mParsedInput = true;
@@ -125,6 +125,7 @@ public class BatteryStatsDetailedInfoParser extends AbstractSectionParser {
     /**
      * Sets up the parser by adding the section parsers.
      */
+    @Override
     protected void setup() {
         setParser(mBatteryTimeParser);
         addSectionParser(mBatteryUsageParser, BATTERY_USAGE_SECTION_REGEX);
@@ -134,6 +135,16 @@ public class BatteryStatsDetailedInfoParser extends AbstractSectionParser {
         addSectionParser(mProcessUsageParser, PROCESS_USAGE_SECTION_REGEX);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        mBatteryStatsDetailedInfoItem = null;
+        mParsedInput = false;
+    }
+
     /**
      * Set the {@link BatteryStatsDetailedInfoItem}
      *
@@ -111,6 +111,18 @@ public class BatteryStatsSummaryInfoParser implements IParser{
         return mItem;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mBatteryDischarge = new BatteryDischargeItem();
+        mItem = new BatteryStatsSummaryInfoItem();
+        mBatteryDischargeRateAvg = 0;
+        mBatteryDischargeSamples = 0;
+        mResetTime = null;
+    }
+
     private Calendar getDischargeClockTime(int days, int hours, int mins, int secs) {
         Calendar dischargeClockTime = new GregorianCalendar();
 
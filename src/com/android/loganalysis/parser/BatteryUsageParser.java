@@ -56,6 +56,14 @@ public class BatteryUsageParser implements IParser {
         return mItem;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mItem = new BatteryUsageItem();
+    }
+
     /**
      * Get the {@link BatteryUsageItem}.
      * <p>
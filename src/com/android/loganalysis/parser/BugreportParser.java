@@ -22,6 +22,7 @@ import com.android.loganalysis.item.BugreportItem.CommandLineItem;
 import com.android.loganalysis.item.DumpsysItem;
 import com.android.loganalysis.item.IItem;
 import com.android.loganalysis.item.KernelLogItem;
+import com.android.loganalysis.item.LazyValue;
 import com.android.loganalysis.item.LogcatItem;
 import com.android.loganalysis.item.MemInfoItem;
 import com.android.loganalysis.item.MiscKernelLogItem;
@@ -30,15 +31,27 @@ import com.android.loganalysis.item.ProcrankItem;
 import com.android.loganalysis.item.SystemPropsItem;
 import com.android.loganalysis.item.TopItem;
 import com.android.loganalysis.item.TracesItem;
+import com.android.loganalysis.util.MappedLineReader;
+import com.android.loganalysis.util.SectionIndex;
+import com.android.loganalysis.util.TimestampDecoder;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.ParseException;
+import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,6 +73,34 @@ public class BugreportParser extends AbstractSectionParser {
             "^------ APP SERVICES \\(dumpsys activity service all\\) ------$";
     private static final String NOOP_SECTION_REGEX = "------ .* ------";
 
+    /** The name of the memory info section, for {@link #setSections(Set)}. */
+    public static final String MEM_INFO_SECTION = "mem-info";
+    /** The name of the procrank section, for {@link #setSections(Set)}. */
+    public static final String PROCRANK_SECTION = "procrank";
+    /** The name of the top section, for {@link #setSections(Set)}. */
+    public static final String TOP_SECTION = "top";
+    /** The name of the system properties section, for {@link #setSections(Set)}. */
+    public static final String SYSTEM_PROPS_SECTION = "system-props";
+    /** The name of the ANR traces section, for {@link #setSections(Set)}. */
+    public static final String TRACES_SECTION = "traces";
+    /** The name of the system log section, for {@link #setSections(Set)}. */
+    public static final String SYSTEM_LOG_SECTION = "system-log";
+    /** The name of the kernel log section, for {@link #setSections(Set)}. */
+    public static final String KERNEL_LOG_SECTION = "kernel-log";
+    /** The name of the last kmsg section, for {@link #setSections(Set)}. */
+    public static final String LAST_KMSG_SECTION = "last-kmsg";
+    /** The name of the dumpsys section, for {@link #setSections(Set)}. */
+    public static final String DUMPSYS_SECTION = "dumpsys";
+    /** The name of the activity service section, for {@link #setSections(Set)}. */
+    public static final String ACTIVITY_SERVICE_SECTION = "activity-service";
+    /** The prefix which selects a single service of the dumpsys section. */
+    public static final String DUMPSYS_SERVICE_PREFIX = DUMPSYS_SECTION + ":";
+
+    private static final Set<String> SECTION_NAMES = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList(MEM_INFO_SECTION, PROCRANK_SECTION, TOP_SECTION,
+            SYSTEM_PROPS_SECTION, TRACES_SECTION, SYSTEM_LOG_SECTION, KERNEL_LOG_SECTION,
+            LAST_KMSG_SECTION, DUMPSYS_SECTION, ACTIVITY_SERVICE_SECTION)));
+
     private static final String BOOTREASON_PROP = "ro.boot.bootreason";
     private static final String BOOTREASON_KERNEL = "androidboot.bootreason";
 
@@ -121,6 +162,152 @@ public class BugreportParser extends AbstractSectionParser {
     private CommandLineItem mCommandLine = new CommandLineItem();
 
     private boolean mParsedInput = false;
+    private boolean mLazy = false;
+    private Set<String> mSections = null;
+    private Set<String> mDumpsysServices = null;
+
+    /**
+     * A section of a bugreport which is parsed from the file the first time it is read.
+     */
+    private static class LazySection extends LazyValue<IItem> {
+        private final File mFile;
+        private final SectionIndex mIndex;
+        private final IParser mParser;
+        private final List<SectionIndex.Section> mSections;
+
+        public LazySection(File file, SectionIndex index, IParser parser,
+                List<SectionIndex.Section> sections) {
+            mFile = file;
+            mIndex = index;
+            mParser = parser;
+            mSections = sections;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected IItem compute() {
+            if (!mIndex.isValidFor(mFile)) {
+                throw new IllegalStateException(String.format(
+                        "%s has changed since it was parsed", mFile));
+            }
+            IItem item = null;
+            try {
+                MappedLineReader reader = new MappedLineReader(mFile);
+                try {
+                    for (SectionIndex.Section section : mSections) {
+                        mIndex.verify(reader, section);
+                        IItem result = mParser.parse(readSection(reader, section));
+                        if (result != null) {
+                            item = result;
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (SectionIndex.StaleIndexException e) {
+                throw new IllegalStateException(String.format(
+                        "%s has changed since it was parsed", mFile), e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return item;
+        }
+
+        /**
+         * Read the lines of a section after its header, which are the block that the section
+         * parser would be given by {@link BugreportParser#parse(MappedLineReader)}.
+         */
+        private static List<String> readSection(MappedLineReader reader,
+                SectionIndex.Section section) throws IOException {
+            final long end = section.getOffset() + section.getLength();
+            List<String> lines = new ArrayList<String>();
+            CharSequence line;
+
+            reader.seek(section.getOffset());
+            reader.readLine();
+            while (reader.getPosition() < end && (line = reader.readLine()) != null) {
+                lines.add(line.toString());
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Set whether the sections of the bugreport should be parsed in parallel.
+     * <p>
+     * If enabled, sections such as the system log, kernel log, and dumpsys are parsed on the
+     * common {@link ForkJoinPool} as soon as the end of each section has been read, and the
+     * {@link BugreportItem} is assembled once all sections are parsed.  The events of the system
+     * log are also created in parallel.
+     * </p>
+     *
+     * @param parallel true to parse sections in parallel.
+     */
+    public void setParallel(boolean parallel) {
+        setExecutor(parallel ? ForkJoinPool.commonPool() : null);
+        mLogcatParser.setExecutor(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Set whether sections which the rest of the bugreport does not depend on are parsed the first
+     * time they are read from the {@link BugreportItem}, instead of when the bugreport is parsed.
+     * <p>
+     * This only applies to {@link #parse(MappedLineReader, SectionIndex)}.  The memory info, top,
+     * dumpsys and activity service sections are parsed lazily, by reading them again from the
+     * file.  The system log, kernel logs, procrank, system properties and traces are always parsed
+     * because the events in the logs are linked to the other sections.
+     * </p>
+     *
+     * @param lazy true to parse sections lazily.
+     */
+    public void setLazy(boolean lazy) {
+        mLazy = lazy;
+    }
+
+    /**
+     * Set which sections of the bugreport are parsed.  The other sections are skipped without
+     * being buffered, and the {@link BugreportItem} does not have their items.
+     * <p>
+     * Sections are named by the constants such as {@link #SYSTEM_LOG_SECTION}.  A name such as
+     * {@code dumpsys:batterystats} selects the dumpsys section but only parses the named service,
+     * unless the whole dumpsys section is also selected.  The bugreport header is always parsed.
+     * </p>
+     *
+     * @param sections The names of the sections to parse, or null to parse all sections.
+     * @throws IllegalArgumentException if a section or dumpsys service is unknown.
+     * @see DumpsysParser#setServices(Set)
+     */
+    public void setSections(Set<String> sections) {
+        Set<String> selected = null;
+        Set<String> services = null;
+        if (sections != null) {
+            selected = new HashSet<String>();
+            services = new HashSet<String>();
+            for (String section : sections) {
+                if (section.startsWith(DUMPSYS_SERVICE_PREFIX)) {
+                    selected.add(DUMPSYS_SECTION);
+                    services.add(section.substring(DUMPSYS_SERVICE_PREFIX.length()));
+                } else if (SECTION_NAMES.contains(section)) {
+                    selected.add(section);
+                } else {
+                    throw new IllegalArgumentException(String.format(
+                            "Unknown bugreport section: %s", section));
+                }
+            }
+            if (sections.contains(DUMPSYS_SECTION)) {
+                services = null;
+            }
+        }
+
+        mDumpsysParser.setServices(services);
+        mDumpsysServices = services;
+        if (!Objects.equals(selected, mSections)) {
+            mSections = selected;
+            clearSectionParsers();
+        }
+    }
 
     /**
      * Parse a bugreport from a {@link BufferedReader} into an {@link BugreportItem} object.
@@ -132,7 +319,7 @@ public class BugreportParser extends AbstractSectionParser {
     public BugreportItem parse(BufferedReader input) throws IOException {
         String line;
 
-        setup();
+        ensureSetUp();
         while ((line = input.readLine()) != null) {
             if (!mParsedInput && !"".equals(line.trim())) {
                 mParsedInput = true;
@@ -144,6 +331,106 @@ public class BugreportParser extends AbstractSectionParser {
         return mBugreport;
     }
 
+    /**
+     * Parse a bugreport from a {@link MappedLineReader} into an {@link BugreportItem} object.
+     * <p>
+     * Lines are only converted to {@link String}s if they are buffered for a section parser.
+     * </p>
+     *
+     * @param input a {@link MappedLineReader}.
+     * @return The {@link BugreportItem}.
+     * @see #parse(List)
+     */
+    public BugreportItem parse(MappedLineReader input) throws IOException {
+        CharSequence line;
+
+        ensureSetUp();
+        while ((line = input.readLine()) != null) {
+            if (!mParsedInput && !isBlank(line)) {
+                mParsedInput = true;
+            }
+            parseLine(line);
+        }
+        commit();
+
+        return mBugreport;
+    }
+
+    /**
+     * Parse a bugreport from a {@link MappedLineReader} into an {@link BugreportItem} object,
+     * using a {@link SectionIndex} to seek past the sections which would be skipped.
+     * <p>
+     * The result is the same as {@link #parse(MappedLineReader)} as long as the index was built
+     * by {@link #buildIndex(File)} for the same file.  If {@link #setLazy(boolean)} is set, some
+     * sections are only parsed when they are first read.  The hash of each section is checked
+     * before it is parsed.
+     * </p>
+     *
+     * @param input a {@link MappedLineReader}.
+     * @param index the {@link SectionIndex} of the file.
+     * @return The {@link BugreportItem}.
+     * @throws SectionIndex.StaleIndexException if a parsed section has changed since the file was
+     * indexed.  The parser must be reset before it is used again.
+     */
+    public BugreportItem parse(MappedLineReader input, SectionIndex index) throws IOException {
+        ensureSetUp();
+        if (!index.getSections().isEmpty()) {
+            // Section headers are never blank.
+            mParsedInput = true;
+        }
+        parseRange(input, 0, index.getPreambleLength());
+        Map<IParser, List<SectionIndex.Section>> lazySections =
+                new HashMap<IParser, List<SectionIndex.Section>>();
+        for (SectionIndex.Section section : index.getSections()) {
+            IParser parser = getSectionParser(section.getHeader());
+            if (parser instanceof NoopParser) {
+                continue;
+            }
+            if (mLazy && isLazyParser(parser)) {
+                if (!lazySections.containsKey(parser)) {
+                    lazySections.put(parser, new ArrayList<SectionIndex.Section>());
+                }
+                lazySections.get(parser).add(section);
+                continue;
+            }
+            index.verify(input, section);
+            parseRange(input, section.getOffset(), section.getOffset() + section.getLength());
+        }
+        commit();
+
+        if (mBugreport != null && !lazySections.isEmpty()) {
+            File file = input.getFile();
+            setLazySection(BugreportItem.MEM_INFO, new MemInfoParser(),
+                    lazySections.get(mMemInfoParser), file, index);
+            setLazySection(BugreportItem.TOP, new TopParser(), lazySections.get(mTopParser), file,
+                    index);
+            DumpsysParser dumpsysParser = new DumpsysParser();
+            dumpsysParser.setServices(mDumpsysServices);
+            setLazySection(BugreportItem.DUMPSYS, dumpsysParser,
+                    lazySections.get(mDumpsysParser), file, index);
+            setLazySection(BugreportItem.ACTIVITY_SERVICE, new ActivityServiceParser(),
+                    lazySections.get(mActivityServiceParser), file, index);
+        }
+        return mBugreport;
+    }
+
+    /**
+     * Build a {@link SectionIndex} of a bugreport, with a section for each header that switches
+     * parsers in {@link #parse(MappedLineReader)}.
+     *
+     * @param file the bugreport.
+     * @return The {@link SectionIndex}.
+     */
+    public SectionIndex buildIndex(File file) throws IOException {
+        ensureSetUp();
+        return SectionIndex.build(file, new SectionIndex.HeaderFilter() {
+            @Override
+            public boolean isHeader(CharSequence line) {
+                return isSectionHeader(line);
+            }
+        });
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -151,7 +438,7 @@ public class BugreportParser extends AbstractSectionParser {
      */
     @Override
     public BugreportItem parse(List<String> lines) {
-        setup();
+        ensureSetUp();
         for (String line : lines) {
             if (!mParsedInput && !"".equals(line.trim())) {
                 mParsedInput = true;
@@ -167,24 +454,42 @@ public class BugreportParser extends AbstractSectionParser {
      * Sets up the parser by adding the section parsers and adding an initial {@link IParser} to
      * parse the bugreport header.
      */
+    @Override
     protected void setup() {
         // Set the initial parser explicitly since the header isn't part of a section.
         setParser(mBugreportParser);
-        addSectionParser(mMemInfoParser, MEM_INFO_SECTION_REGEX);
-        addSectionParser(mProcrankParser, PROCRANK_SECTION_REGEX);
-        addSectionParser(mTopParser, TOP_SECTION_REGEX);
-        addSectionParser(mSystemPropsParser, SYSTEM_PROP_SECTION_REGEX);
-        addSectionParser(mTracesParser, ANR_TRACES_SECTION_REGEX);
-        addSectionParser(mLogcatParser, SYSTEM_LOG_SECTION_REGEX);
-        addSectionParser(mKernelLogParser, KERNEL_LOG_SECTION_REGEX);
-        addSectionParser(mLastKmsgParser, LAST_KMSG_SECTION_REGEX);
-        addSectionParser(mDumpsysParser, DUMPSYS_SECTION_REGEX);
-        addSectionParser(mActivityServiceParser, ACTIVITY_SERVICE_SECTION_REGEX);
+        addSectionParser(selectParser(MEM_INFO_SECTION, mMemInfoParser), MEM_INFO_SECTION_REGEX);
+        addSectionParser(selectParser(PROCRANK_SECTION, mProcrankParser), PROCRANK_SECTION_REGEX);
+        addSectionParser(selectParser(TOP_SECTION, mTopParser), TOP_SECTION_REGEX);
+        addSectionParser(selectParser(SYSTEM_PROPS_SECTION, mSystemPropsParser),
+                SYSTEM_PROP_SECTION_REGEX);
+        addSectionParser(selectParser(TRACES_SECTION, mTracesParser), ANR_TRACES_SECTION_REGEX);
+        addSectionParser(selectParser(SYSTEM_LOG_SECTION, mLogcatParser),
+                SYSTEM_LOG_SECTION_REGEX);
+        addSectionParser(selectParser(KERNEL_LOG_SECTION, mKernelLogParser),
+                KERNEL_LOG_SECTION_REGEX);
+        addSectionParser(selectParser(LAST_KMSG_SECTION, mLastKmsgParser),
+                LAST_KMSG_SECTION_REGEX);
+        addSectionParser(selectParser(DUMPSYS_SECTION, mDumpsysParser), DUMPSYS_SECTION_REGEX);
+        addSectionParser(selectParser(ACTIVITY_SERVICE_SECTION, mActivityServiceParser),
+                ACTIVITY_SERVICE_SECTION_REGEX);
         addSectionParser(new NoopParser(), NOOP_SECTION_REGEX);
         mKernelLogParser.setAddUnknownBootreason(false);
         mLastKmsgParser.setAddUnknownBootreason(false);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        mBugreport = null;
+        mCommandLine = new CommandLineItem();
+        mParsedInput = false;
+        mLogcatParser.setYear(null);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -300,16 +605,65 @@ public class BugreportParser extends AbstractSectionParser {
     }
 
     /**
-     * Converts a {@link String} into a {@link Date}.
+     * Get the parser for a section, or a {@link NoopParser} to skip it if it is not selected.  The
+     * header of a skipped section still switches parsers, so its lines are not added to the
+     * previous section.
      */
-    private static Date parseTime(String timeStr) {
-        DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        try {
-            return formatter.parse(timeStr);
-        } catch (ParseException e) {
-            // CLog.e("Could not parse time string %s", timeStr);
-            return null;
+    private IParser selectParser(String section, IParser parser) {
+        return mSections == null || mSections.contains(section) ? parser : new NoopParser();
+    }
+
+    /**
+     * Returns true if a section parser can be run lazily, because no other section depends on it.
+     */
+    private boolean isLazyParser(IParser parser) {
+        return parser == mMemInfoParser || parser == mTopParser || parser == mDumpsysParser
+                || parser == mActivityServiceParser;
+    }
+
+    /**
+     * Set a section of the {@link BugreportItem} to be parsed lazily by a new parser, if the
+     * bugreport has the section.
+     */
+    private void setLazySection(String attribute, IParser parser,
+            List<SectionIndex.Section> sections, File file, SectionIndex index) {
+        if (sections != null) {
+            mBugreport.setLazySection(attribute, new LazySection(file, index, parser, sections));
+        }
+    }
+
+    /**
+     * Parse the lines between two byte offsets of a {@link MappedLineReader}.
+     */
+    private void parseRange(MappedLineReader input, long start, long end) throws IOException {
+        CharSequence line;
+
+        input.seek(start);
+        while (input.getPosition() < end && (line = input.readLine()) != null) {
+            if (!mParsedInput && !isBlank(line)) {
+                mParsedInput = true;
+            }
+            parseLine(line);
+        }
+    }
+
+    /**
+     * Returns true if a {@link CharSequence} only contains whitespace.
+     */
+    private static boolean isBlank(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) > ' ') {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * Converts a {@link String} in the format {@code yyyy-MM-dd HH:mm:ss} into a {@link Date}.
+     */
+    private static Date parseTime(String timeStr) {
+        return TimestampDecoder.toDate(new TimestampDecoder().decode(timeStr));
     }
 }
 
@@ -100,6 +100,14 @@ public class DmesgParser implements IParser {
         return mDmesgItem;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mDmesgItem = new DmesgItem();
+    }
+
     /**
      * Parse the kernel log till EOF to retrieve the duration of the service calls, start times of
      * different boot stages and actions taken. Besides, while parsing these informations are stored
@@ -54,7 +54,7 @@ public class DumpsysBatteryStatsParser extends AbstractSectionParser {
      */
     @Override
     public DumpsysBatteryStatsItem parse(List<String> lines) {
-        setup();
+        ensureSetUp();
         for (String line : lines) {
             if (!mParsedInput && !"".equals(line.trim())) {
                 mParsedInput = true;
@@ -68,6 +68,7 @@ public class DumpsysBatteryStatsParser extends AbstractSectionParser {
     /**
      * Sets up the parser by adding the section parsers.
      */
+    @Override
     protected void setup() {
         addSectionParser(mSummaryParser, SUMMARY_INFO_SECTION_REGEX);
         addSectionParser(mDetailedParser, DETAILED_INFO_SECTION_REGEX);
@@ -75,6 +76,16 @@ public class DumpsysBatteryStatsParser extends AbstractSectionParser {
         addSectionParser(new NoopParser(), NOOP_SECTION_REGEX);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        mDumpsysBatteryStatsItem = null;
+        mParsedInput = false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -21,7 +21,12 @@ import com.android.loganalysis.item.DumpsysItem;
 import com.android.loganalysis.item.DumpsysProcStatsItem;
 import com.android.loganalysis.item.DumpsysWifiStatsItem;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * A {@link IParser} to handle the output of the dumpsys section of the bugreport.
@@ -33,11 +38,47 @@ public class DumpsysParser extends AbstractSectionParser {
     private static final String WIFI_SECTION_REGEX = "^DUMP OF SERVICE wifi:";
     private static final String NOOP_SECTION_REGEX = "DUMP OF SERVICE .*";
 
+    /** The name of the batterystats service, for {@link #setServices(Set)}. */
+    public static final String BATTERY_STATS_SERVICE = "batterystats";
+    /** The name of the procstats service, for {@link #setServices(Set)}. */
+    public static final String PROC_STATS_SERVICE = "procstats";
+    /** The name of the wifi service, for {@link #setServices(Set)}. */
+    public static final String WIFI_SERVICE = "wifi";
+
+    private static final Set<String> SERVICE_NAMES = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList(BATTERY_STATS_SERVICE, PROC_STATS_SERVICE,
+            WIFI_SERVICE)));
+
     private DumpsysBatteryStatsParser mBatteryStatsParser = new DumpsysBatteryStatsParser();
     private DumpsysProcStatsParser mProcStatsParser = new DumpsysProcStatsParser();
     private DumpsysWifiStatsParser mWifiStatsParser = new DumpsysWifiStatsParser();
 
     private DumpsysItem mDumpsys = null;
+    private Set<String> mServices = null;
+
+    /**
+     * Set which services are parsed.  The output of the other services is skipped without being
+     * buffered, and the {@link DumpsysItem} does not have their items.
+     *
+     * @param services The names of the services to parse, or null to parse all services.
+     * @throws IllegalArgumentException if a service is not one of {@link #BATTERY_STATS_SERVICE},
+     * {@link #PROC_STATS_SERVICE} or {@link #WIFI_SERVICE}.
+     */
+    public void setServices(Set<String> services) {
+        if (services != null) {
+            for (String service : services) {
+                if (!SERVICE_NAMES.contains(service)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Unknown dumpsys service: %s", service));
+                }
+            }
+            services = new HashSet<String>(services);
+        }
+        if (!Objects.equals(services, mServices)) {
+            mServices = services;
+            clearSectionParsers();
+        }
+    }
 
     /**
      * {@inheritDoc}
@@ -46,7 +87,7 @@ public class DumpsysParser extends AbstractSectionParser {
      */
     @Override
     public DumpsysItem parse(List<String> lines) {
-        setup();
+        ensureSetUp();
         for (String line : lines) {
             if (mDumpsys == null && !"".equals(line.trim())) {
                 mDumpsys = new DumpsysItem();
@@ -61,13 +102,32 @@ public class DumpsysParser extends AbstractSectionParser {
     /**
      * Sets up the parser by adding the section parsers.
      */
+    @Override
     protected void setup() {
-        addSectionParser(mBatteryStatsParser, BATTERY_STATS_SECTION_REGEX);
-        addSectionParser(mProcStatsParser, PROC_STATS_SECTION_REGEX);
-        addSectionParser(mWifiStatsParser, WIFI_SECTION_REGEX);
+        addSectionParser(selectParser(BATTERY_STATS_SERVICE, mBatteryStatsParser),
+                BATTERY_STATS_SECTION_REGEX);
+        addSectionParser(selectParser(PROC_STATS_SERVICE, mProcStatsParser),
+                PROC_STATS_SECTION_REGEX);
+        addSectionParser(selectParser(WIFI_SERVICE, mWifiStatsParser), WIFI_SECTION_REGEX);
         addSectionParser(new NoopParser(), NOOP_SECTION_REGEX);
     }
 
+    /**
+     * Get the parser for a service, or a {@link NoopParser} to skip it if it is not selected.
+     */
+    private IParser selectParser(String service, IParser parser) {
+        return mServices == null || mServices.contains(service) ? parser : new NoopParser();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        mDumpsys = null;
+    }
+
     /**
      * {@inheritDoc}
      */
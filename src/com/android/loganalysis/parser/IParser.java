@@ -24,6 +24,11 @@ import java.util.List;
  * that it can consider complete.  It parses the input and returns a single {@link IItem} instance.
  * Furthermore, the parser should be robust against invalid input -- the input format may drift over
  * time.
+ * <p>
+ * Some parsers add the blocks from successive calls to {@link #parse(List)} to the same
+ * {@link IItem}.  Such a parser can be reused for a new log after calling {@link #reset()}.
+ * Parsers are not thread safe, so a parser should only be used by one thread at a time.
+ * </p>
  */
 public interface IParser {
 
@@ -34,5 +39,12 @@ public interface IParser {
      * @return The parsed {@link IItem} object.
      */
     public IItem parse(List<String> lines);
+
+    /**
+     * Discard the results of any previous calls to {@link #parse(List)}, so the next call starts a
+     * new {@link IItem}.  Settings such as patterns or options are kept.
+     */
+    public default void reset() {
+    }
 }
 
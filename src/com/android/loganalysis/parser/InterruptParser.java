@@ -59,6 +59,14 @@ public class InterruptParser implements IParser {
         return mItem;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mItem = new InterruptItem();
+    }
+
     /**
      * Get the {@link InterruptItem}.
      * <p>
@@ -119,6 +119,18 @@ public class KernelLogParser implements IParser {
         return mKernelLog;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mKernelLog = null;
+        mStartTime = null;
+        mStopTime = null;
+        mPreambleUtil.clear();
+        mBootreasonFound = false;
+    }
+
     /**
      * Parse a line of input.
      *
@@ -194,7 +206,7 @@ public class KernelLogParser implements IParser {
             kernelLogItem = new MiscKernelLogItem();
         }
         kernelLogItem.setEventTime(mStopTime);
-        kernelLogItem.setPreamble(mPreambleUtil.getLastTail());
+        kernelLogItem.setPreamble(mPreambleUtil.getLastTailSnapshot());
         kernelLogItem.setStack(message);
         kernelLogItem.setCategory(category);
         mKernelLog.addEvent(kernelLogItem);
@@ -213,7 +225,7 @@ public class KernelLogParser implements IParser {
         if (mAddUnknownBootreason && !mBootreasonFound) {
             MiscKernelLogItem unknownReset = new MiscKernelLogItem();
             unknownReset.setEventTime(mStopTime);
-            unknownReset.setPreamble(mPreambleUtil.getLastTail());
+            unknownReset.setPreamble(mPreambleUtil.getLastTailSnapshot());
             unknownReset.setCategory(KERNEL_RESET);
             unknownReset.setStack("Unknown reason");
             mKernelLog.addEvent(unknownReset);
@@ -56,6 +56,14 @@ public class LocationServiceParser implements IParser {
         return mItem;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mItem = new LocationDumpsItem();
+    }
+
     /**
      * Get the {@link LocationDumpsItem}.
      * <p>
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.parser;
+
+import com.android.loganalysis.item.MiscLogcatItem;
+
+/**
+ * An interface for receiving events from a {@link LogcatParser} as soon as they are complete,
+ * instead of collecting them in a {@link com.android.loganalysis.item.LogcatItem}.
+ *
+ * @see LogcatParser#setEventListener(LogcatEventListener)
+ */
+public interface LogcatEventListener {
+
+    /**
+     * Called when an event has been parsed.  Events are reported in the order that they started
+     * in the logcat.
+     *
+     * @param item The event, such as an {@link com.android.loganalysis.item.AnrItem},
+     * {@link com.android.loganalysis.item.JavaCrashItem} or
+     * {@link com.android.loganalysis.item.NativeCrashItem}.
+     */
+    public void onEvent(MiscLogcatItem item);
+}
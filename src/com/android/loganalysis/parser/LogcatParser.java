@@ -18,30 +18,46 @@ package com.android.loganalysis.parser;
 import com.android.loganalysis.item.LogcatItem;
 import com.android.loganalysis.item.MiscLogcatItem;
 import com.android.loganalysis.util.ArrayUtil;
+import com.android.loganalysis.util.CompositeKeyMap;
 import com.android.loganalysis.util.LogPatternUtil;
 import com.android.loganalysis.util.LogTailUtil;
+import com.android.loganalysis.util.MappedLineReader;
+import com.android.loganalysis.util.TimestampDecoder;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Calendar;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * An {@link IParser} to handle logcat.  The parser can handle the time and threadtime logcat
- * formats.
+ * formats, with any of the timestamp formats supported by {@link LogcatTokenizer}.
  * <p>
  * Since the timestamps in the logcat do not have a year, the year can be set manually when the
  * parser is created or through {@link #setYear(String)}.  If a year is not set, the current year
  * will be used.
+ * </p><p>
+ * By default, events are collected until the end of the input and then added to the
+ * {@link LogcatItem}.  If a {@link LogcatEventListener} is set, each event is instead passed to
+ * the listener once it is complete, so memory use does not grow with the length of the logcat.
+ * In that case, a group of lines for an event is complete when a new event starts for the same
+ * process and thread, or when no lines have been added to it for a number of log lines (see
+ * {@link #setQuietLineCount(int)}).
  * </p>
  */
 public class LogcatParser implements IParser {
@@ -53,27 +69,22 @@ public class LogcatParser implements IParser {
     public static final String RUNTIME_RESTART = "RUNTIME_RESTART";
 
     /**
-     * Match a single line of `logcat -v threadtime`, such as:
-     *
-     * <pre>05-26 11:02:36.886 5689 5689 D AndroidRuntime: CheckJNI is OFF.</pre>
+     * The default number of log lines without a new line for an event after which the event is
+     * complete, if a {@link LogcatEventListener} is set.
      */
-    private static final Pattern THREADTIME_LINE =
-            // UID was added to logcat. It could either be a number or a string.
-            Pattern.compile(
-                    // timestamp[1]
-                    "^(\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}.\\d{3})"
-                            // pid/tid and log level [2-4]
-                            + "(?:\\s+[0-9A-Za-z]+)?\\s+(\\d+)\\s+(\\d+)\\s+([A-Z])\\s+"
-                            // tag and message [5-6]
-                            + "(.+?)\\s*: (.*)$");
+    public static final int DEFAULT_QUIET_LINE_COUNT = 1000;
 
     /**
-     * Match a single line of `logcat -v time`, such as:
-     * 06-04 02:32:14.002 D/dalvikvm(  236): GC_CONCURRENT freed 580K, 51% free [...]
+     * The default number of bytes of a logcat file which are classified together by
+     * {@link #parse(File, ExecutorService)}.
      */
-    private static final Pattern TIME_LINE = Pattern.compile(
-            "^(\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}.\\d{3})\\s+" +  /* timestamp [1] */
-                "(\\w)/(.+?)\\(\\s*(\\d+)\\): (.*)$");  /* level, tag, pid, msg [2-5] */
+    public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /** The number of groups of lines which are made into events by each task on the executor. */
+    private static final int EVENT_BATCH_SIZE = 64;
+
+    /** The number of chunks which can be classified while waiting for the oldest chunk. */
+    private static final int MAX_PENDING_CHUNKS = 2 * Runtime.getRuntime().availableProcessors();
 
     /**
      * Match: "*** FATAL EXCEPTION IN SYSTEM PROCESS: message"
@@ -96,17 +107,22 @@ public class LogcatParser implements IParser {
      * Class for storing logcat meta data for a particular grouped list of lines.
      */
     private class LogcatData {
+        public boolean mIsGrouped = false;
+        public long mGroupKey = 0;
+        public int mGroupId = 0;
+        public long mLastLine = 0;
+        public boolean mFinished = false;
         public Integer mPid = null;
         public Integer mTid = null;
-        public Date mTime = null;
+        public long mTime = TimestampDecoder.NO_TIME;
         public String mLevel = null;
         public String mTag = null;
-        public String mLastPreamble = null;
-        public String mProcPreamble = null;
+        public CharSequence mLastPreamble = null;
+        public CharSequence mProcPreamble = null;
         public List<String> mLines = new LinkedList<String>();
 
-        public LogcatData(Integer pid, Integer tid, Date time, String level, String tag,
-                String lastPreamble, String procPreamble) {
+        public LogcatData(Integer pid, Integer tid, long time, String level, String tag,
+                CharSequence lastPreamble, CharSequence procPreamble) {
             mPid = pid;
             mTid = tid;
             mTime = time;
@@ -117,21 +133,52 @@ public class LogcatParser implements IParser {
         }
     }
 
+    /**
+     * A line of input which has been tokenized and matched against the patterns which only
+     * depend on the line itself, by {@link #classifyLine}.
+     */
+    private static class ClassifiedLine {
+        public String mLine = null;
+        public boolean mIsLogLine = false;
+        public Integer mPid = null;
+        public Integer mTid = null;
+        public long mTime = TimestampDecoder.NO_TIME;
+        public String mLevel = null;
+        public String mTag = null;
+        public String mMsg = null;
+        public boolean mIsReboot = false;
+        public boolean mIsLogStart = false;
+        public String mProcessName = null;
+        public boolean mIsAnrStart = false;
+        public boolean mIsNativeCrashStart = false;
+        public boolean mMatchesPattern = false;
+    }
+
     private LogPatternUtil mPatternUtil = new LogPatternUtil();
     private LogTailUtil mPreambleUtil = new LogTailUtil();
+    private LogcatTokenizer mTokenizer = new LogcatTokenizer();
 
     private String mYear = null;
+    private Integer mYearValue = null;
+    private TimestampDecoder mTimestampDecoder = new TimestampDecoder();
+    private ClassifiedLine mClassifiedLine = new ClassifiedLine();
 
     LogcatItem mLogcat = null;
 
-    Map<String, LogcatData> mDataMap = new HashMap<String, LogcatData>();
+    CompositeKeyMap<LogcatData> mDataMap = new CompositeKeyMap<LogcatData>();
+    private Map<String, Integer> mTagIds = new HashMap<String, Integer>();
     List<LogcatData> mDataList = new LinkedList<LogcatData>();
 
-    private Date mStartTime = null;
-    private Date mStopTime = null;
+    private long mStartTime = TimestampDecoder.NO_TIME;
+    private long mStopTime = TimestampDecoder.NO_TIME;
 
     private boolean mIsParsing = true;
 
+    private LogcatEventListener mListener = null;
+    private ExecutorService mExecutor = null;
+    private int mQuietLineCount = DEFAULT_QUIET_LINE_COUNT;
+    private long mLineCount = 0;
+
     private Map<Integer, String> mPids = new HashMap<Integer, String>();
 
     private List<CrashTag> mJavaCrashTags = new ArrayList<>();
@@ -165,6 +212,38 @@ public class LogcatParser implements IParser {
      */
     public void setYear(String year) {
         mYear = year;
+        mYearValue = null;
+    }
+
+    /**
+     * Sets a {@link LogcatEventListener} which is passed each event as soon as it is complete.
+     * The events are then not added to the {@link LogcatItem}.
+     *
+     * @param listener The listener, or null to collect the events in the {@link LogcatItem}.
+     */
+    public void setEventListener(LogcatEventListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sets the {@link ExecutorService} used to create the events from the groups of lines at the
+     * end of the input.  The events are still added to the {@link LogcatItem} in order.  Not used
+     * if a {@link LogcatEventListener} is set, since the events are then created as they finish.
+     *
+     * @param executor The {@link ExecutorService}, or null to create the events one at a time.
+     */
+    public void setExecutor(ExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Sets the number of log lines without a new line for an event after which the event is
+     * complete.  Only used if a {@link LogcatEventListener} is set.
+     *
+     * @param lines The number of log lines.
+     */
+    public void setQuietLineCount(int lines) {
+        mQuietLineCount = lines;
     }
 
     /**
@@ -184,6 +263,81 @@ public class LogcatParser implements IParser {
         return mLogcat;
     }
 
+    /**
+     * Parse a logcat from a {@link MappedLineReader} into an {@link LogcatItem} object.
+     *
+     * @param input a {@link MappedLineReader}.
+     * @return The {@link LogcatItem}.
+     * @see #parse(List)
+     */
+    public LogcatItem parse(MappedLineReader input) throws IOException {
+        CharSequence line;
+        while ((line = input.readLine()) != null) {
+            parseLine(line.toString());
+        }
+        commit();
+
+        return mLogcat;
+    }
+
+    /**
+     * Parse a logcat file into an {@link LogcatItem} object, splitting the file into chunks which
+     * are tokenized and classified on an {@link ExecutorService}.
+     * <p>
+     * Each chunk is a range of whole lines.  The classified lines are then added to the events in
+     * the order of the file, so events which span chunks, preambles and reboots are handled the
+     * same as by {@link #parse(MappedLineReader)}.  Only a few chunks are held in memory at once.
+     * </p>
+     *
+     * @param file The logcat file.
+     * @param executor The {@link ExecutorService} to classify the chunks on.
+     * @return The {@link LogcatItem}.
+     * @throws IOException if the file could not be read.
+     */
+    public LogcatItem parse(File file, ExecutorService executor) throws IOException {
+        return parse(file, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Parse a logcat file in chunks of a given size.  Exposed for unit testing.
+     *
+     * @see #parse(File, ExecutorService)
+     */
+    LogcatItem parse(final File file, ExecutorService executor, long chunkSize)
+            throws IOException {
+        // Set the year before the chunks are classified, since they all read it.
+        initYear();
+        final long size = file.length();
+        LinkedList<Future<List<ClassifiedLine>>> pending =
+                new LinkedList<Future<List<ClassifiedLine>>>();
+        long next = 0;
+        try {
+            while (next < size || !pending.isEmpty()) {
+                while (next < size && pending.size() < MAX_PENDING_CHUNKS) {
+                    final long start = next;
+                    final long end = Math.min(size, start + Math.max(chunkSize, 1));
+                    pending.add(executor.submit(new Callable<List<ClassifiedLine>>() {
+                        @Override
+                        public List<ClassifiedLine> call() throws IOException {
+                            return classifyChunk(file, start, end);
+                        }
+                    }));
+                    next = end;
+                }
+                for (ClassifiedLine line : getChunk(pending.removeFirst())) {
+                    addLine(line);
+                }
+            }
+        } finally {
+            for (Future<List<ClassifiedLine>> future : pending) {
+                future.cancel(true);
+            }
+        }
+        commit();
+
+        return mLogcat;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -208,129 +362,287 @@ public class LogcatParser implements IParser {
         mDataMap.clear();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Unlike {@link #clear()}, this also forgets the process names, log tails and times seen in
+     * the previous input.  The year, listener and crash tags are kept.
+     * </p>
+     */
+    @Override
+    public void reset() {
+        clear();
+        mPreambleUtil.clear();
+        mPids.clear();
+        mStartTime = TimestampDecoder.NO_TIME;
+        mStopTime = TimestampDecoder.NO_TIME;
+        mIsParsing = true;
+        mLineCount = 0;
+    }
+
     /**
      * Parse a line of input.
      *
      * @param line The line to parse
      */
     private void parseLine(String line) {
+        if (classifyLine(line, mTokenizer, mTimestampDecoder, mClassifiedLine)) {
+            addLine(mClassifiedLine);
+        }
+    }
+
+    /**
+     * Tokenize a line and match it against the patterns which do not depend on the lines before
+     * it.  This is the part of parsing a line which can be done for many lines at once.
+     *
+     * @param line The line to classify.
+     * @param tokenizer The {@link LogcatTokenizer} to use.
+     * @param decoder The {@link TimestampDecoder} to use.
+     * @param result The {@link ClassifiedLine} to fill in.
+     * @return false if the line is blank and should be ignored.
+     */
+    private boolean classifyLine(String line, LogcatTokenizer tokenizer,
+            TimestampDecoder decoder, ClassifiedLine result) {
         if ("".equals(line.trim())) {
-            return;
+            return false;
+        }
+        result.mLine = line;
+        result.mPid = null;
+        result.mTid = null;
+        result.mTime = TimestampDecoder.NO_TIME;
+        result.mLevel = null;
+        result.mTag = null;
+        result.mMsg = null;
+        result.mIsReboot = false;
+        result.mProcessName = null;
+        result.mIsAnrStart = false;
+        result.mIsNativeCrashStart = false;
+        result.mMatchesPattern = false;
+
+        result.mIsLogLine = tokenizer.tokenize(line);
+        if (result.mIsLogLine) {
+            result.mTime = getTime(line, tokenizer, decoder);
+            result.mPid = tokenizer.getPid();
+            if (tokenizer.hasTid()) {
+                result.mTid = tokenizer.getTid();
+            }
+            result.mLevel = tokenizer.getLevel();
+            result.mTag = tokenizer.getTag();
+            result.mMsg = tokenizer.getMessage();
+
+            final String level = result.mLevel;
+            final String tag = result.mTag;
+            final String msg = result.mMsg;
+            result.mIsReboot = "I".equals(level) && "ShutdownThread".equals(tag)
+                    && msg.startsWith("Rebooting, reason: ");
+            Matcher pidMatcher = JAVA_PROC_START.matcher(msg);
+            if (pidMatcher.matches()) {
+                result.mProcessName = pidMatcher.group(1);
+            }
+            if ("E".equals(level) && "ActivityManager".equals(tag)) {
+                result.mIsAnrStart = AnrParser.START.matcher(msg).matches();
+            }
+            if (anyNativeCrashTagMatches(level, tag)) {
+                result.mIsNativeCrashStart = NativeCrashParser.FINGERPRINT.matcher(msg).matches();
+            }
+            result.mMatchesPattern =
+                    mPatternUtil.checkMessage(msg, new ExtrasPattern(level, tag)) != null;
+        }
+        result.mIsLogStart = line.contains("--------- beginning of ");
+        return true;
+    }
+
+    /**
+     * Classify the lines which start in a range of a file.  A line which starts before the range
+     * belongs to the previous chunk, even if it ends inside the range.
+     *
+     * @param file The logcat file.
+     * @param start The byte offset of the start of the range.
+     * @param end The byte offset of the end of the range.
+     * @return The {@link ClassifiedLine}s, without the blank lines.
+     */
+    private List<ClassifiedLine> classifyChunk(File file, long start, long end)
+            throws IOException {
+        LogcatTokenizer tokenizer = new LogcatTokenizer();
+        TimestampDecoder decoder = new TimestampDecoder();
+        List<ClassifiedLine> lines = new ArrayList<ClassifiedLine>();
+        MappedLineReader reader = new MappedLineReader(file);
+        try {
+            if (start > 0) {
+                // Skip the rest of the line which contains the byte before the range, which ends
+                // at or after the start of the range.
+                reader.seek(start - 1);
+                reader.readLine();
+            }
+            CharSequence line;
+            while (reader.getPosition() < end && (line = reader.readLine()) != null) {
+                ClassifiedLine classified = new ClassifiedLine();
+                if (classifyLine(line.toString(), tokenizer, decoder, classified)) {
+                    lines.add(classified);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Wait for a chunk classified on the executor, rethrowing any exception.
+     */
+    private static List<ClassifiedLine> getChunk(Future<List<ClassifiedLine>> future)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
         }
+    }
+
+    /**
+     * Add a classified line to the events, in the order of the input.
+     *
+     * @param line The {@link ClassifiedLine} from {@link #classifyLine}.
+     */
+    private void addLine(ClassifiedLine line) {
         if (mLogcat == null) {
             mLogcat = new LogcatItem();
         }
-        Integer pid = null;
-        Integer tid = null;
-        Date time = null;
-        String level = null;
-        String tag = null;
-        String msg = null;
-
-        Matcher m = THREADTIME_LINE.matcher(line);
-        Matcher tm = TIME_LINE.matcher(line);
-        if (m.matches()) {
-            time = parseTime(m.group(1));
-            pid = Integer.parseInt(m.group(2));
-            tid = Integer.parseInt(m.group(3));
-            level = m.group(4);
-            tag = m.group(5);
-            msg = m.group(6);
-        } else if (tm.matches()) {
-            time = parseTime(tm.group(1));
-            level = tm.group(2);
-            tag = tm.group(3);
-            pid = Integer.parseInt(tm.group(4));
-            msg = tm.group(5);
-        }
-
-        if (time != null) {
-            if (mStartTime == null) {
+        final Integer pid = line.mPid;
+        final Integer tid = line.mTid;
+        final long time = line.mTime;
+        final String level = line.mLevel;
+        final String tag = line.mTag;
+        final String msg = line.mMsg;
+
+        if (time != TimestampDecoder.NO_TIME) {
+            if (mStartTime == TimestampDecoder.NO_TIME) {
                 mStartTime = time;
             }
             mStopTime = time;
         }
 
         // Don't parse any lines after device begins reboot until a new log is detected.
-        if ("I".equals(level) && "ShutdownThread".equals(tag) &&
-                Pattern.matches("Rebooting, reason: .*", msg)) {
+        if (line.mIsReboot) {
             mIsParsing = false;
         }
-        if (Pattern.matches(".*--------- beginning of .*", line)) {
+        if (line.mIsLogStart) {
             mIsParsing = true;
         }
 
-        if (!mIsParsing || !(m.matches() || tm.matches())) {
+        if (!mIsParsing || !line.mIsLogLine) {
             return;
         }
-
+        mLineCount++;
 
         // When a non app java process starts add its pid to the map
-        Matcher pidMatcher = JAVA_PROC_START.matcher(msg);
-        if (pidMatcher.matches()) {
-            String name = pidMatcher.group(1);
-            mPids.put(pid, name);
+        if (line.mProcessName != null) {
+            mPids.put(pid, line.mProcessName);
         }
 
         // ANRs are separated either by different PID/TIDs or when AnrParser.START matches a line.
         // The newest entry is kept in the dataMap for quick lookup while all entries are added to
         // the list.
         if ("E".equals(level) && "ActivityManager".equals(tag)) {
-            String key = encodeLine(pid, tid, level, tag);
-            LogcatData data;
-            if (!mDataMap.containsKey(key) || AnrParser.START.matcher(msg).matches()) {
-                data = new LogcatData(pid, tid, time, level, tag, mPreambleUtil.getLastTail(),
-                        mPreambleUtil.getIdTail(pid));
-                mDataMap.put(key, data);
-                mDataList.add(data);
-            } else {
-                data = mDataMap.get(key);
-            }
-            data.mLines.add(msg);
+            addGroupedLine(line.mIsAnrStart, pid, tid, time, level, tag, msg);
         }
 
         // Native crashes are separated either by different PID/TIDs or when
         // NativeCrashParser.FINGERPRINT matches a line.  The newest entry is kept in the dataMap
         // for quick lookup while all entries are added to the list.
         if (anyNativeCrashTagMatches(level, tag)) {
-            String key = encodeLine(pid, tid, level, tag);
-            LogcatData data;
-            if (!mDataMap.containsKey(key) || NativeCrashParser.FINGERPRINT.matcher(msg).matches()) {
-                data = new LogcatData(pid, tid, time, level, tag, mPreambleUtil.getLastTail(),
-                        mPreambleUtil.getIdTail(pid));
-                mDataMap.put(key, data);
-                mDataList.add(data);
-            } else {
-                data = mDataMap.get(key);
-            }
-            data.mLines.add(msg);
+            addGroupedLine(line.mIsNativeCrashStart, pid, tid, time, level, tag, msg);
         }
 
         // PID and TID are enough to separate Java crashes.
         if (anyJavaCrashTagMatches(level, tag)) {
-            String key = encodeLine(pid, tid, level, tag);
-            LogcatData data;
-            if (!mDataMap.containsKey(key)) {
-                data = new LogcatData(pid, tid, time, level, tag, mPreambleUtil.getLastTail(),
-                        mPreambleUtil.getIdTail(pid));
-                mDataMap.put(key, data);
-                mDataList.add(data);
-            } else {
-                data = mDataMap.get(key);
-            }
-            data.mLines.add(msg);
+            addGroupedLine(false, pid, tid, time, level, tag, msg);
         }
 
         // Check the message here but add it in commit()
-        if (mPatternUtil.checkMessage(msg, new ExtrasPattern(level, tag)) != null) {
+        if (line.mMatchesPattern) {
             LogcatData data = new LogcatData(pid, tid, time, level, tag,
-                    mPreambleUtil.getLastTail(), mPreambleUtil.getIdTail(pid));
+                    mPreambleUtil.getLastTailSnapshot(), mPreambleUtil.getIdTailSnapshot(pid));
             data.mLines.add(msg);
+            data.mFinished = true;
             mDataList.add(data);
         }
 
         // After parsing the line, add it the the buffer for the preambles.
-        mPreambleUtil.addLine(pid, line);
+        mPreambleUtil.addLine(pid, line.mLine);
+
+        if (mListener != null) {
+            emitEvents(false);
+        }
+    }
+
+    /**
+     * Add a line to the newest group of lines with the same pid, tid, level and tag, or to a new
+     * group.
+     *
+     * @param isStart Whether the line starts a new group.
+     */
+    private void addGroupedLine(boolean isStart, Integer pid, Integer tid, long time,
+            String level, String tag, String msg) {
+        final long key = getGroupKey(pid, tid);
+        final int id = getGroupId(level, tag);
+        LogcatData data = mDataMap.get(key, id);
+        if (data == null || isStart || isQuiet(data)) {
+            if (data != null) {
+                data.mFinished = true;
+            }
+            data = new LogcatData(pid, tid, time, level, tag,
+                    mPreambleUtil.getLastTailSnapshot(), mPreambleUtil.getIdTailSnapshot(pid));
+            data.mIsGrouped = true;
+            data.mGroupKey = key;
+            data.mGroupId = id;
+            mDataMap.put(key, id, data);
+            mDataList.add(data);
+        }
+        data.mLines.add(msg);
+        data.mLastLine = mLineCount;
+    }
+
+    /**
+     * Returns true if a group of lines is complete because no lines have been added to it
+     * recently.  Groups are only completed this way if a {@link LogcatEventListener} is set.
+     */
+    private boolean isQuiet(LogcatData data) {
+        return mListener != null && mLineCount - data.mLastLine > mQuietLineCount;
+    }
+
+    /**
+     * Pass the complete events to the {@link LogcatEventListener} and discard their lines.  The
+     * events are passed in order, so an event waits for all the events which started before it.
+     *
+     * @param all Whether to pass all remaining events, such as at the end of the input.
+     */
+    private void emitEvents(boolean all) {
+        while (!mDataList.isEmpty()) {
+            LogcatData data = mDataList.get(0);
+            if (!all && !data.mFinished && !isQuiet(data)) {
+                return;
+            }
+            mDataList.remove(0);
+            if (data.mIsGrouped && mDataMap.get(data.mGroupKey, data.mGroupId) == data) {
+                mDataMap.remove(data.mGroupKey, data.mGroupId);
+            }
+            MiscLogcatItem item = createEvent(data);
+            if (item != null) {
+                mListener.onEvent(item);
+            }
+        }
     }
 
     /**
@@ -340,103 +652,243 @@ public class LogcatParser implements IParser {
         if (mLogcat == null) {
             return;
         }
-        for (LogcatData data : mDataList) {
-            MiscLogcatItem item = null;
-            if ("E".equals(data.mLevel) && "ActivityManager".equals(data.mTag)) {
-                item = new AnrParser().parse(data.mLines);
-            } else if (anyJavaCrashTagMatches(data.mLevel, data.mTag)) {
-                // Get the process name/PID from the Java crash, then pass the rest of the lines to
-                // the parser.
-                Integer pid = null;
-                String app = null;
-                for (int i = 0; i < data.mLines.size(); i++) {
-                    String line = data.mLines.get(i);
-                    Matcher m = JAVA_CRASH_PROCESS_PID.matcher(line);
-                    if (m.matches()) {
-                        app = m.group(2);
-                        pid = Integer.valueOf(m.group(3));
-                        data.mLines = data.mLines.subList(i + 1, data.mLines.size());
-                        break;
-                    }
-                    m = SYSTEM_SERVER_CRASH.matcher(line);
-                    if (m.matches()) {
-                        app = mPids.get(data.mPid);
-                        if (app == null) {
-                            app = "system_server";
+        if (mListener != null) {
+            emitEvents(true);
+        } else if (mExecutor != null && mDataList.size() > EVENT_BATCH_SIZE) {
+            addEventsInParallel();
+        } else {
+            for (LogcatData data : mDataList) {
+                MiscLogcatItem item = createEvent(data);
+                if (item != null) {
+                    mLogcat.addEvent(item);
+                }
+            }
+        }
+
+        mLogcat.setStartTime(TimestampDecoder.toDate(mStartTime));
+        mLogcat.setStopTime(TimestampDecoder.toDate(mStopTime));
+    }
+
+    /**
+     * Create the events for the groups of lines in batches on the executor, and add them to the
+     * {@link LogcatItem} in order.  Each group is parsed on its own, and the process names are not
+     * changed after the input has finished, so the batches are independent.
+     */
+    private void addEventsInParallel() {
+        final List<LogcatData> dataList = new ArrayList<LogcatData>(mDataList);
+        List<Future<List<MiscLogcatItem>>> batches = new ArrayList<Future<List<MiscLogcatItem>>>();
+        try {
+            for (int i = 0; i < dataList.size(); i += EVENT_BATCH_SIZE) {
+                final List<LogcatData> batch = dataList.subList(i,
+                        Math.min(i + EVENT_BATCH_SIZE, dataList.size()));
+                batches.add(mExecutor.submit(new Callable<List<MiscLogcatItem>>() {
+                    @Override
+                    public List<MiscLogcatItem> call() {
+                        List<MiscLogcatItem> items = new ArrayList<MiscLogcatItem>(batch.size());
+                        for (LogcatData data : batch) {
+                            MiscLogcatItem item = createEvent(data);
+                            if (item != null) {
+                                items.add(item);
+                            }
                         }
-                        data.mLines = data.mLines.subList(i + 1, data.mLines.size());
-                        break;
+                        return items;
                     }
+                }));
+            }
+            for (Future<List<MiscLogcatItem>> batch : batches) {
+                for (MiscLogcatItem item : getBatch(batch)) {
+                    mLogcat.addEvent(item);
                 }
-                item = new JavaCrashParser().parse(data.mLines);
-                if (item != null) {
-                    item.setApp(app);
-                    item.setPid(pid);
-                    item.setCategory(getJavaCrashCategory(data.mLevel, data.mTag));
+            }
+        } finally {
+            for (Future<List<MiscLogcatItem>> batch : batches) {
+                batch.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Wait for a batch of events created on the executor, rethrowing any exception.
+     */
+    private static List<MiscLogcatItem> getBatch(Future<List<MiscLogcatItem>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Create the event for a group of lines.
+     *
+     * @return The {@link MiscLogcatItem}, or null if the lines could not be parsed.
+     */
+    private MiscLogcatItem createEvent(LogcatData data) {
+        MiscLogcatItem item = null;
+        if ("E".equals(data.mLevel) && "ActivityManager".equals(data.mTag)) {
+            item = new AnrParser().parse(data.mLines);
+        } else if (anyJavaCrashTagMatches(data.mLevel, data.mTag)) {
+            // Get the process name/PID from the Java crash, then pass the rest of the lines to
+            // the parser.
+            Integer pid = null;
+            String app = null;
+            for (int i = 0; i < data.mLines.size(); i++) {
+                String line = data.mLines.get(i);
+                Matcher m = JAVA_CRASH_PROCESS_PID.matcher(line);
+                if (m.matches()) {
+                    app = m.group(2);
+                    pid = Integer.valueOf(m.group(3));
+                    data.mLines = data.mLines.subList(i + 1, data.mLines.size());
+                    break;
                 }
-            } else if (anyNativeCrashTagMatches(data.mLevel, data.mTag)) {
-                // CLog.v("Parsing native crash: %s", data.mLines);
-                item = new NativeCrashParser().parse(data.mLines);
-            } else {
-                String msg = ArrayUtil.join("\n", data.mLines);
-                String category = mPatternUtil.checkMessage(msg, new ExtrasPattern(
-                        data.mLevel, data.mTag));
-                if (category != null) {
-                    MiscLogcatItem logcatItem = new MiscLogcatItem();
-                    logcatItem.setCategory(category);
-                    logcatItem.setStack(msg);
-                    item = logcatItem;
+                m = SYSTEM_SERVER_CRASH.matcher(line);
+                if (m.matches()) {
+                    app = mPids.get(data.mPid);
+                    if (app == null) {
+                        app = "system_server";
+                    }
+                    data.mLines = data.mLines.subList(i + 1, data.mLines.size());
+                    break;
                 }
             }
+            item = new JavaCrashParser().parse(data.mLines);
             if (item != null) {
-                item.setEventTime(data.mTime);
-                if (item.getPid() == null) {
-                    item.setPid(data.mPid);
-                    item.setTid(data.mTid);
-                }
-                item.setLastPreamble(data.mLastPreamble);
-                item.setProcessPreamble(data.mProcPreamble);
-                item.setTag(data.mTag);
-                mLogcat.addEvent(item);
+                item.setApp(app);
+                item.setPid(pid);
+                item.setCategory(getJavaCrashCategory(data.mLevel, data.mTag));
             }
+        } else if (anyNativeCrashTagMatches(data.mLevel, data.mTag)) {
+            // CLog.v("Parsing native crash: %s", data.mLines);
+            item = new NativeCrashParser().parse(data.mLines);
+        } else {
+            String msg = ArrayUtil.join("\n", data.mLines);
+            String category = mPatternUtil.checkMessage(msg, new ExtrasPattern(
+                    data.mLevel, data.mTag));
+            if (category != null) {
+                MiscLogcatItem logcatItem = new MiscLogcatItem();
+                logcatItem.setCategory(category);
+                logcatItem.setStack(msg);
+                item = logcatItem;
+            }
+        }
+        if (item != null) {
+            item.setEventTime(TimestampDecoder.toDate(data.mTime));
+            if (item.getPid() == null) {
+                item.setPid(data.mPid);
+                item.setTid(data.mTid);
+            }
+            item.setLastPreamble(data.mLastPreamble);
+            item.setProcessPreamble(data.mProcPreamble);
+            item.setTag(data.mTag);
         }
+        return item;
+    }
 
-        mLogcat.setStartTime(mStartTime);
-        mLogcat.setStopTime(mStopTime);
+    /**
+     * Pack the pid and tid of a grouped line into the key of {@link #mDataMap}.  Lines without a
+     * tid use a tid of -1, since the tids of lines which have one are never negative.
+     */
+    private static long getGroupKey(Integer pid, Integer tid) {
+        return ((long) pid << 32) | ((tid == null ? -1 : tid) & 0xffffffffL);
     }
 
     /**
-     * Create an identifier that "should" be unique for a given logcat. In practice, we do use it as
-     * a unique identifier.
+     * Get the id of the level and tag of a grouped line in {@link #mDataMap}.  Only the few tags
+     * which are grouped are given ids, and the level is a single character, so the tag id and
+     * level are packed into an int without allocating a key for each line.
      */
-    private static String encodeLine(Integer pid, Integer tid, String level, String tag) {
-        if (tid == null) {
-            return String.format("%d|%s|%s", pid, level, tag);
+    private int getGroupId(String level, String tag) {
+        Integer tagId = mTagIds.get(tag);
+        if (tagId == null) {
+            tagId = mTagIds.size();
+            mTagIds.put(tag, tagId);
         }
-        return String.format("%d|%d|%s|%s", pid, tid, level, tag);
+        return (tagId << 16) | level.charAt(0);
     }
 
     /**
-     * Parse the timestamp and return a {@link Date}.  If year is not set, the current year will be
+     * Get the timestamp of the last tokenized line in milliseconds since the epoch.  Timestamps in
+     * seconds are treated as the time since the epoch, including timestamps from
+     * {@code logcat -v monotonic}.
+     *
+     * @return The time, or {@link TimestampDecoder#NO_TIME} if it could not be parsed.
+     */
+    private long getTime(String line, LogcatTokenizer tokenizer, TimestampDecoder decoder) {
+        switch (tokenizer.getTimeFormat()) {
+            case MONTH_DAY:
+                return parseTime(line, tokenizer.getTimeStart(), decoder);
+            case YEAR:
+                return decoder.getTime(tokenizer.getYear(), tokenizer.getMonth(),
+                        tokenizer.getDay(), tokenizer.getHour(), tokenizer.getMinute(),
+                        tokenizer.getSecond(), tokenizer.getMillis());
+            default:
+                return tokenizer.getSeconds() * 1000 + tokenizer.getMillis();
+        }
+    }
+
+    /**
+     * Parse the timestamp at an index in a line.  If year is not set, the current year will be
      * used.
      *
-     * @param timeStr The timestamp in the format {@code MM-dd HH:mm:ss.SSS}.
-     * @return The {@link Date}.
+     * @param line The line containing a timestamp in the format {@code MM-dd HH:mm:ss.SSS}.
+     * @param start The index of the timestamp.
+     * @param decoder The {@link TimestampDecoder} to use.
+     * @return The time, or {@link TimestampDecoder#NO_TIME} if it could not be parsed.
      */
-    private Date parseTime(String timeStr) {
-        // If year is null, just use the current year.
-        if (mYear == null) {
-            DateFormat yearFormatter = new SimpleDateFormat("yyyy");
-            mYear = yearFormatter.format(new Date());
+    private long parseTime(String line, int start, TimestampDecoder decoder) {
+        initYear();
+        if (mYearValue >= 0) {
+            return decoder.decodeMonthDay(mYearValue, line, start);
         }
 
+        // The year is not a plain number, so leave it to SimpleDateFormat.
         DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
         try {
-            return formatter.parse(String.format("%s-%s", mYear, timeStr));
+            return formatter.parse(String.format("%s-%s", mYear,
+                    line.substring(start, start + 18))).getTime();
         } catch (ParseException e) {
             // CLog.e("Could not parse time string %s", timeStr);
-            return null;
+            return TimestampDecoder.NO_TIME;
+        }
+    }
+
+    /**
+     * Set the year to the current year if it has not been set, and parse it.
+     */
+    private void initYear() {
+        // If year is null, just use the current year.
+        if (mYear == null) {
+            mYear = Integer.toString(Calendar.getInstance().get(Calendar.YEAR));
+        }
+        if (mYearValue == null) {
+            mYearValue = parseYear(mYear);
+        }
+    }
+
+    /**
+     * Parse a year which only contains digits.
+     *
+     * @return The year, or -1 if the year is not a plain number.
+     */
+    private static int parseYear(String year) {
+        if (year.isEmpty() || year.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < year.length(); i++) {
+            if (year.charAt(i) < '0' || year.charAt(i) > '9') {
+                return -1;
+            }
         }
+        return Integer.parseInt(year);
     }
 
     private void initPatterns() {
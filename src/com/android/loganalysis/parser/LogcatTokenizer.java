@@ -0,0 +1,555 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.parser;
+
+/**
+ * A tokenizer for single lines of logcat, which splits a line into its timestamp, pid, tid, level,
+ * tag, and message in a single pass without regular expressions or allocations.
+ * <p>
+ * The following timestamp formats are supported:
+ * <ul>
+ * <li>{@code 05-26 11:02:36.886}, the default format.</li>
+ * <li>{@code 2017-05-26 11:02:36.886}, from {@code logcat -v year}.</li>
+ * <li>{@code 1495796556.886}, from {@code logcat -v epoch} or {@code logcat -v monotonic}.</li>
+ * </ul>
+ * Each of which can be followed by either of these layouts:
+ * <ul>
+ * <li>{@code 5689 5689 D AndroidRuntime: message}, from {@code logcat -v threadtime}, optionally
+ * preceded by a uid from {@code logcat -v uid}.</li>
+ * <li>{@code D/AndroidRuntime( 5689): message}, from {@code logcat -v time}.</li>
+ * </ul>
+ * The default timestamp format with either layout is tokenized exactly as the
+ * {@code THREADTIME_LINE} and {@code TIME_LINE} patterns in {@link LogcatParser} used to match.
+ * </p><p>
+ * The timestamp format and layout of the last tokenized line are tried first, since a log almost
+ * always uses a single format.  The tokenizer is reused between lines, and the values returned
+ * are only valid until the next call to {@link #tokenize(CharSequence)}.
+ * </p>
+ */
+public class LogcatTokenizer {
+
+    /** The format of a logcat timestamp. */
+    public enum TimeFormat {
+        /** {@code MM-dd HH:mm:ss.SSS} */
+        MONTH_DAY,
+        /** {@code yyyy-MM-dd HH:mm:ss.SSS} */
+        YEAR,
+        /** {@code seconds.SSS}, either since the epoch or since boot. */
+        SECONDS,
+    }
+
+    /** The layout of the fields following the timestamp. */
+    public enum Layout {
+        /** {@code [uid] pid tid level tag: message} */
+        THREADTIME,
+        /** {@code level/tag(pid): message} */
+        TIME,
+    }
+
+    private static final String[] LEVELS = new String[0x80];
+    static {
+        for (char c = 0; c < LEVELS.length; c++) {
+            LEVELS[c] = String.valueOf(c);
+        }
+    }
+
+    private TimeFormat mTimeFormat = TimeFormat.MONTH_DAY;
+    private Layout mLayout = Layout.THREADTIME;
+
+    private CharSequence mLine = null;
+    private int mLength = 0;
+
+    private int mTimeStart = 0;
+    private int mTimeEnd = 0;
+    private int mYear = -1;
+    private int mMonth = 0;
+    private int mDay = 0;
+    private int mHour = 0;
+    private int mMinute = 0;
+    private int mSecond = 0;
+    private int mMillis = 0;
+    private long mSeconds = 0;
+
+    private int mUidStart = -1;
+    private int mUidEnd = -1;
+    private int mPid = -1;
+    private int mTid = -1;
+    private char mLevel = 0;
+    private int mTagStart = 0;
+    private int mTagEnd = 0;
+    private int mMessageStart = 0;
+
+    /** The index of the last line terminator, if one has been found. */
+    private int mLastTerminator = -1;
+    /** The index from which the line has been scanned for line terminators. */
+    private int mTerminatorScanStart = 0;
+
+    /**
+     * Tokenize a line of logcat.
+     *
+     * @param line the line to tokenize.
+     * @return {@code true} if the line is a logcat line, in which case the getters return its
+     * fields, or {@code false} otherwise.
+     */
+    public boolean tokenize(CharSequence line) {
+        mLine = line;
+        mLength = line.length();
+        mLastTerminator = -1;
+        mTerminatorScanStart = mLength;
+
+        int end = parseTime(mTimeFormat);
+        if (end < 0) {
+            for (TimeFormat format : TimeFormat.values()) {
+                if (format != mTimeFormat) {
+                    end = parseTime(format);
+                    if (end >= 0) {
+                        mTimeFormat = format;
+                        break;
+                    }
+                }
+            }
+            if (end < 0) {
+                return false;
+            }
+        }
+        mTimeEnd = end;
+
+        if (parseLayout(mLayout, end)) {
+            return true;
+        }
+        for (Layout layout : Layout.values()) {
+            if (layout != mLayout && parseLayout(layout, end)) {
+                mLayout = layout;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a timestamp at the start of the line.
+     *
+     * @return the index after the timestamp, or -1 if the line does not start with a timestamp.
+     */
+    private int parseTime(TimeFormat format) {
+        mYear = -1;
+        mTimeStart = 0;
+        switch (format) {
+            case MONTH_DAY:
+                return parseMonthDay(0, false);
+            case YEAR:
+                if (mLength < 5 || !isDigits(0, 4) || mLine.charAt(4) != '-') {
+                    return -1;
+                }
+                mYear = parseInt(0, 4);
+                return parseMonthDay(5, true);
+            case SECONDS:
+                int start = skipSpaces(0);
+                int point = skipDigits(start);
+                if (point == start || point + 4 > mLength || mLine.charAt(point) != '.'
+                        || !isDigits(point + 1, point + 4) || point - start > 18) {
+                    return -1;
+                }
+                mTimeStart = start;
+                mSeconds = 0;
+                for (int i = start; i < point; i++) {
+                    mSeconds = mSeconds * 10 + mLine.charAt(i) - '0';
+                }
+                mMillis = parseInt(point + 1, point + 4);
+                return point + 4;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Parse a {@code MM-dd HH:mm:ss.SSS} timestamp.
+     *
+     * @param strictPoint if the separator before the milliseconds must be a {@code .}, instead of
+     * any character.
+     */
+    private int parseMonthDay(int start, boolean strictPoint) {
+        final int end = start + 18;
+        if (mLength < end || !isDigits(start, start + 2) || mLine.charAt(start + 2) != '-'
+                || !isDigits(start + 3, start + 5) || mLine.charAt(start + 5) != ' '
+                || !isDigits(start + 6, start + 8) || mLine.charAt(start + 8) != ':'
+                || !isDigits(start + 9, start + 11) || mLine.charAt(start + 11) != ':'
+                || !isDigits(start + 12, start + 14) || !isDigits(start + 15, end)) {
+            return -1;
+        }
+        char point = mLine.charAt(start + 14);
+        if (strictPoint ? point != '.' : isLineTerminator(point)) {
+            return -1;
+        }
+        mMonth = parseInt(start, start + 2);
+        mDay = parseInt(start + 3, start + 5);
+        mHour = parseInt(start + 6, start + 8);
+        mMinute = parseInt(start + 9, start + 11);
+        mSecond = parseInt(start + 12, start + 14);
+        mMillis = parseInt(start + 15, end);
+        return end;
+    }
+
+    private boolean parseLayout(Layout layout, int start) {
+        if (start >= mLength || !isSpace(mLine.charAt(start))) {
+            return false;
+        }
+        switch (layout) {
+            case THREADTIME:
+                return parseThreadtime(start);
+            case TIME:
+                return parseTimeLayout(start);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parse {@code [uid] pid tid level tag: message}, trying with a uid first.
+     */
+    private boolean parseThreadtime(int start) {
+        int uidStart = skipSpaces(start);
+        int uidEnd = uidStart;
+        while (uidEnd < mLength && isAlphanumeric(mLine.charAt(uidEnd))) {
+            uidEnd++;
+        }
+        if (uidEnd > uidStart && uidEnd < mLength && isSpace(mLine.charAt(uidEnd))
+                && parseThreadtimeFields(uidEnd)) {
+            mUidStart = uidStart;
+            mUidEnd = uidEnd;
+            return true;
+        }
+        mUidStart = -1;
+        mUidEnd = -1;
+        return parseThreadtimeFields(start);
+    }
+
+    private boolean parseThreadtimeFields(int start) {
+        int pidStart = skipSpaces(start);
+        int pidEnd = skipDigits(pidStart);
+        if (pidStart == start || pidEnd == pidStart || pidEnd >= mLength
+                || !isSpace(mLine.charAt(pidEnd))) {
+            return false;
+        }
+        int tidStart = skipSpaces(pidEnd);
+        int tidEnd = skipDigits(tidStart);
+        if (tidEnd == tidStart || tidEnd >= mLength || !isSpace(mLine.charAt(tidEnd))) {
+            return false;
+        }
+        int levelStart = skipSpaces(tidEnd);
+        if (levelStart + 1 >= mLength) {
+            return false;
+        }
+        char level = mLine.charAt(levelStart);
+        if (level < 'A' || level > 'Z' || !isSpace(mLine.charAt(levelStart + 1))) {
+            return false;
+        }
+        int pid = parseId(pidStart, pidEnd);
+        int tid = parseId(tidStart, tidEnd);
+        if (pid < 0 || tid < 0) {
+            return false;
+        }
+
+        // The whitespace before the tag is greedy, but gives up characters to the tag if the
+        // rest of the line does not match otherwise.
+        final int spaceStart = levelStart + 1;
+        for (int tagStart = skipSpaces(spaceStart); tagStart > spaceStart; tagStart--) {
+            if (parseThreadtimeTag(tagStart)) {
+                mPid = pid;
+                mTid = tid;
+                mLevel = level;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse {@code tag\s*: message}, where the tag is as short as possible.
+     */
+    private boolean parseThreadtimeTag(int tagStart) {
+        for (int tagEnd = tagStart + 1; tagEnd + 1 < mLength; tagEnd++) {
+            if (isLineTerminator(mLine.charAt(tagEnd - 1))) {
+                return false;
+            }
+            int colon = skipSpaces(tagEnd);
+            if (colon + 1 < mLength && mLine.charAt(colon) == ':'
+                    && mLine.charAt(colon + 1) == ' ' && isMessage(colon + 2)) {
+                mTagStart = tagStart;
+                mTagEnd = tagEnd;
+                mMessageStart = colon + 2;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse {@code level/tag(\s*pid): message}, where the tag is as short as possible.
+     */
+    private boolean parseTimeLayout(int start) {
+        int levelStart = skipSpaces(start);
+        if (levelStart + 2 >= mLength || !isWordChar(mLine.charAt(levelStart))
+                || mLine.charAt(levelStart + 1) != '/') {
+            return false;
+        }
+        final int tagStart = levelStart + 2;
+        for (int tagEnd = tagStart + 1; tagEnd < mLength; tagEnd++) {
+            if (isLineTerminator(mLine.charAt(tagEnd - 1))) {
+                return false;
+            }
+            if (mLine.charAt(tagEnd) != '(') {
+                continue;
+            }
+            int pidStart = skipSpaces(tagEnd + 1);
+            int pidEnd = skipDigits(pidStart);
+            if (pidEnd > pidStart && pidEnd + 2 < mLength && mLine.charAt(pidEnd) == ')'
+                    && mLine.charAt(pidEnd + 1) == ':' && mLine.charAt(pidEnd + 2) == ' '
+                    && isMessage(pidEnd + 3)) {
+                int pid = parseId(pidStart, pidEnd);
+                if (pid < 0) {
+                    return false;
+                }
+                mUidStart = -1;
+                mUidEnd = -1;
+                mPid = pid;
+                mTid = -1;
+                mLevel = mLine.charAt(levelStart);
+                mTagStart = tagStart;
+                mTagEnd = tagEnd;
+                mMessageStart = pidEnd + 3;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if there are no line terminators from an index to the end of the line.  The
+     * line is only scanned once, however many times this is called.
+     */
+    private boolean isMessage(int start) {
+        while (mTerminatorScanStart > start && mLastTerminator < 0) {
+            mTerminatorScanStart--;
+            if (isLineTerminator(mLine.charAt(mTerminatorScanStart))) {
+                mLastTerminator = mTerminatorScanStart;
+            }
+        }
+        return mLastTerminator < start;
+    }
+
+    private int skipSpaces(int start) {
+        while (start < mLength && isSpace(mLine.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private int skipDigits(int start) {
+        while (start < mLength && isDigit(mLine.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private boolean isDigits(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(mLine.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int parseInt(int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + mLine.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Parse a pid or tid, returning -1 if it does not fit in an int.
+     */
+    private int parseId(int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + mLine.charAt(i) - '0';
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) value;
+    }
+
+    /** Same as {@code \d} in a {@link java.util.regex.Pattern}. */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Same as {@code [0-9A-Za-z]} in a {@link java.util.regex.Pattern}. */
+    private static boolean isAlphanumeric(char c) {
+        return isDigit(c) || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /** Same as {@code \w} in a {@link java.util.regex.Pattern}. */
+    private static boolean isWordChar(char c) {
+        return isAlphanumeric(c) || c == '_';
+    }
+
+    /** Same as {@code \s} in a {@link java.util.regex.Pattern}. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** The characters which {@code .} does not match in a {@link java.util.regex.Pattern}. */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Get the timestamp format of the last tokenized line.
+     */
+    public TimeFormat getTimeFormat() {
+        return mTimeFormat;
+    }
+
+    /**
+     * Get the layout of the last tokenized line.
+     */
+    public Layout getLayout() {
+        return mLayout;
+    }
+
+    /**
+     * Get the index of the start of the timestamp.
+     */
+    public int getTimeStart() {
+        return mTimeStart;
+    }
+
+    /**
+     * Get the index after the end of the timestamp.
+     */
+    public int getTimeEnd() {
+        return mTimeEnd;
+    }
+
+    /**
+     * Get the year, or -1 if the timestamp format does not include the year.
+     */
+    public int getYear() {
+        return mYear;
+    }
+
+    /**
+     * Get the month, from 1 to 12 in a valid timestamp.
+     */
+    public int getMonth() {
+        return mMonth;
+    }
+
+    public int getDay() {
+        return mDay;
+    }
+
+    public int getHour() {
+        return mHour;
+    }
+
+    public int getMinute() {
+        return mMinute;
+    }
+
+    public int getSecond() {
+        return mSecond;
+    }
+
+    public int getMillis() {
+        return mMillis;
+    }
+
+    /**
+     * Get the whole seconds of a {@link TimeFormat#SECONDS} timestamp.
+     */
+    public long getSeconds() {
+        return mSeconds;
+    }
+
+    /**
+     * Returns true if the line has a uid.
+     */
+    public boolean hasUid() {
+        return mUidStart >= 0;
+    }
+
+    /**
+     * Get the uid, or {@code null} if the line does not have one.
+     */
+    public String getUid() {
+        return hasUid() ? mLine.subSequence(mUidStart, mUidEnd).toString() : null;
+    }
+
+    public int getPid() {
+        return mPid;
+    }
+
+    /**
+     * Returns true if the line has a tid.  Only the {@link Layout#THREADTIME} layout has a tid.
+     */
+    public boolean hasTid() {
+        return mTid >= 0;
+    }
+
+    /**
+     * Get the tid, or -1 if the line does not have one.
+     */
+    public int getTid() {
+        return mTid;
+    }
+
+    public char getLevelChar() {
+        return mLevel;
+    }
+
+    /**
+     * Get the level as a {@link String}.  Levels are cached, so this does not allocate.
+     */
+    public String getLevel() {
+        return mLevel < LEVELS.length ? LEVELS[mLevel] : String.valueOf(mLevel);
+    }
+
+    public int getTagStart() {
+        return mTagStart;
+    }
+
+    public int getTagEnd() {
+        return mTagEnd;
+    }
+
+    public String getTag() {
+        return mLine.subSequence(mTagStart, mTagEnd).toString();
+    }
+
+    public int getMessageStart() {
+        return mMessageStart;
+    }
+
+    public String getMessage() {
+        return mLine.subSequence(mMessageStart, mLength).toString();
+    }
+}
@@ -182,7 +182,7 @@ public class MonkeyLogParser implements IParser {
                     ((AnrItem) mMonkeyLog.getCrash()).setTrace(traces.getStack());
                 }
 
-                reset();
+                resetCrash();
                 mMatchedTrace = true;
             } else {
                 m = MONKEY_LOG_MESSAGE.matcher(line);
@@ -303,13 +303,23 @@ public class MonkeyLogParser implements IParser {
             mMonkeyLog.setCrash(crash);
         }
 
-        reset();
+        resetCrash();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        resetCrash();
+        mMatchedTrace = false;
+        mMonkeyLog = new MonkeyLogItem();
     }
 
     /**
      * Reset the parser state for crashes.
      */
-    private void reset() {
+    private void resetCrash() {
         mApp = null;
         mPid = null;
         mMatchingAnr = false;
@@ -93,6 +93,15 @@ public class ProcessUsageParser implements IParser {
         return mItem;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mItem = new ProcessUsageItem();
+        mSensorUsage = new LinkedList<SensorInfoItem>();
+    }
+
     /**
      * Get the {@link ProcessUsageItem}.
      * <p>
@@ -16,6 +16,7 @@
 package com.android.loganalysis.parser;
 
 import com.android.loganalysis.item.SmartMonkeyLogItem;
+import com.android.loganalysis.util.TimestampDecoder;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -74,7 +75,8 @@ public class SmartMonkeyLogParser implements IParser {
     private static final Pattern UI_CRASH = Pattern.compile(
             TIME_STAMP_GROUP + INVOKE_NUM_GROUP + SEQ_NUM_GROUP + "-UI Exception: CRASH: (.*)");
 
-    private final SmartMonkeyLogItem mSmartMonkeyLog = new SmartMonkeyLogItem();
+    private SmartMonkeyLogItem mSmartMonkeyLog = new SmartMonkeyLogItem();
+    private final TimestampDecoder mTimestampDecoder = new TimestampDecoder();
 
     /**
      * Parse a monkey log from a {@link BufferedReader} into an {@link SmartMonkeyLogItem}
@@ -111,6 +113,14 @@ public class SmartMonkeyLogParser implements IParser {
         return mSmartMonkeyLog;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mSmartMonkeyLog = new SmartMonkeyLogItem();
+    }
+
     /**
      * Parse a line of input.
      */
@@ -144,7 +154,7 @@ public class SmartMonkeyLogParser implements IParser {
         }
         m = START_TIME.matcher(line);
         if (m.matches()) {
-            mSmartMonkeyLog.setStartTime(parseTime(m.group(1)));
+            mSmartMonkeyLog.setStartTime(decodeTime(m.group(1)));
         }
         m = START_UPTIME.matcher(line);
         if (m.matches()) {
@@ -152,13 +162,13 @@ public class SmartMonkeyLogParser implements IParser {
         }
         m = STOP_UPTIME.matcher(line);
         if (m.matches()) {
-            mSmartMonkeyLog.setStopTime(parseTime(m.group(1)));
+            mSmartMonkeyLog.setStopTime(decodeTime(m.group(1)));
             mSmartMonkeyLog.setStopUptimeDuration(Long.parseLong(m.group(2)));
             mSmartMonkeyLog.setTotalDuration(Long.parseLong(m.group(3)));
         }
         m = INTERMEDIATE_TIME.matcher(line);
         if (m.matches()) {
-            mSmartMonkeyLog.setIntermediateTime(parseTime(m.group(1)));
+            mSmartMonkeyLog.setIntermediateTime(decodeTime(m.group(1)));
         }
         m = FINAL_COUNT.matcher(line);
         if (m.matches()) {
@@ -174,14 +184,21 @@ public class SmartMonkeyLogParser implements IParser {
         }
         m = UI_CRASH.matcher(line);
         if (m.matches()) {
-            mSmartMonkeyLog.addCrashTime(parseTime(m.group(1)));
+            mSmartMonkeyLog.addCrashTime(decodeTime(m.group(1)));
         }
         m = UI_ANR.matcher(line);
         if (m.matches()) {
-            mSmartMonkeyLog.addAnrTime(parseTime(m.group(1)));
+            mSmartMonkeyLog.addAnrTime(decodeTime(m.group(1)));
         }
     }
 
+    /**
+     * Decode a timestamp matched by {@link #TIME_STAMP_GROUP} and return a date.
+     */
+    private Date decodeTime(String timeStr) {
+        return TimestampDecoder.toDate(mTimestampDecoder.decode(timeStr));
+    }
+
     /**
      * Parse the timestamp and return a date.
      *
@@ -127,6 +127,14 @@ public class WakelockParser implements IParser {
         mItem.addWakeLock(name, processUID, wakelockTime, timesCalled, category);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        mItem = new WakelockItem();
+    }
+
     /**
      * Get the {@link WakelockItem}.
      * <p>
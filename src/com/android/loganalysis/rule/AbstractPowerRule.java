@@ -21,48 +21,67 @@ import com.android.loganalysis.item.BugreportItem;
 import com.android.loganalysis.item.BatteryStatsSummaryInfoItem;
 import com.android.loganalysis.item.DumpsysProcStatsItem;
 import com.android.loganalysis.item.DumpsysWifiStatsItem;
+import com.android.loganalysis.parser.BugreportParser;
+import com.android.loganalysis.parser.DumpsysParser;
 
 import org.json.JSONObject;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Base class for all power rules
  */
 public abstract class AbstractPowerRule implements IRule {
 
+    /** The sections of the bugreport which the power rules read */
+    private static final Set<String> REQUIRED_SECTIONS = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList(
+            BugreportParser.DUMPSYS_SERVICE_PREFIX + DumpsysParser.BATTERY_STATS_SERVICE,
+            BugreportParser.DUMPSYS_SERVICE_PREFIX + DumpsysParser.PROC_STATS_SERVICE,
+            BugreportParser.DUMPSYS_SERVICE_PREFIX + DumpsysParser.WIFI_SERVICE)));
+
     private BugreportItem mBugreportItem;
-    private BatteryStatsSummaryInfoItem mPowerSummaryAnalysisItem;
-    private BatteryStatsDetailedInfoItem mPowerDetailedAnalysisItem;
-    private DumpsysProcStatsItem mProcStatsItem;
-    private DumpsysWifiStatsItem mWifiStatsItem;
 
+    /**
+     * Constructor for {@link AbstractPowerRule}.  The dumpsys items are not read from the
+     * bugreport until the rule is applied.
+     */
     public AbstractPowerRule(BugreportItem bugreportItem) {
         mBugreportItem = bugreportItem;
-        mPowerSummaryAnalysisItem = mBugreportItem.getDumpsys().getBatteryStats().
-                getBatteryStatsSummaryItem();
-        mPowerDetailedAnalysisItem = mBugreportItem.getDumpsys().getBatteryStats().
-                getDetailedBatteryStatsItem();
-        mProcStatsItem = mBugreportItem.getDumpsys().getProcStats();
-        mWifiStatsItem = mBugreportItem.getDumpsys().getWifiStats();
     }
 
     protected long getTimeOnBattery() {
-        return mPowerDetailedAnalysisItem.getTimeOnBattery();
+        return getDetailedAnalysisItem().getTimeOnBattery();
     }
 
     protected BatteryStatsSummaryInfoItem getSummaryItem() {
-        return mPowerSummaryAnalysisItem;
+        return mBugreportItem.getDumpsys().getBatteryStats().getBatteryStatsSummaryItem();
     }
 
     protected BatteryStatsDetailedInfoItem getDetailedAnalysisItem() {
-        return mPowerDetailedAnalysisItem;
+        return mBugreportItem.getDumpsys().getBatteryStats().getDetailedBatteryStatsItem();
     }
 
     protected DumpsysProcStatsItem getProcStatsItem() {
-        return mProcStatsItem;
+        return mBugreportItem.getDumpsys().getProcStats();
     }
 
     protected DumpsysWifiStatsItem getWifiStatsItem() {
-        return mWifiStatsItem;
+        return mBugreportItem.getDumpsys().getWifiStats();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The power rules read the batterystats, procstats and wifi services of the dumpsys section.
+     * </p>
+     */
+    @Override
+    public Set<String> getRequiredSections() {
+        return REQUIRED_SECTIONS;
     }
 
     @Override
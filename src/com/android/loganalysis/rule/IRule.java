@@ -17,6 +17,8 @@ package com.android.loganalysis.rule;
 
 import org.json.JSONObject;
 
+import java.util.Set;
+
 /**
  * An interface which defines the rules. Individual rules will apply the filter on the parsed data
  *  and return the high level analysis in JSON Format
@@ -26,4 +28,15 @@ public interface IRule {
     public void applyRule();
 
     public JSONObject getAnalysis();
+
+    /**
+     * Get the sections of the bugreport which the rule reads, named as in
+     * {@link com.android.loganalysis.parser.BugreportParser#setSections(Set)}.  The other sections
+     * do not need to be parsed to apply the rule.
+     *
+     * @return The names of the sections, or null if the rule may read any section.
+     */
+    public default Set<String> getRequiredSections() {
+        return null;
+    }
 }
@@ -19,10 +19,13 @@ package com.android.loganalysis.rule;
 import com.android.loganalysis.item.BugreportItem;
 import com.android.loganalysis.item.LocationDumpsItem;
 import com.android.loganalysis.item.LocationDumpsItem.LocationInfoItem;
+import com.android.loganalysis.parser.BugreportParser;
 
 import java.util.concurrent.TimeUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -46,6 +49,19 @@ public class LocationUsageRule extends AbstractPowerRule {
         mBugreportItem = bugreportItem;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The location usage rule also reads the location dumps of the activity service section.
+     * </p>
+     */
+    @Override
+    public Set<String> getRequiredSections() {
+        Set<String> sections = new HashSet<String>(super.getRequiredSections());
+        sections.add(BugreportParser.ACTIVITY_SERVICE_SECTION);
+        return sections;
+    }
+
     @Override
     public void applyRule() {
         mOffendingLocationRequestList = new ArrayList<LocationInfoItem>();
@@ -18,13 +18,33 @@ package com.android.loganalysis.rule;
 import com.android.loganalysis.item.BugreportItem;
 
 import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 /**
  * Applies rules to the parsed bugreport
+ * <p>
+ * Rules only read the {@link BugreportItem}, so if an {@link ExecutorService} is set with
+ * {@link #setExecutor(ExecutorService)} they are applied concurrently.  A rule which takes longer
+ * than the timeout set with {@link #setTimeout(long)} is abandoned, and the analysis reports that
+ * it timed out along with the results of the other rules.
+ * </p>
  */
 public class RuleEngine {
 
@@ -32,14 +52,61 @@ public class RuleEngine {
         ALL, POWER;
     }
 
+    /** Constant for JSON output */
+    public static final String RULE = "RULE";
+    /** Constant for JSON output */
+    public static final String RUNTIME_MS = "RUNTIME_MS";
+    /** Constant for JSON output */
+    public static final String TIMED_OUT = "TIMED_OUT";
+
     BugreportItem mBugreportItem;
     private Collection<IRule> mRulesList;
+    private ExecutorService mExecutor = null;
+    private long mTimeoutMs = 0;
+    private boolean mRecordRuntimes = false;
+    private Map<IRule, Long> mRuntimes = new ConcurrentHashMap<IRule, Long>();
+    private Set<IRule> mTimedOut = new HashSet<IRule>();
 
     public RuleEngine(BugreportItem bugreportItem) {
         mBugreportItem = bugreportItem;
         mRulesList = new LinkedList<IRule>();
     }
 
+    /**
+     * Set the {@link ExecutorService} used to apply the rules concurrently.
+     *
+     * @param executor The {@link ExecutorService}, or null to apply the rules one at a time.
+     */
+    public void setExecutor(ExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Set how long to wait for each rule when the rules are applied concurrently.  There is no
+     * timeout if the rules are applied one at a time.  The time is
+     * counted from when the rule is submitted, so the executor should have a thread for each rule.
+     * A rule which times out is interrupted, but one which ignores interrupts keeps its thread.
+     *
+     * @param timeoutMs The timeout in milliseconds, or 0 to wait for every rule.
+     */
+    public void setTimeout(long timeoutMs) {
+        mTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Set whether the analysis of each rule includes its name and how long it took to apply.
+     */
+    public void setRecordRuntimes(boolean recordRuntimes) {
+        mRecordRuntimes = recordRuntimes;
+    }
+
+    /**
+     * Add a single rule.
+     */
+    public void addRule(IRule rule) {
+        mRulesList.add(rule);
+    }
+
     public void registerRules(RuleType ruleType) {
         if (ruleType == RuleType.ALL) {
             // add all rules
@@ -49,20 +116,136 @@ public class RuleEngine {
         }
     }
 
-    public void executeRules() {
+    /**
+     * Get the number of registered rules.
+     */
+    public int getRuleCount() {
+        return mRulesList.size();
+    }
+
+    /**
+     * Get the sections of the bugreport which the registered rules read.
+     *
+     * @return The names of the sections, or null if the rules may read any section.
+     * @see IRule#getRequiredSections()
+     */
+    public Set<String> getRequiredSections() {
+        Set<String> sections = new HashSet<String>();
         for (IRule rule : mRulesList) {
-            rule.applyRule();
+            Set<String> ruleSections = rule.getRequiredSections();
+            if (ruleSections == null) {
+                return null;
+            }
+            sections.addAll(ruleSections);
+        }
+        return sections;
+    }
+
+    /**
+     * Get the sections of the bugreport which a type of rules read, so that only those sections
+     * need to be parsed before the rules are applied.
+     *
+     * @return The names of the sections, or null if the rules may read any section.
+     */
+    public static Set<String> getRequiredSections(RuleType ruleType) {
+        RuleEngine ruleEngine = new RuleEngine(new BugreportItem());
+        ruleEngine.registerRules(ruleType);
+        return ruleEngine.getRequiredSections();
+    }
+
+    public void executeRules() {
+        mRuntimes.clear();
+        mTimedOut.clear();
+        if (mExecutor == null) {
+            for (IRule rule : mRulesList) {
+                applyRule(rule);
+            }
+            return;
+        }
+
+        Map<IRule, Future<?>> pending = new LinkedHashMap<IRule, Future<?>>();
+        Map<IRule, Long> deadlines = new HashMap<IRule, Long>();
+        for (final IRule rule : mRulesList) {
+            deadlines.put(rule, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mTimeoutMs));
+            pending.put(rule, mExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    applyRule(rule);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Map.Entry<IRule, Future<?>> entry : pending.entrySet()) {
+                waitForRule(entry.getKey(), entry.getValue(), deadlines.get(entry.getKey()));
+            }
+        } finally {
+            for (Future<?> future : pending.values()) {
+                future.cancel(true);
+            }
         }
     }
 
     public JSONArray getAnalysis() {
         JSONArray result = new JSONArray();
         for (IRule rule : mRulesList) {
-            result.put(rule.getAnalysis());
+            JSONObject analysis = mTimedOut.contains(rule) ? new JSONObject() : rule.getAnalysis();
+            try {
+                if (mTimedOut.contains(rule)) {
+                    analysis.put(RULE, rule.getClass().getSimpleName());
+                    analysis.put(TIMED_OUT, true);
+                } else if (mRecordRuntimes) {
+                    analysis.put(RULE, rule.getClass().getSimpleName());
+                }
+                if (mRecordRuntimes && mRuntimes.containsKey(rule)) {
+                    analysis.put(RUNTIME_MS, mRuntimes.get(rule));
+                }
+            } catch (JSONException e) {
+                // do nothing
+            }
+            result.put(analysis);
         }
         return result;
     }
 
+    /**
+     * Apply a rule and record how long it took.
+     */
+    private void applyRule(IRule rule) {
+        final long start = System.nanoTime();
+        rule.applyRule();
+        // A rule which has already timed out keeps the timeout as its runtime.
+        mRuntimes.putIfAbsent(rule, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Wait for a rule applied on the executor, rethrowing any exception from the rule.  If the
+     * timeout is set and the rule is not done by its deadline, it is marked as timed out.
+     */
+    private void waitForRule(IRule rule, Future<?> future, long deadline) {
+        try {
+            if (mTimeoutMs > 0) {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } else {
+                future.get();
+            }
+        } catch (TimeoutException e) {
+            mTimedOut.add(rule);
+            mRuntimes.put(rule, mTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     private void addPowerRules() {
         mRulesList.add(new WakelockRule(mBugreportItem));
         mRulesList.add(new ProcessUsageRule(mBugreportItem));
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+/**
+ * A hash map whose keys are a {@code long} and an {@code int}, such as a pid and tid packed into
+ * a {@code long} with an id for a tag.
+ * <p>
+ * The keys are stored in primitive arrays with open addressing and linear probing, so looking up
+ * or adding a key does not allocate a key object.  Null values are not allowed, since an empty
+ * slot is marked by a null value.  This class is not thread safe.
+ * </p>
+ */
+public class CompositeKeyMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    private int[] mIds;
+    private Object[] mValues;
+    private int mSize = 0;
+
+    /**
+     * The constructor for {@link CompositeKeyMap}.
+     */
+    public CompositeKeyMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Get the value for a key.
+     *
+     * @return The value, or null if there is no value for the key.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key, int id) {
+        int slot = find(key, id);
+        return slot < 0 ? null : (V) mValues[slot];
+    }
+
+    /**
+     * Set the value for a key.
+     *
+     * @return The previous value, or null if there was no value for the key.
+     * @throws IllegalArgumentException if the value is null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, int id, V value) throws IllegalArgumentException {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        int mask = mValues.length - 1;
+        int slot = getSlot(key, id, mask);
+        while (mValues[slot] != null) {
+            if (mKeys[slot] == key && mIds[slot] == id) {
+                V previous = (V) mValues[slot];
+                mValues[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mKeys[slot] = key;
+        mIds[slot] = id;
+        mValues[slot] = value;
+        mSize++;
+        // Keep the load factor at most 1/2 so that the probe sequences stay short.
+        if (mSize * 2 > mValues.length) {
+            resize(mValues.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value for a key.
+     *
+     * @return The removed value, or null if there was no value for the key.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key, int id) {
+        int slot = find(key, id);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = (V) mValues[slot];
+        mValues[slot] = null;
+        mSize--;
+
+        // Move the following entries in the probe sequence back, so that there are no gaps
+        // between the slot for a key and the slot it is stored in.
+        int mask = mValues.length - 1;
+        int empty = slot;
+        int next = (slot + 1) & mask;
+        while (mValues[next] != null) {
+            int home = getSlot(mKeys[next], mIds[next], mask);
+            if (((next - home) & mask) >= ((next - empty) & mask)) {
+                mKeys[empty] = mKeys[next];
+                mIds[empty] = mIds[next];
+                mValues[empty] = mValues[next];
+                mValues[next] = null;
+                empty = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return previous;
+    }
+
+    /**
+     * Get the number of keys in the map.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns true if the map is empty.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Remove all of the keys from the map.
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        mSize = 0;
+    }
+
+    /**
+     * Get the slot a key is stored in, or -1 if the key is not in the map.
+     */
+    private int find(long key, int id) {
+        int mask = mValues.length - 1;
+        int slot = getSlot(key, id, mask);
+        while (mValues[slot] != null) {
+            if (mKeys[slot] == key && mIds[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] keys = mKeys;
+        int[] ids = mIds;
+        Object[] values = mValues;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                int slot = getSlot(keys[i], ids[i], mask);
+                while (mValues[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                mKeys[slot] = keys[i];
+                mIds[slot] = ids[i];
+                mValues[slot] = values[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mIds = new int[capacity];
+        mValues = new Object[capacity];
+    }
+
+    /**
+     * Get the first slot to probe for a key.  The bits of the key are mixed so that keys which
+     * only differ in their high bits, such as pids packed above tids, are spread over the slots.
+     */
+    private static int getSlot(long key, int id, int mask) {
+        long hash = (key ^ (id * 0x9e3779b97f4a7c15L)) * 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Writes JSON to a {@link Writer} as it is generated, instead of building a {@link JSONObject}
+ * and converting it to a {@link String}.
+ * <p>
+ * Values are formatted the same way as {@link JSONObject#toString()}.  If an
+ * {@link ExecutorService} is set, parts of the output can be rendered concurrently with
+ * {@link #render(Writable)} and then written in order with {@link #renderedValue(Future)}.
+ * </p><p>
+ * A {@link JsonWriter} is not thread safe.
+ * </p>
+ */
+public class JsonWriter implements Flushable {
+
+    /**
+     * An interface for objects which can write themselves with a {@link JsonWriter}.
+     */
+    public interface Writable {
+        /**
+         * Write a single JSON value.
+         */
+        public void writeJson(JsonWriter writer) throws IOException;
+    }
+
+    private final Writer mOut;
+    private ExecutorService mExecutor = null;
+
+    /** Whether a value has been written at each level of nesting. */
+    private boolean[] mHasValue = new boolean[16];
+    private int mDepth = 0;
+    private boolean mAfterName = false;
+
+    /**
+     * Constructor for {@link JsonWriter}.
+     *
+     * @param out The {@link Writer} to write to.  It should be buffered.
+     */
+    public JsonWriter(Writer out) {
+        mOut = out;
+    }
+
+    /**
+     * Set the {@link ExecutorService} used to render values concurrently.
+     *
+     * @param executor The {@link ExecutorService}, or null to render values when they are written.
+     */
+    public void setExecutor(ExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Get the {@link ExecutorService} used to render values concurrently.
+     *
+     * @return The {@link ExecutorService}, or null if values are rendered when they are written.
+     */
+    public ExecutorService getExecutor() {
+        return mExecutor;
+    }
+
+    /**
+     * Begin a JSON object.
+     */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * End the current JSON object.
+     */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Begin a JSON array.
+     */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /**
+     * End the current JSON array.
+     */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Write the name of the next member of the current object.
+     */
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        mOut.write(JSONObject.quote(name));
+        mOut.write(':');
+        mAfterName = true;
+        return this;
+    }
+
+    /**
+     * Write a value.  {@link String}s, {@link Number}s, {@link Boolean}s, {@link JSONObject}s,
+     * {@link JSONArray}s and null are written directly.  Other values are formatted the same way as
+     * they would be in a {@link JSONObject}.
+     *
+     * @throws IllegalArgumentException If the value is a number which is not finite.
+     */
+    public JsonWriter value(Object value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            mOut.write("null");
+        } else if (value instanceof String) {
+            mOut.write(JSONObject.quote((String) value));
+        } else if (value instanceof Number) {
+            try {
+                mOut.write(JSONObject.numberToString((Number) value));
+            } catch (JSONException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        } else if (value instanceof Boolean || value instanceof JSONObject
+                || value instanceof JSONArray) {
+            mOut.write(value.toString());
+        } else {
+            // Let the JSON library format anything else, such as a collection.
+            String array = new JSONArray().put(value).toString();
+            mOut.write(array, 1, array.length() - 2);
+        }
+        return this;
+    }
+
+    /**
+     * Render a value into a buffer, concurrently if an {@link ExecutorService} is set.  The value
+     * is written by a separate {@link JsonWriter}, which does not render concurrently.
+     *
+     * @param writable The value to render.
+     * @return A {@link Future} of the rendered JSON, to pass to {@link #renderedValue(Future)}.
+     */
+    public Future<String> render(final Writable writable) {
+        Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                StringWriter buffer = new StringWriter();
+                writable.writeJson(new JsonWriter(buffer));
+                return buffer.toString();
+            }
+        };
+        if (mExecutor != null) {
+            return mExecutor.submit(task);
+        }
+        FutureTask<String> future = new FutureTask<String>(task);
+        future.run();
+        return future;
+    }
+
+    /**
+     * Write a value rendered by {@link #render(Writable)}, waiting for it if needed.
+     */
+    public JsonWriter renderedValue(Future<String> rendered) throws IOException {
+        String json;
+        try {
+            json = rendered.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        beforeValue();
+        mOut.write(json);
+        return this;
+    }
+
+    /**
+     * Returns true if a value can be written by {@link #value(Object)}.  Numbers which are not
+     * finite cannot be represented in JSON.
+     */
+    public static boolean isValid(Object value) {
+        if (value instanceof Double) {
+            return !((Double) value).isInfinite() && !((Double) value).isNaN();
+        } else if (value instanceof Float) {
+            return !((Float) value).isInfinite() && !((Float) value).isNaN();
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    private JsonWriter open(char c) throws IOException {
+        beforeValue();
+        mOut.write(c);
+        mDepth++;
+        if (mDepth == mHasValue.length) {
+            mHasValue = Arrays.copyOf(mHasValue, mDepth * 2);
+        }
+        mHasValue[mDepth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        if (mDepth == 0 || mAfterName) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        mDepth--;
+        mOut.write(c);
+        return this;
+    }
+
+    /**
+     * Write the separator needed before a value or a name.
+     */
+    private void beforeValue() throws IOException {
+        if (mAfterName) {
+            mAfterName = false;
+            return;
+        }
+        if (mDepth > 0) {
+            if (mHasValue[mDepth]) {
+                mOut.write(',');
+            }
+            mHasValue[mDepth] = true;
+        }
+    }
+}
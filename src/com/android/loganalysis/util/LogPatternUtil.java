@@ -15,9 +15,9 @@
  */
 package com.android.loganalysis.util;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -26,6 +26,11 @@ import java.util.regex.Pattern;
  * This is used to match a message against a set of patterns, and optionally, an extra object. If
  * the message is matched, a category will be returned. This means that a single object can be used
  * to match many different categories.
+ * </p><p>
+ * Patterns are checked in the order they were added, and the category of the first match is
+ * returned.  The patterns are compiled into a {@link PatternSet} on the first check after a
+ * pattern is added, so most patterns are never evaluated against a message which cannot match.
+ * </p>
  */
 public class LogPatternUtil {
 
@@ -52,7 +57,25 @@ public class LogPatternUtil {
         }
     }
 
-    private Set<PatternInfo> mPatterns = new HashSet<PatternInfo>();
+    /**
+     * A snapshot of the patterns and the {@link PatternSet} compiled from them.
+     */
+    private static class CompiledPatterns {
+        public final PatternInfo[] mInfos;
+        public final PatternSet mPatternSet;
+
+        public CompiledPatterns(List<PatternInfo> infos) {
+            mInfos = infos.toArray(new PatternInfo[infos.size()]);
+            List<Pattern> patterns = new ArrayList<Pattern>(infos.size());
+            for (PatternInfo info : infos) {
+                patterns.add(info.mPattern);
+            }
+            mPatternSet = new PatternSet(patterns);
+        }
+    }
+
+    private List<PatternInfo> mPatterns = new ArrayList<PatternInfo>();
+    private volatile CompiledPatterns mCompiled = null;
 
     /**
      * Add a pattern to this list of patterns to match against.
@@ -72,8 +95,9 @@ public class LogPatternUtil {
      * be treated as wildcard
      * @param category the category to return if there is a match.
      */
-    public void addPattern(Pattern pattern, Object extras, String category) {
+    public synchronized void addPattern(Pattern pattern, Object extras, String category) {
         mPatterns.add(new PatternInfo(pattern, extras, category));
+        mCompiled = null;
     }
 
     /**
@@ -94,16 +118,35 @@ public class LogPatternUtil {
      * @return The category of the match.
      */
     public String checkMessage(String message, Object extras) {
-        for (PatternInfo patternInfo : mPatterns) {
-            Matcher m = patternInfo.mPattern.matcher(message);
+        CompiledPatterns compiled = getCompiledPatterns();
+        BitSet candidates = compiled.mPatternSet.getCandidates(message);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            PatternInfo patternInfo = compiled.mInfos[i];
 
-            // Return the category if the pattern matches and the extras are equal. Treat a null
+            // Return the category if the extras are equal and the pattern matches. Treat a null
             // patternInfo.mExtras as a wildcard.
-            if (m.matches() &&
-                    (patternInfo.mExtras == null || patternInfo.mExtras.equals(extras))) {
+            if ((patternInfo.mExtras == null || patternInfo.mExtras.equals(extras)) &&
+                    patternInfo.mPattern.matcher(message).matches()) {
                 return patternInfo.mCategory;
             }
         }
         return null;
     }
+
+    /**
+     * Get the compiled patterns, compiling them if a pattern has been added since the last check.
+     */
+    private CompiledPatterns getCompiledPatterns() {
+        CompiledPatterns compiled = mCompiled;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = mCompiled;
+                if (compiled == null) {
+                    compiled = new CompiledPatterns(mPatterns);
+                    mCompiled = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
 }
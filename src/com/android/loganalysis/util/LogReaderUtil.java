@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A utility class for opening logs which are compressed or read from stdin, so they can be parsed
+ * as they are decompressed instead of being extracted first.
+ * <p>
+ * A path of {@code -} is stdin.  A path ending in {@code .gz} is read through a
+ * {@link GZIPInputStream}.  A path ending in {@code .zip} is a bugreport zip from
+ * {@code adb bugreport}, and its main entry is read.  The main entry is named by the
+ * {@code main_entry.txt} entry, or is the largest {@code bugreport*.txt} entry in older zips.
+ * Other paths are read as plain files.
+ * </p>
+ */
+public class LogReaderUtil {
+    /** The path which is read from stdin */
+    public static final String STDIN = "-";
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String ZIP_SUFFIX = ".zip";
+    private static final String MAIN_ENTRY = "main_entry.txt";
+    private static final String BUGREPORT_PREFIX = "bugreport";
+    private static final String TEXT_SUFFIX = ".txt";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Returns true if a log can only be read as a stream, because it is compressed or is stdin.
+     * Other logs are plain files, which can be read with a {@link MappedLineReader}.
+     */
+    public static boolean isStream(String path) {
+        return STDIN.equals(path) || isGzip(path) || isZip(path);
+    }
+
+    /**
+     * Open a log as a {@link BufferedReader} of UTF-8 text.
+     *
+     * @param path The path of the log, or {@code -} for stdin.
+     * @return The {@link BufferedReader}, which closes the file when it is closed.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if the file could not be opened, or a zip has no bugreport entry.
+     */
+    public static BufferedReader openReader(String path) throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(path), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    /**
+     * Open a log as a decompressed {@link InputStream}.
+     *
+     * @see #openReader(String)
+     */
+    public static InputStream openStream(String path) throws IOException {
+        if (STDIN.equals(path)) {
+            // Don't let the parser close stdin.
+            return new FilterInputStream(System.in) {
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(String.format("%s does not exist", path));
+        }
+        if (isZip(path)) {
+            return openZipEntry(file);
+        }
+        InputStream stream = new FileInputStream(file);
+        if (isGzip(path)) {
+            try {
+                return new GZIPInputStream(stream, BUFFER_SIZE);
+            } catch (IOException e) {
+                stream.close();
+                throw e;
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Open the main entry of a bugreport zip.  The zip is closed when the stream is closed.
+     */
+    private static InputStream openZipEntry(File file) throws IOException {
+        final ZipFile zip = new ZipFile(file);
+        try {
+            ZipEntry entry = getMainEntry(zip);
+            if (entry == null) {
+                throw new IOException(String.format("%s does not contain a bugreport", file));
+            }
+            return new FilterInputStream(zip.getInputStream(entry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zip.close();
+                    }
+                }
+            };
+        } catch (IOException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the main entry of a bugreport zip.
+     *
+     * @return The {@link ZipEntry}, or null if there is no bugreport in the zip.
+     */
+    private static ZipEntry getMainEntry(ZipFile zip) throws IOException {
+        ZipEntry mainEntry = zip.getEntry(MAIN_ENTRY);
+        if (mainEntry != null) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    zip.getInputStream(mainEntry), StandardCharsets.UTF_8));
+            try {
+                String name = reader.readLine();
+                if (name != null && zip.getEntry(name.trim()) != null) {
+                    return zip.getEntry(name.trim());
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        ZipEntry largest = null;
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = new File(entry.getName()).getName();
+            if (!entry.isDirectory() && name.startsWith(BUGREPORT_PREFIX)
+                    && name.endsWith(TEXT_SUFFIX)
+                    && (largest == null || entry.getSize() > largest.getSize())) {
+                largest = entry;
+            }
+        }
+        return largest;
+    }
+
+    private static boolean isGzip(String path) {
+        return path.endsWith(GZIP_SUFFIX);
+    }
+
+    private static boolean isZip(String path) {
+        return path.endsWith(ZIP_SUFFIX);
+    }
+}
@@ -15,9 +15,10 @@
  */
 package com.android.loganalysis.util;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * A utility class for storing a part of the log for retrieval later.
@@ -26,24 +27,64 @@ import java.util.ListIterator;
  * or that last Y lines which match a given id can be retrieved.  For example, this class can be
  * used to retrieve the last 15 lines of logcat or the last 15 lines of logcat matching a given PID
  * from before when an event occurred.
+ * </p><p>
+ * Each line links to the previous line with the same id, so id tails are found without scanning
+ * the whole buffer.  Tails can be retrieved as snapshots, which only hold references to the lines
+ * and are joined into a {@link String} the first time they are read.
  * </p>
  */
 public class LogTailUtil {
-    private LinkedList<LogLine> mRingBuffer = new LinkedList<LogLine>();
-    private int mMaxBufferSize;
+    private final int mMaxBufferSize;
     private int mLastTailSize;
     private int mIdTailSize;
 
+    /** The lines, indexed by sequence number modulo the buffer size. */
+    private final String[] mLines;
+    /** The sequence number of the previous line with the same id, or -1 if there is none. */
+    private final long[] mPrevious;
     /**
-     * Store a line and id for retrieval later.
+     * The sequence number of the last line for each id, in a single element array.  Ids whose
+     * lines have all left the buffer are removed each time the buffer wraps around.
      */
-    private class LogLine {
-        public Integer mId = null;
-        public String mLine = null;
+    private final Map<Integer, long[]> mLastById = new HashMap<Integer, long[]>();
+    /** The number of lines added, which is also the sequence number of the next line. */
+    private long mCount = 0;
 
-        public LogLine(Integer id, String line) {
-            mId = id;
-            mLine = line;
+    /**
+     * A tail of the log which is joined the first time it is read.
+     */
+    private static class Tail implements CharSequence {
+        private final String[] mTailLines;
+        private String mJoined = null;
+
+        public Tail(String[] lines) {
+            mTailLines = lines;
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            // Strings are immutable, so a race here at worst joins the lines twice.
+            String joined = mJoined;
+            if (joined == null) {
+                joined = ArrayUtil.join("\n", Arrays.asList(mTailLines)).trim();
+                mJoined = joined;
+            }
+            return joined;
         }
     }
 
@@ -62,9 +103,11 @@ public class LogTailUtil {
      * @param idTailSize the number of lines to retrieve when getting the id tail
      */
     public LogTailUtil(int maxBufferSize, int lastTailSize, int idTailSize) {
-        mMaxBufferSize = maxBufferSize;
+        mMaxBufferSize = Math.max(maxBufferSize, 0);
         mLastTailSize = lastTailSize;
         mIdTailSize = idTailSize;
+        mLines = new String[mMaxBufferSize];
+        mPrevious = new long[mMaxBufferSize];
     }
 
     /**
@@ -74,12 +117,57 @@ public class LogTailUtil {
      * @param line the
      */
     public void addLine(Integer id, String line) {
-        mRingBuffer.add(new LogLine(id, line));
-        if (mRingBuffer.size() > mMaxBufferSize) {
-            mRingBuffer.removeFirst();
+        if (mMaxBufferSize == 0) {
+            return;
+        }
+        final int slot = getSlot(mCount);
+        mLines[slot] = line;
+        mPrevious[slot] = -1;
+        if (id != null) {
+            long[] last = mLastById.get(id);
+            if (last == null) {
+                last = new long[] {-1};
+                mLastById.put(id, last);
+            }
+            mPrevious[slot] = last[0];
+            last[0] = mCount;
+        }
+        mCount++;
+        if (getSlot(mCount) == 0) {
+            removeOldIds();
         }
     }
 
+    /**
+     * Remove the ids which have no lines left in the buffer, so that the number of ids is bounded
+     * by the size of the buffer rather than the number of ids in the log.
+     */
+    private void removeOldIds() {
+        final long oldest = getOldest();
+        Iterator<long[]> iterator = mLastById.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next()[0] < oldest) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of ids which are tracked.  Exposed for unit testing.
+     */
+    int getIdCount() {
+        return mLastById.size();
+    }
+
+    /**
+     * Remove all of the lines from the ring buffer.
+     */
+    public void clear() {
+        Arrays.fill(mLines, null);
+        mLastById.clear();
+        mCount = 0;
+    }
+
     /**
      * Get the last lines of the log.
      *
@@ -96,14 +184,32 @@ public class LogTailUtil {
      * @return The last {@code size} lines of the log joined as a {@link String}.
      */
     public String getLastTail(int size) {
-        final int toIndex = mRingBuffer.size();
-        final int fromIndex = Math.max(toIndex - size, 0);
+        return getLastTailSnapshot(size).toString();
+    }
 
-        List<String> tail = new LinkedList<String>();
-        for (LogLine line : mRingBuffer.subList(fromIndex, toIndex)) {
-            tail.add(line.mLine);
+    /**
+     * Get a snapshot of the last lines of the log, which is only joined when it is read.
+     *
+     * @return The last lines of the log, which are joined as by {@link #getLastTail()}.
+     */
+    public CharSequence getLastTailSnapshot() {
+        return getLastTailSnapshot(mLastTailSize);
+    }
+
+    /**
+     * Get a snapshot of the last lines of the log, which is only joined when it is read.
+     *
+     * @param size the number of lines to return.
+     * @return The last {@code size} lines of the log, which are joined as by
+     * {@link #getLastTail(int)}.
+     */
+    public CharSequence getLastTailSnapshot(int size) {
+        final long from = Math.max(mCount - Math.max(size, 0), getOldest());
+        String[] lines = new String[(int) (mCount - from)];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = mLines[getSlot(from + i)];
         }
-        return ArrayUtil.join("\n", tail).trim();
+        return new Tail(lines);
     }
 
     /**
@@ -124,15 +230,55 @@ public class LogTailUtil {
      * @return The last {@code size} lines of the log joined as a {@link String}.
      */
     public String getIdTail(int id, int size) {
-        LinkedList<String> tail = new LinkedList<String>();
-        ListIterator<LogLine> li = mRingBuffer.listIterator(mRingBuffer.size());
-        while (li.hasPrevious() && tail.size() < size) {
-            LogLine line = li.previous();
+        return getIdTailSnapshot(id, size).toString();
+    }
 
-            if (line.mId != null && line.mId.equals(id)) {
-                tail.addFirst(line.mLine);
-            }
+    /**
+     * Get a snapshot of the last lines of the log which match the given id, which is only joined
+     * when it is read.
+     *
+     * @param id the id of the lines to filter by
+     * @return The last lines of the log, which are joined as by {@link #getIdTail(int)}.
+     */
+    public CharSequence getIdTailSnapshot(int id) {
+        return getIdTailSnapshot(id, mIdTailSize);
+    }
+
+    /**
+     * Get a snapshot of the last lines of the log which match the given id, which is only joined
+     * when it is read.
+     *
+     * @param id the id of the lines to filter by
+     * @param size the number of lines to return
+     * @return The last {@code size} lines of the log, which are joined as by
+     * {@link #getIdTail(int, int)}.
+     */
+    public CharSequence getIdTailSnapshot(int id, int size) {
+        final long oldest = getOldest();
+        long[] last = mLastById.get(id);
+        long seq = last == null ? -1 : last[0];
+
+        // Count the lines first, so that they can be copied into an array of the right size.
+        int count = 0;
+        for (long i = seq; i >= oldest && count < size; i = mPrevious[getSlot(i)]) {
+            count++;
         }
-        return ArrayUtil.join("\n", tail).trim();
+        String[] lines = new String[count];
+        for (int i = count - 1; i >= 0; i--) {
+            lines[i] = mLines[getSlot(seq)];
+            seq = mPrevious[getSlot(seq)];
+        }
+        return new Tail(lines);
+    }
+
+    /**
+     * Get the sequence number of the oldest line in the buffer.
+     */
+    private long getOldest() {
+        return Math.max(mCount - mMaxBufferSize, 0);
+    }
+
+    private int getSlot(long seq) {
+        return (int) (seq % mMaxBufferSize);
     }
 }
@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A line reader backed by a memory mapped file.
+ * <p>
+ * Unlike {@link java.io.BufferedReader#readLine()}, lines are returned as {@link CharSequence}
+ * views over the mapped bytes instead of newly allocated {@link String}s. Lines which are pure
+ * ASCII are read directly from the mapped file, so a {@link String} is only built if the caller
+ * calls {@link CharSequence#toString()} on the line. Lines containing other bytes are decoded as
+ * UTF-8.
+ * </p><p>
+ * The returned view is reused and is only valid until the next call to {@link #readLine()}. Lines
+ * are terminated by {@code \n}, {@code \r}, or {@code \r\n}, the same as {@code BufferedReader}.
+ * </p>
+ */
+public class MappedLineReader implements Closeable {
+    private static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final File mFile;
+    private final FileInputStream mStream;
+    private final FileChannel mChannel;
+    private final long mSize;
+    private final long mWindowSize;
+
+    private MappedByteBuffer mWindow = null;
+    private long mWindowStart = 0;
+    private long mPosition = 0;
+    private long mLineStart = 0;
+
+    private final Line mLine = new Line();
+
+    /**
+     * A reusable view of a single line in the mapped file.
+     */
+    private class Line implements CharSequence {
+        private int mOffset = 0;
+        private int mLength = 0;
+        private String mDecoded = null;
+
+        @Override
+        public int length() {
+            return mDecoded != null ? mDecoded.length() : mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (mDecoded != null) {
+                return mDecoded.charAt(index);
+            }
+            if (index < 0 || index >= mLength) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            return (char) mWindow.get(mOffset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (mDecoded != null) {
+                return mDecoded;
+            }
+            return new String(getBytes(), StandardCharsets.ISO_8859_1);
+        }
+
+        private byte[] getBytes() {
+            byte[] bytes = new byte[mLength];
+            for (int i = 0; i < mLength; i++) {
+                bytes[i] = mWindow.get(mOffset + i);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Constructor for {@link MappedLineReader}.
+     *
+     * @param file the file to read.
+     * @throws IOException if the file could not be opened or mapped.
+     */
+    public MappedLineReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor for {@link MappedLineReader}. Exposed for unit testing.
+     *
+     * @param file the file to read.
+     * @param windowSize the number of bytes to map at once.
+     * @throws IOException if the file could not be opened or mapped.
+     */
+    MappedLineReader(File file, long windowSize) throws IOException {
+        mFile = file;
+        mStream = new FileInputStream(file);
+        mChannel = mStream.getChannel();
+        mSize = mChannel.size();
+        mWindowSize = windowSize;
+    }
+
+    /**
+     * Read the next line.
+     *
+     * @return A view of the next line, without the line terminator, or {@code null} if the end of
+     * the file has been reached. The view is only valid until the next call to this method.
+     * @throws IOException if the file could not be mapped.
+     */
+    public CharSequence readLine() throws IOException {
+        if (mPosition >= mSize) {
+            return null;
+        }
+        mLineStart = mPosition;
+        if (mWindow == null || mLineStart < mWindowStart
+                || mLineStart >= mWindowStart + mWindow.limit()) {
+            map(mLineStart, mWindowSize);
+        }
+
+        boolean ascii = true;
+        long pos = mLineStart;
+        long end = -1;
+        while (end < 0) {
+            final long windowEnd = mWindowStart + mWindow.limit();
+            while (pos < windowEnd) {
+                byte b = mWindow.get((int) (pos - mWindowStart));
+                if (b == '\n' || b == '\r') {
+                    end = pos;
+                    break;
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+                pos++;
+            }
+            if (end < 0) {
+                if (windowEnd >= mSize) {
+                    end = mSize;
+                } else {
+                    // The line does not fit in the current window, so remap from the line start.
+                    map(mLineStart, Math.max(mWindowSize, 2 * (pos - mLineStart)));
+                }
+            }
+        }
+
+        mPosition = end;
+        if (end < mSize) {
+            mPosition++;
+            if (byteAt(end) == '\r' && end + 1 < mSize && byteAt(end + 1) == '\n') {
+                mPosition++;
+            }
+        }
+
+        mLine.mOffset = (int) (mLineStart - mWindowStart);
+        mLine.mLength = (int) (end - mLineStart);
+        mLine.mDecoded = null;
+        if (!ascii) {
+            mLine.mDecoded = new String(mLine.getBytes(), StandardCharsets.UTF_8);
+        }
+        return mLine;
+    }
+
+    /**
+     * Get the file being read.
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Get the size of the file in bytes.
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Compute the CRC32 hash of a range of the file, without moving the position of the reader.
+     *
+     * @param offset the byte offset of the range.
+     * @param length the number of bytes in the range.
+     * @throws IllegalArgumentException if the range is outside the file.
+     */
+    public long getCrc32(long offset, long length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > mSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Range %d+%d is outside the file of %d bytes", offset, length, mSize));
+        }
+        CRC32 crc = new CRC32();
+        long position = offset;
+        final long end = offset + length;
+        while (position < end) {
+            final long size = Math.min(end - position, Integer.MAX_VALUE);
+            crc.update(mChannel.map(FileChannel.MapMode.READ_ONLY, position, size));
+            position += size;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Get the byte offset of the start of the line last returned by {@link #readLine()}.
+     */
+    public long getLineOffset() {
+        return mLineStart;
+    }
+
+    /**
+     * Get the byte offset of the next line to be read.
+     */
+    public long getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * Move to a byte offset, so the next call to {@link #readLine()} reads the line starting
+     * there.  The offset should be the start of a line, such as one from
+     * {@link #getLineOffset()}.
+     *
+     * @param offset the byte offset, between 0 and the size of the file.
+     * @throws IllegalArgumentException if the offset is outside the file.
+     */
+    public void seek(long offset) {
+        if (offset < 0 || offset > mSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Offset %d is outside the file of %d bytes", offset, mSize));
+        }
+        mPosition = offset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        mWindow = null;
+        mStream.close();
+    }
+
+    /**
+     * Get the byte at an absolute offset, remapping the window from the current line start if
+     * necessary.
+     */
+    private byte byteAt(long offset) throws IOException {
+        if (offset >= mWindowStart + mWindow.limit()) {
+            map(mLineStart, Math.max(mWindowSize, 2 * (offset - mLineStart + 1)));
+        }
+        return mWindow.get((int) (offset - mWindowStart));
+    }
+
+    /**
+     * Map a window of the file starting at a given offset.
+     */
+    private void map(long start, long size) throws IOException {
+        size = Math.min(Math.min(size, Integer.MAX_VALUE), mSize - start);
+        mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        mWindowStart = start;
+    }
+}
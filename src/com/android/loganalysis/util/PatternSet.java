@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, ordered set of {@link Pattern}s which can be matched against an input at once.
+ * <p>
+ * Each pattern's longest required literal is added to an Aho-Corasick automaton, so a single pass
+ * over the input finds the patterns which could match it.  Only those candidates, and the
+ * patterns without a required literal, are then matched with {@link Pattern}.  Matching is
+ * always done in the order the patterns were given.
+ * </p><p>
+ * The automaton only covers ASCII characters.  Any other character resets the automaton, which
+ * is safe since required literals are ASCII only.
+ * </p>
+ */
+public class PatternSet {
+    private static final int ALPHABET_SIZE = 0x80;
+
+    private final Pattern[] mPatterns;
+    /** Patterns which have no required literal, and so are candidates for every input. */
+    private final BitSet mUnfiltered = new BitSet();
+    /** The transition table of the automaton, indexed by state and then character. */
+    private final int[][] mTransitions;
+    /** The patterns whose literals end at each state, or null if there are none. */
+    private final BitSet[] mOutputs;
+
+    /**
+     * Constructor for {@link PatternSet}.
+     *
+     * @param patterns the {@link Pattern}s, in the order they should be matched.
+     */
+    public PatternSet(List<Pattern> patterns) {
+        mPatterns = patterns.toArray(new Pattern[patterns.size()]);
+
+        List<int[]> transitions = new ArrayList<int[]>();
+        List<BitSet> outputs = new ArrayList<BitSet>();
+        transitions.add(newState());
+        outputs.add(null);
+
+        for (int i = 0; i < mPatterns.length; i++) {
+            String literal = RegexLiterals.getRequiredLiteral(mPatterns[i]);
+            if (literal.isEmpty()) {
+                mUnfiltered.set(i);
+                continue;
+            }
+            int state = 0;
+            for (int j = 0; j < literal.length(); j++) {
+                char c = literal.charAt(j);
+                if (transitions.get(state)[c] < 0) {
+                    transitions.get(state)[c] = transitions.size();
+                    transitions.add(newState());
+                    outputs.add(null);
+                }
+                state = transitions.get(state)[c];
+            }
+            if (outputs.get(state) == null) {
+                outputs.set(state, new BitSet());
+            }
+            outputs.get(state).set(i);
+        }
+
+        mTransitions = transitions.toArray(new int[transitions.size()][]);
+        mOutputs = outputs.toArray(new BitSet[outputs.size()]);
+        buildFailureTransitions();
+    }
+
+    /**
+     * Turn the trie of literals into a DFA by replacing each missing transition with the
+     * transition from the state's failure state, in breadth first order.
+     */
+    private void buildFailureTransitions() {
+        int[] failure = new int[mTransitions.length];
+        Queue<Integer> queue = new LinkedList<Integer>();
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            int next = mTransitions[0][c];
+            if (next < 0) {
+                mTransitions[0][c] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int c = 0; c < ALPHABET_SIZE; c++) {
+                int next = mTransitions[state][c];
+                if (next < 0) {
+                    mTransitions[state][c] = mTransitions[failure[state]][c];
+                    continue;
+                }
+                failure[next] = mTransitions[failure[state]][c];
+                BitSet inherited = mOutputs[failure[next]];
+                if (inherited != null) {
+                    if (mOutputs[next] == null) {
+                        mOutputs[next] = new BitSet();
+                    }
+                    mOutputs[next].or(inherited);
+                }
+                queue.add(next);
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET_SIZE];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * Get the number of patterns in the set.
+     */
+    public int size() {
+        return mPatterns.length;
+    }
+
+    /**
+     * Get the pattern at an index.
+     */
+    public Pattern getPattern(int index) {
+        return mPatterns[index];
+    }
+
+    /**
+     * Get the indexes of the patterns which could match an input.  A pattern which is not a
+     * candidate is guaranteed not to match.
+     *
+     * @param input the input to scan.
+     * @return A new {@link BitSet} of the candidate pattern indexes.
+     */
+    public BitSet getCandidates(CharSequence input) {
+        BitSet candidates = (BitSet) mUnfiltered.clone();
+        int state = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            state = c < ALPHABET_SIZE ? mTransitions[state][c] : 0;
+            if (mOutputs[state] != null) {
+                candidates.or(mOutputs[state]);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Get the index of the first pattern which matches the entire input.
+     *
+     * @param input the input to match.
+     * @return The index of the first matching pattern, or -1 if none match.
+     */
+    public int matches(CharSequence input) {
+        BitSet candidates = getCandidates(input);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (mPatterns[i].matcher(input).matches()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
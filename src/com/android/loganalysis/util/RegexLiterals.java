@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Utility methods for finding the literal text that any match of a {@link Pattern} must contain.
+ * <p>
+ * The analysis is conservative: if a pattern uses flags or a construct which is not understood,
+ * an empty {@link String} is returned, meaning that nothing is known about the input.
+ * </p>
+ */
+final class RegexLiterals {
+
+    private static final String META_CHARS = "[](){}.*+?^$|";
+    private static final String QUANTIFIERS = "*+?{";
+    private static final String ESCAPES_WITH_ARGUMENTS = "QEcxupPkN0";
+
+    private RegexLiterals() {
+    }
+
+    /**
+     * Get the literal prefix which any input must start with for {@link java.util.regex.Matcher#
+     * matches()} to succeed.
+     *
+     * @param pattern the {@link Pattern}
+     * @return the literal prefix, or an empty {@link String} if there is none.
+     */
+    static String getPrefix(Pattern pattern) {
+        final String regex = pattern.pattern();
+        if (pattern.flags() != 0 || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next = i + 1;
+            if (c == '\\') {
+                if (next >= regex.length() || Character.isLetterOrDigit(regex.charAt(next))) {
+                    // Character classes such as \d and escapes such as \Q are not literals.
+                    break;
+                }
+                c = regex.charAt(next);
+                next++;
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                break;
+            }
+
+            if (next < regex.length() && QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                // A quantified character is only required once, and only if the quantifier is +.
+                if (regex.charAt(next) == '+') {
+                    prefix.append(c);
+                }
+                break;
+            }
+            prefix.append(c);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Get the longest run of literal ASCII text which any input must contain for
+     * {@link java.util.regex.Matcher#matches()} to succeed.
+     *
+     * @param pattern the {@link Pattern}
+     * @return the required literal, or an empty {@link String} if none could be found.
+     */
+    static String getRequiredLiteral(Pattern pattern) {
+        final String regex = pattern.pattern();
+        if (pattern.flags() != 0 || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        String longest = "";
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next = i + 1;
+            boolean literal = false;
+            if (c == '\\') {
+                if (next >= regex.length()
+                        || ESCAPES_WITH_ARGUMENTS.indexOf(regex.charAt(next)) >= 0
+                        || Character.isDigit(regex.charAt(next))) {
+                    // Quotes, back references and escapes with arguments are not analyzed.
+                    break;
+                }
+                c = regex.charAt(next);
+                literal = !Character.isLetter(c) && c < 0x80;
+                next++;
+            } else if (c == '(') {
+                if (next < regex.length() - 1 && regex.charAt(next) == '?'
+                        && (Character.isLetter(regex.charAt(next + 1))
+                        || regex.charAt(next + 1) == '-')) {
+                    // Inline flags change the meaning of everything after them.
+                    break;
+                }
+                next = skipGroup(regex, i);
+            } else if (c == '[') {
+                next = skipClass(regex, i);
+            } else {
+                literal = META_CHARS.indexOf(c) < 0 && c < 0x80;
+            }
+
+            int end = skipQuantifier(regex, next);
+            if (literal && (end == next || regex.charAt(next) == '+')) {
+                run.append(c);
+            }
+            if (!literal || end != next) {
+                if (run.length() > longest.length()) {
+                    longest = run.toString();
+                }
+                run.setLength(0);
+            }
+            i = end;
+        }
+        return run.length() > longest.length() ? run.toString() : longest;
+    }
+
+    /**
+     * Returns true if a regular expression has an alternation which is not inside a group.
+     */
+    static boolean hasTopLevelAlternation(String regex) {
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '(') {
+                i = skipGroup(regex, i);
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+            } else if (c == '|') {
+                return true;
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the index after the group which starts at a given index.
+     */
+    private static int skipGroup(String regex, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return regex.length();
+    }
+
+    /**
+     * Get the index after the character class which starts at a given index.
+     */
+    private static int skipClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            // A leading ] is a literal.
+            i++;
+        }
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+            } else if (c == ']') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * Get the index after the quantifier which starts at a given index, or the index itself if
+     * there is no quantifier.
+     */
+    private static int skipQuantifier(String regex, int start) {
+        if (start >= regex.length()) {
+            return start;
+        }
+        int i;
+        char c = regex.charAt(start);
+        if (c == '*' || c == '+' || c == '?') {
+            i = start + 1;
+        } else if (c == '{') {
+            int close = regex.indexOf('}', start);
+            i = close < 0 ? regex.length() : close + 1;
+        } else {
+            return start;
+        }
+        // Reluctant and possessive quantifiers
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+}
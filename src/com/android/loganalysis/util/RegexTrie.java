@@ -17,6 +17,8 @@ package com.android.loganalysis.util;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +54,12 @@ import java.util.regex.Pattern;
  * trie.retrieve(captures, "a", "b", "c");
  * // returns null.  captures is now [[], []]
  * </pre>
+ * <p />
+ * Each level of the trie indexes its {@link Pattern}s by the first character of their literal
+ * prefix, if they have one.  A {@code String} is only matched against the {@code Pattern}s which
+ * could match it, so strings which start with a character no {@code Pattern} accepts are
+ * rejected without evaluating any regular expressions.  Candidates are still tried in insertion
+ * order.
  */
 //TODO: Use libTF once this is copied over.
 public class RegexTrie<V> {
@@ -59,6 +67,13 @@ public class RegexTrie<V> {
     private Map<CompPattern, RegexTrie<V>> mChildren =
             new LinkedHashMap<CompPattern, RegexTrie<V>>();
 
+    /** Children whose patterns start with a literal, keyed by the first character. */
+    private Map<Character, List<Map.Entry<CompPattern, RegexTrie<V>>>> mPrefixIndex =
+            Collections.emptyMap();
+    /** Children whose patterns do not start with a literal, in insertion order. */
+    private List<Map.Entry<CompPattern, RegexTrie<V>>> mUnprefixed = Collections.emptyList();
+    private RegexTrie<V> mWildcard = null;
+
     /**
      * Patterns aren't comparable by default, which prevents you from retrieving them from a
      * HashTable.  This is a simple stub class that makes a Pattern with a working
@@ -66,12 +81,14 @@ public class RegexTrie<V> {
      */
     static class CompPattern {
         protected final Pattern mPattern;
+        private final String mPrefix;
 
         CompPattern(Pattern pattern) {
             if (pattern == null) {
                 throw new NullPointerException();
             }
             mPattern = pattern;
+            mPrefix = RegexLiterals.getPrefix(pattern);
         }
 
         @Override
@@ -98,9 +115,32 @@ public class RegexTrie<V> {
             return String.format("CP(%s)", mPattern.toString());
         }
 
-        public Matcher matcher(String string) {
+        public Matcher matcher(CharSequence string) {
             return mPattern.matcher(string);
         }
+
+        /**
+         * Get the literal text which any string matching the pattern must start with.
+         */
+        String getPrefix() {
+            return mPrefix;
+        }
+
+        /**
+         * Returns false if the string cannot match the pattern because it does not start with the
+         * pattern's literal prefix.
+         */
+        boolean hasPrefix(CharSequence string) {
+            if (string.length() < mPrefix.length()) {
+                return false;
+            }
+            for (int i = mPrefix.length() - 1; i >= 0; i--) {
+                if (string.charAt(i) != mPrefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     public void clear() {
@@ -109,6 +149,57 @@ public class RegexTrie<V> {
             child.clear();
         }
         mChildren.clear();
+        buildIndex();
+    }
+
+    /**
+     * Rebuild the first character index of the children.  Since the index is rebuilt whenever a
+     * child is added, retrieval never modifies the trie.
+     */
+    private void buildIndex() {
+        List<Map.Entry<CompPattern, RegexTrie<V>>> unprefixed =
+                new ArrayList<Map.Entry<CompPattern, RegexTrie<V>>>();
+        Map<Character, List<Map.Entry<CompPattern, RegexTrie<V>>>> index =
+                new HashMap<Character, List<Map.Entry<CompPattern, RegexTrie<V>>>>();
+        RegexTrie<V> wildcard = null;
+
+        for (Map.Entry<CompPattern, RegexTrie<V>> child : mChildren.entrySet()) {
+            CompPattern pattern = child.getKey();
+            if (pattern == null) {
+                wildcard = child.getValue();
+            } else if (pattern.getPrefix().isEmpty()) {
+                // Unprefixed patterns are candidates for every string, so add them to every
+                // bucket to keep the buckets in insertion order.
+                unprefixed.add(child);
+                for (List<Map.Entry<CompPattern, RegexTrie<V>>> bucket : index.values()) {
+                    bucket.add(child);
+                }
+            } else {
+                Character first = pattern.getPrefix().charAt(0);
+                List<Map.Entry<CompPattern, RegexTrie<V>>> bucket = index.get(first);
+                if (bucket == null) {
+                    bucket = new ArrayList<Map.Entry<CompPattern, RegexTrie<V>>>(unprefixed);
+                    index.put(first, bucket);
+                }
+                bucket.add(child);
+            }
+        }
+
+        mPrefixIndex = index;
+        mUnprefixed = unprefixed;
+        mWildcard = wildcard;
+    }
+
+    /**
+     * Get the children which could match a string, in insertion order, excluding the wildcard.
+     */
+    private List<Map.Entry<CompPattern, RegexTrie<V>>> getCandidates(CharSequence string) {
+        if (string.length() == 0) {
+            return mUnprefixed;
+        }
+        List<Map.Entry<CompPattern, RegexTrie<V>>> candidates =
+                mPrefixIndex.get(string.charAt(0));
+        return candidates != null ? candidates : mUnprefixed;
     }
 
     boolean containsKey(String... strings) {
@@ -132,6 +223,7 @@ public class RegexTrie<V> {
             if (nextChild == null) {
                 nextChild = new RegexTrie<V>();
                 mChildren.put(curKey, nextChild);
+                buildIndex();
             }
             return nextChild.recursivePut(value, nextKeys);
         }
@@ -192,23 +284,19 @@ public class RegexTrie<V> {
         return validateAndPut(value, pList);
     }
 
-    V recursiveRetrieve(List<List<String>> captures, List<String> strings) {
+    V recursiveRetrieve(List<List<String>> captures, List<? extends CharSequence> strings) {
         // Cases:
         // 1) strings is empty -- return our value
         // 2) strings is non-empty -- find the first child that matches, recurse downward
         if (strings.isEmpty()) {
             return mValue;
         } else {
-            boolean wildcardMatch = false;
-            V wildcardValue = null;
-            String curKey = strings.get(0);
-            List<String> nextKeys = strings.subList(1, strings.size());
+            CharSequence curKey = strings.get(0);
+            List<? extends CharSequence> nextKeys = strings.subList(1, strings.size());
 
-            for (Map.Entry<CompPattern, RegexTrie<V>> child : mChildren.entrySet()) {
+            for (Map.Entry<CompPattern, RegexTrie<V>> child : getCandidates(curKey)) {
                 CompPattern pattern = child.getKey();
-                if (pattern == null) {
-                    wildcardMatch = true;
-                    wildcardValue = child.getValue().getValue();
+                if (!pattern.hasPrefix(curKey)) {
                     continue;
                 }
 
@@ -227,14 +315,14 @@ public class RegexTrie<V> {
                 }
             }
 
-            if (wildcardMatch) {
+            if (mWildcard != null) {
                 // Stick the rest of the query string into the captures list and return
                 if (captures != null) {
-                    for (String str : strings) {
-                        captures.add(Arrays.asList(str));
+                    for (CharSequence str : strings) {
+                        captures.add(Arrays.asList(str.toString()));
                     }
                 }
-                return wildcardValue;
+                return mWildcard.getValue();
             }
 
             // no match
@@ -243,13 +331,13 @@ public class RegexTrie<V> {
     }
 
     /**
-     * Fetch a value from the trie, by matching the provided sequence of {@link String}s to a
-     * sequence of {@link Pattern}s stored in the trie.
+     * Fetch a value from the trie, by matching the provided sequence of {@link CharSequence}s to
+     * a sequence of {@link Pattern}s stored in the trie.
      *
-     * @param strings A sequence of {@link String}s to match
+     * @param strings A sequence of {@link CharSequence}s to match
      * @return The associated value, or {@code null} if no value was found
      */
-    public V retrieve(String... strings) {
+    public V retrieve(CharSequence... strings) {
         return retrieve(null, strings);
     }
 
@@ -267,14 +355,14 @@ public class RegexTrie<V> {
      * still reflect the capture groups from the partial match.
      *
      * @param captures A {@code List<List<String>>} through which capture groups will be returned.
-     * @param strings A sequence of {@link String}s to match
+     * @param strings A sequence of {@link CharSequence}s to match
      * @return The associated value, or {@code null} if no value was found
      */
-    public V retrieve(List<List<String>> captures, String... strings) {
+    public V retrieve(List<List<String>> captures, CharSequence... strings) {
         if (strings.length == 0) {
             throw new IllegalArgumentException("string list must be non-empty");
         }
-        List<String> sList = Arrays.asList(strings);
+        List<CharSequence> sList = Arrays.asList(strings);
         if (captures != null) {
             captures.clear();
         }
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of the sections of a log file, which is saved next to the log so the sections can be
+ * found again without reading the whole file.
+ * <p>
+ * Each {@link Section} records the header line which starts it, its byte offset and length, and a
+ * CRC32 hash of its bytes.  A section runs from the start of its header line to the start of the
+ * next header, or the end of the file.  The bytes before the first header are the preamble.
+ * </p><p>
+ * The index stores the length and modification time of the file, and is only used for a file
+ * which still matches them.  Since a file can be changed without changing either, the hash of a
+ * section is also checked with {@link #verify(MappedLineReader, Section)} before the section is
+ * read through the index.
+ * </p>
+ */
+public class SectionIndex {
+    private static final String MAGIC = "SECTION_INDEX";
+    private static final int VERSION = 1;
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final long mFileLength;
+    private final long mLastModified;
+    private final List<Section> mSections;
+
+    /**
+     * Thrown when a section of a file does not match the index, because the file has changed
+     * since it was indexed.
+     */
+    @SuppressWarnings("serial")
+    public static class StaleIndexException extends IOException {
+        public StaleIndexException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * An interface for deciding which lines of a file start a section.
+     */
+    public interface HeaderFilter {
+        /**
+         * Returns true if a line is the header of a section.
+         */
+        public boolean isHeader(CharSequence line);
+    }
+
+    /**
+     * A section of the file.
+     */
+    public static class Section {
+        private final String mHeader;
+        private final long mOffset;
+        private final long mLength;
+        private final long mHash;
+
+        /**
+         * Constructor for {@link Section}.
+         *
+         * @param header The header line which starts the section.
+         * @param offset The byte offset of the header line.
+         * @param length The number of bytes in the section, including the header.
+         * @param hash The CRC32 hash of the bytes of the section.
+         */
+        public Section(String header, long offset, long length, long hash) {
+            mHeader = header;
+            mOffset = offset;
+            mLength = length;
+            mHash = hash;
+        }
+
+        /**
+         * Get the header line which starts the section.
+         */
+        public String getHeader() {
+            return mHeader;
+        }
+
+        /**
+         * Get the byte offset of the header line.
+         */
+        public long getOffset() {
+            return mOffset;
+        }
+
+        /**
+         * Get the number of bytes in the section, including the header.
+         */
+        public long getLength() {
+            return mLength;
+        }
+
+        /**
+         * Get the CRC32 hash of the bytes of the section.
+         */
+        public long getHash() {
+            return mHash;
+        }
+    }
+
+    /**
+     * Constructor for {@link SectionIndex}.
+     *
+     * @param fileLength The length of the indexed file.
+     * @param lastModified The modification time of the indexed file.
+     * @param sections The sections of the file, in order.
+     */
+    public SectionIndex(long fileLength, long lastModified, List<Section> sections) {
+        mFileLength = fileLength;
+        mLastModified = lastModified;
+        mSections = Collections.unmodifiableList(new ArrayList<Section>(sections));
+    }
+
+    /**
+     * Build the index of a file by reading it once.
+     *
+     * @param file The file to index.
+     * @param filter The {@link HeaderFilter} which finds the headers of the sections.
+     * @return The {@link SectionIndex}.
+     * @throws IOException if the file could not be read.
+     */
+    public static SectionIndex build(File file, HeaderFilter filter) throws IOException {
+        final long lastModified = file.lastModified();
+        List<String> headers = new ArrayList<String>();
+        List<Long> offsets = new ArrayList<Long>();
+
+        MappedLineReader reader = new MappedLineReader(file);
+        try {
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                if (filter.isHeader(line)) {
+                    headers.add(line.toString());
+                    offsets.add(reader.getLineOffset());
+                }
+            }
+
+            List<Section> sections = new ArrayList<Section>(headers.size());
+            final long fileLength = reader.getSize();
+            for (int i = 0; i < headers.size(); i++) {
+                final long offset = offsets.get(i);
+                final long end = i + 1 < offsets.size() ? offsets.get(i + 1) : fileLength;
+                sections.add(new Section(headers.get(i), offset, end - offset,
+                        reader.getCrc32(offset, end - offset)));
+            }
+            return new SectionIndex(fileLength, lastModified, sections);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Load an index saved by {@link #save(File)}.
+     *
+     * @param indexFile The index file.
+     * @return The {@link SectionIndex}.
+     * @throws IOException if the index could not be read or is not a valid index.
+     */
+    public static SectionIndex load(File indexFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), StandardCharsets.UTF_8));
+        try {
+            String line = reader.readLine();
+            String[] fields = line == null ? new String[0] : line.split(" ");
+            if (fields.length != 4 || !MAGIC.equals(fields[0])
+                    || !Integer.toString(VERSION).equals(fields[1])) {
+                throw new IOException(String.format("%s is not a section index", indexFile));
+            }
+            final long fileLength = parseLong(fields[2], indexFile);
+            final long lastModified = parseLong(fields[3], indexFile);
+
+            List<Section> sections = new ArrayList<Section>();
+            while ((line = reader.readLine()) != null) {
+                fields = line.split(" ", 4);
+                if (fields.length != 4) {
+                    throw new IOException(String.format("Bad section in %s: %s", indexFile, line));
+                }
+                sections.add(new Section(fields[3], parseLong(fields[0], indexFile),
+                        parseLong(fields[1], indexFile), parseHash(fields[2], indexFile)));
+            }
+            return new SectionIndex(fileLength, lastModified, sections);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Save the index.  The index is written to a temporary file which is then renamed, so a
+     * partly written index is never read.
+     *
+     * @param indexFile The index file.
+     * @throws IOException if the index could not be written.
+     */
+    public void save(File indexFile) throws IOException {
+        File dir = indexFile.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(indexFile.getName(), TEMP_SUFFIX, dir);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tempFile), StandardCharsets.UTF_8));
+            try {
+                writer.write(String.format("%s %d %d %d\n", MAGIC, VERSION, mFileLength,
+                        mLastModified));
+                for (Section section : mSections) {
+                    writer.write(String.format("%d %d %08x %s\n", section.getOffset(),
+                            section.getLength(), section.getHash(), section.getHeader()));
+                }
+            } finally {
+                writer.close();
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                throw new IOException(String.format("Could not write %s", indexFile));
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Get the file where the index of a log file is saved, which is the log file with
+     * {@code .idx} appended.
+     */
+    public static File getIndexFile(File file) {
+        return new File(file.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Returns true if a file is a saved index, or a temporary file written while saving an index,
+     * rather than a log file.
+     */
+    public static boolean isIndexFile(File file) {
+        final String name = file.getName();
+        return name.endsWith(INDEX_SUFFIX) ||
+                (name.endsWith(TEMP_SUFFIX) && name.contains(INDEX_SUFFIX));
+    }
+
+    /**
+     * Returns true if the index still matches a file, which has the same length and modification
+     * time as the indexed file.
+     */
+    public boolean isValidFor(File file) {
+        return file.length() == mFileLength && file.lastModified() == mLastModified;
+    }
+
+    /**
+     * Check that the bytes of a section still have the hash they had when the file was indexed.
+     *
+     * @param reader A {@link MappedLineReader} of the indexed file.
+     * @param section A {@link Section} of this index.
+     * @throws StaleIndexException if the section has changed.
+     */
+    public void verify(MappedLineReader reader, Section section) throws IOException {
+        if (section.getOffset() + section.getLength() > reader.getSize() ||
+                reader.getCrc32(section.getOffset(), section.getLength()) != section.getHash()) {
+            throw new StaleIndexException(String.format(
+                    "%s has changed since it was indexed", reader.getFile()));
+        }
+    }
+
+    /**
+     * Get the number of bytes before the first section.
+     */
+    public long getPreambleLength() {
+        return mSections.isEmpty() ? mFileLength : mSections.get(0).getOffset();
+    }
+
+    /**
+     * Get an unmodifiable {@link List} of the sections, in the order they appear in the file.
+     */
+    public List<Section> getSections() {
+        return mSections;
+    }
+
+    private static long parseLong(String value, File indexFile) throws IOException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Bad number in %s: %s", indexFile, value));
+        }
+    }
+
+    private static long parseHash(String value, File indexFile) throws IOException {
+        try {
+            return Long.parseLong(value, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Bad hash in %s: %s", indexFile, value));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Decodes numeric timestamps in the default time zone into milliseconds since the epoch.
+ * <p>
+ * This gives the same results as parsing with a lenient {@link java.text.SimpleDateFormat}, but
+ * without allocating.  The start of the last decoded minute is cached, so decoding consecutive
+ * timestamps from a log is usually only arithmetic.
+ * </p><p>
+ * A {@link TimestampDecoder} is not thread safe, so each parser should have its own.
+ * </p>
+ */
+public class TimestampDecoder {
+    /** Returned when a timestamp could not be decoded. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+
+    private boolean mCached = false;
+    private int mYear = 0;
+    private int mMonth = 0;
+    private int mDay = 0;
+    private int mHour = 0;
+    private int mMinute = 0;
+    private long mMinuteStart = 0;
+
+    /**
+     * Get the time in milliseconds since the epoch.  Fields out of range are handled the same as
+     * a lenient {@link Calendar}.
+     *
+     * @param year the year
+     * @param month the month, starting with 1 for January
+     * @param day the day of the month
+     * @param hour the hour of the day, from 0 to 23
+     * @param minute the minute
+     * @param second the second
+     * @param millis the millisecond
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime(int year, int month, int day, int hour, int minute, int second,
+            int millis) {
+        if (second < 0 || second > 59 || millis < 0 || millis > 999) {
+            return computeTime(year, month, day, hour, minute, second, millis);
+        }
+        if (!mCached || year != mYear || month != mMonth || day != mDay || hour != mHour
+                || minute != mMinute) {
+            mMinuteStart = computeTime(year, month, day, hour, minute, 0, 0);
+            mYear = year;
+            mMonth = month;
+            mDay = day;
+            mHour = hour;
+            mMinute = minute;
+            mCached = true;
+        }
+        return mMinuteStart + second * 1000L + millis;
+    }
+
+    private long computeTime(int year, int month, int day, int hour, int minute, int second,
+            int millis) {
+        mCalendar.clear();
+        mCalendar.set(year, month - 1, day, hour, minute, second);
+        mCalendar.set(Calendar.MILLISECOND, millis);
+        return mCalendar.getTimeInMillis();
+    }
+
+    /**
+     * Decode a timestamp in the format {@code MM-dd HH:mm:ss.SSS}.
+     *
+     * @param year the year, since the timestamp does not include it
+     * @param timestamp the text containing the timestamp
+     * @param start the index of the timestamp in the text
+     * @return the time in milliseconds since the epoch, or {@link #NO_TIME} if the text does not
+     * contain a timestamp at the index.
+     */
+    public long decodeMonthDay(int year, CharSequence timestamp, int start) {
+        if (!matches(timestamp, start, "dd-dd dd:dd:dd.ddd")) {
+            return NO_TIME;
+        }
+        return getTime(year, parseInt(timestamp, start, 2), parseInt(timestamp, start + 3, 2),
+                parseInt(timestamp, start + 6, 2), parseInt(timestamp, start + 9, 2),
+                parseInt(timestamp, start + 12, 2), parseInt(timestamp, start + 15, 3));
+    }
+
+    /**
+     * Decode a timestamp in the format {@code yyyy-MM-dd HH:mm:ss} or
+     * {@code yyyy-MM-dd HH:mm:ss.SSS}.
+     *
+     * @param timestamp the timestamp
+     * @return the time in milliseconds since the epoch, or {@link #NO_TIME} if the text is not
+     * a timestamp.
+     */
+    public long decode(CharSequence timestamp) {
+        if (!matches(timestamp, 0, "dddd-dd-dd dd:dd:dd")) {
+            return NO_TIME;
+        }
+        int millis = 0;
+        if (timestamp.length() != 19) {
+            if (timestamp.length() != 23 || !matches(timestamp, 19, ".ddd")) {
+                return NO_TIME;
+            }
+            millis = parseInt(timestamp, 20, 3);
+        }
+        return getTime(parseInt(timestamp, 0, 4), parseInt(timestamp, 5, 2),
+                parseInt(timestamp, 8, 2), parseInt(timestamp, 11, 2), parseInt(timestamp, 14, 2),
+                parseInt(timestamp, 17, 2), millis);
+    }
+
+    /**
+     * Convert a time in milliseconds since the epoch to a {@link Date}.
+     *
+     * @return the {@link Date}, or {@code null} if the time is {@link #NO_TIME}.
+     */
+    public static Date toDate(long time) {
+        return time == NO_TIME ? null : new Date(time);
+    }
+
+    /**
+     * Returns true if the text at an index matches a format, where {@code d} matches any digit
+     * and other characters match themselves.
+     */
+    private static boolean matches(CharSequence text, int start, String format) {
+        if (start + format.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < format.length(); i++) {
+            char c = text.charAt(start + i);
+            char f = format.charAt(i);
+            if (f == 'd' ? (c < '0' || c > '9') : c != f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseInt(CharSequence text, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            value = value * 10 + text.charAt(i) - '0';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis;
+
+import com.android.loganalysis.item.BugreportItem;
+
+import junit.framework.TestCase;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link LogAnalyzer}.
+ */
+public class LogAnalyzerTest extends TestCase {
+    private static final String BUGREPORT = "== dumpstate: 2012-04-25 20:45:10\n";
+    private static final Pattern LISTENING = Pattern.compile("Listening on http://[^:]+:(\\d+)/");
+
+    private File mDir = null;
+    private LogAnalyzer mService = null;
+    private int mPort = 0;
+    private PrintStream mOut = null;
+    private PrintStream mErr = null;
+    private ByteArrayOutputStream mStdout = new ByteArrayOutputStream();
+    private ByteArrayOutputStream mStderr = new ByteArrayOutputStream();
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mDir = Files.createTempDirectory("batch").toFile();
+        mOut = System.out;
+        mErr = System.err;
+        System.setOut(new PrintStream(mStdout, true, "UTF-8"));
+        System.setErr(new PrintStream(mStderr, true, "UTF-8"));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (mService != null) {
+            mService.stopService();
+        }
+        System.setOut(mOut);
+        System.setErr(mErr);
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that a bugreport which fails with an {@link Error} is reported as failed without
+     * stopping the other bugreports in the batch.
+     */
+    public void testBatch_failure() throws IOException, JSONException {
+        write("a.txt", BUGREPORT);
+        write("b.txt", BUGREPORT);
+        write("c.txt", BUGREPORT);
+
+        LogAnalyzer analyzer = new LogAnalyzer() {
+            @Override
+            BugreportItem parseBugreport(File file) throws IOException {
+                if ("b.txt".equals(file.getName())) {
+                    throw new StackOverflowError();
+                }
+                return super.parseBugreport(file);
+            }
+        };
+        analyzer.run(new String[] {"--batch-dir", mDir.getPath(), "--threads", "2"});
+
+        String[] lines = getStdout().split("\n");
+        assertEquals(3, lines.length);
+        int failed = 0;
+        for (String line : lines) {
+            JSONObject result = new JSONObject(line);
+            if (result.getString("FILE").endsWith("b.txt")) {
+                assertTrue(result.getString("ERROR").contains("StackOverflowError"));
+                failed++;
+            } else {
+                assertTrue(result.has("RESULT"));
+                assertFalse(result.has("ERROR"));
+            }
+        }
+        assertEquals(1, failed);
+        assertTrue(getStderr().contains("b.txt\tFAILED"));
+        assertTrue(getStderr().contains("Analyzed 3 of 3 bugreports, 1 failed"));
+    }
+
+    /**
+     * Test that the section indexes saved in a batch directory are not analyzed as bugreports
+     * when the batch is run again.
+     */
+    public void testBatch_index() throws IOException {
+        write("a.txt", BUGREPORT);
+        String[] args = new String[] {"--batch-dir", mDir.getPath(), "--index"};
+
+        new LogAnalyzer().run(args);
+        assertTrue(new File(mDir, "a.txt.idx").isFile());
+        mStdout.reset();
+        mStderr.reset();
+
+        new LogAnalyzer().run(args);
+        assertEquals(1, getStdout().split("\n").length);
+        assertTrue(getStderr().contains("Analyzed 1 of 1 bugreports, 0 failed"));
+        assertEquals(2, mDir.listFiles().length);
+    }
+
+    /**
+     * Test that a bugreport is indexed again when a section has changed without changing the
+     * length or modification time of the file.
+     */
+    public void testBugreport_staleIndex() throws IOException {
+        final String bugreport = BUGREPORT +
+                "------ SYSTEM LOG (logcat -v threadtime -d *:v) ------\n" +
+                "01-01 01:02:03.000   312   366 E ActivityManager: ANR in com.android.package\n";
+        File file = write("a.txt", bugreport);
+        String[] args = new String[] {"--bugreport", file.getPath(), "--index"};
+        new LogAnalyzer().run(args);
+        assertTrue(getStdout().contains("com.android.package"));
+
+        final long lastModified = file.lastModified();
+        write("a.txt", bugreport.replace("com.android.package", "com.android.packagf"));
+        assertTrue(file.setLastModified(lastModified));
+        mStdout.reset();
+        new LogAnalyzer().run(args);
+        assertTrue(getStdout().contains("com.android.packagf"));
+    }
+
+    /**
+     * Test that {@code --lazy} saves the section index and reuses it on the next run.
+     */
+    public void testBugreport_lazy() throws IOException {
+        File file = write("a.txt", BUGREPORT + "------ MEMORY INFO (/proc/meminfo) ------\n" +
+                "MemTotal:         353332 kB\n");
+        String[] args = new String[] {"--bugreport", file.getPath(), "--lazy"};
+        new LogAnalyzer().run(args);
+        String output = getStdout();
+        assertTrue(output.contains("353332"));
+
+        File indexFile = new File(mDir, "a.txt.idx");
+        assertTrue(indexFile.isFile());
+        final long lastModified = indexFile.lastModified() - 10000;
+        assertTrue(indexFile.setLastModified(lastModified));
+        mStdout.reset();
+        new LogAnalyzer().run(args);
+        assertEquals(output, getStdout());
+        assertEquals(lastModified, indexFile.lastModified());
+    }
+
+    /**
+     * Test that the service analyzes a bugreport under the service root.
+     */
+    public void testService() throws IOException {
+        write("a.txt", BUGREPORT);
+        startService(new LogAnalyzer(), "--service-root", mDir.getPath());
+
+        String response = post("/analyze?path=a.txt", String.format("127.0.0.1:%d", mPort), null);
+        assertTrue(response.startsWith("HTTP/1.1 200"));
+        assertTrue(response.contains("Apr 25 20:45:10"));
+        response = post("/analyze", String.format("localhost:%d", mPort), null);
+        assertTrue(response.startsWith("HTTP/1.1 200"));
+    }
+
+    /**
+     * Test that the service rejects requests for another host, such as a DNS rebinding attack.
+     */
+    public void testService_host() throws IOException {
+        startService(new LogAnalyzer());
+
+        assertTrue(post("/analyze", String.format("example.com:%d", mPort), null)
+                .startsWith("HTTP/1.1 403"));
+        assertTrue(post("/analyze", "127.0.0.1", null).startsWith("HTTP/1.1 403"));
+        assertTrue(post("/analyze", null, null).startsWith("HTTP/1.1 403"));
+    }
+
+    /**
+     * Test that the service rejects requests from web pages.
+     */
+    public void testService_origin() throws IOException {
+        startService(new LogAnalyzer());
+
+        assertTrue(post("/analyze", String.format("127.0.0.1:%d", mPort), "http://example.com")
+                .startsWith("HTTP/1.1 403"));
+    }
+
+    /**
+     * Test that the service rejects the path parameter without a service root, or for files
+     * outside the service root.
+     */
+    public void testService_path() throws IOException {
+        File dir = new File(mDir, "root");
+        assertTrue(dir.mkdir());
+        write("a.txt", BUGREPORT);
+
+        startService(new LogAnalyzer());
+        String path = "/analyze?path=" + new File(mDir, "a.txt").getPath();
+        assertTrue(post(path, String.format("127.0.0.1:%d", mPort), null)
+                .startsWith("HTTP/1.1 403"));
+        mService.stopService();
+
+        startService(new LogAnalyzer(), "--service-root", dir.getPath());
+        assertTrue(post(path, String.format("127.0.0.1:%d", mPort), null)
+                .startsWith("HTTP/1.1 403"));
+        assertTrue(post("/analyze?path=../a.txt", String.format("127.0.0.1:%d", mPort), null)
+                .startsWith("HTTP/1.1 403"));
+        assertTrue(post("/analyze?path=b.txt", String.format("127.0.0.1:%d", mPort), null)
+                .startsWith("HTTP/1.1 404"));
+        assertTrue(dir.delete());
+    }
+
+    /**
+     * Test that the service answers with an error when a bugreport fails with an {@link Error}.
+     */
+    public void testService_failure() throws IOException {
+        write("a.txt", BUGREPORT);
+        startService(new LogAnalyzer() {
+            @Override
+            BugreportItem parseBugreport(File file) throws IOException {
+                throw new StackOverflowError();
+            }
+        }, "--service-root", mDir.getPath());
+
+        String response = post("/analyze?path=a.txt", String.format("127.0.0.1:%d", mPort), null);
+        assertTrue(response.startsWith("HTTP/1.1 500"));
+        assertTrue(response.contains("\"ERROR\":\"java.lang.StackOverflowError\""));
+    }
+
+    /**
+     * Start the service on a free port, and store the port in {@link #mPort}.
+     */
+    private void startService(LogAnalyzer analyzer, String... args) throws IOException {
+        mStderr.reset();
+        String[] serviceArgs = new String[args.length + 2];
+        serviceArgs[0] = "--service-port";
+        serviceArgs[1] = "0";
+        System.arraycopy(args, 0, serviceArgs, 2, args.length);
+        analyzer.run(serviceArgs);
+        mService = analyzer;
+
+        Matcher m = LISTENING.matcher(getStderr());
+        assertTrue(m.find());
+        mPort = Integer.parseInt(m.group(1));
+    }
+
+    /**
+     * Post an empty request to the service with the given {@code Host} and {@code Origin}, which
+     * are not sent if they are null, and return the whole response.
+     */
+    private String post(String path, String host, String origin) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), mPort);
+        try {
+            socket.setSoTimeout(10000);
+            StringBuilder request = new StringBuilder();
+            request.append(String.format("POST %s HTTP/1.1\r\n", path));
+            if (host != null) {
+                request.append(String.format("Host: %s\r\n", host));
+            }
+            if (origin != null) {
+                request.append(String.format("Origin: %s\r\n", origin));
+            }
+            request.append("Content-Length: 0\r\nConnection: close\r\n\r\n");
+            OutputStream output = socket.getOutputStream();
+            output.write(request.toString().getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            InputStream input = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                response.write(buffer, 0, count);
+            }
+            return response.toString("UTF-8");
+        } finally {
+            socket.close();
+        }
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = new File(mDir, name);
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(contents.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+    private String getStdout() throws IOException {
+        return mStdout.toString("UTF-8").trim();
+    }
+
+    private String getStderr() throws IOException {
+        return mStderr.toString("UTF-8");
+    }
+}
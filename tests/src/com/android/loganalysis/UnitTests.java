@@ -16,10 +16,13 @@
 
 package com.android.loganalysis;
 
+import com.android.loganalysis.item.AttributeSchemaTest;
 import com.android.loganalysis.item.BatteryDischargeItemTest;
 import com.android.loganalysis.item.DvmLockSampleItemTest;
 import com.android.loganalysis.item.GenericItemTest;
 import com.android.loganalysis.item.InterruptItemTest;
+import com.android.loganalysis.item.KernelLogItemTest;
+import com.android.loganalysis.item.LogcatItemTest;
 import com.android.loganalysis.item.MemInfoItemTest;
 import com.android.loganalysis.item.MonkeyLogItemTest;
 import com.android.loganalysis.item.ProcrankItemTest;
@@ -38,6 +41,7 @@ import com.android.loganalysis.parser.InterruptParserTest;
 import com.android.loganalysis.parser.JavaCrashParserTest;
 import com.android.loganalysis.parser.KernelLogParserTest;
 import com.android.loganalysis.parser.LogcatParserTest;
+import com.android.loganalysis.parser.LogcatTokenizerTest;
 import com.android.loganalysis.parser.MemInfoParserTest;
 import com.android.loganalysis.parser.MonkeyLogParserTest;
 import com.android.loganalysis.parser.NativeCrashParserTest;
@@ -48,9 +52,16 @@ import com.android.loganalysis.parser.TopParserTest;
 import com.android.loganalysis.parser.TracesParserTest;
 import com.android.loganalysis.parser.WakelockParserTest;
 import com.android.loganalysis.util.ArrayUtilTest;
+import com.android.loganalysis.util.CompositeKeyMapTest;
+import com.android.loganalysis.util.JsonWriterTest;
 import com.android.loganalysis.util.LogPatternUtilTest;
+import com.android.loganalysis.util.LogReaderUtilTest;
 import com.android.loganalysis.util.LogTailUtilTest;
+import com.android.loganalysis.util.MappedLineReaderTest;
+import com.android.loganalysis.util.PatternSetTest;
 import com.android.loganalysis.util.RegexTrieTest;
+import com.android.loganalysis.util.SectionIndexTest;
+import com.android.loganalysis.util.TimestampDecoderTest;
 import com.android.loganalysis.util.config.ArgsOptionParserTest;
 import com.android.loganalysis.util.config.OptionSetterTest;
 import com.android.loganalysis.util.config.OptionUpdateRuleTest;
@@ -66,11 +77,17 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
+    // loganalysis
+    LogAnalyzerTest.class,
+
     // item
+    AttributeSchemaTest.class,
     BatteryDischargeItemTest.class,
     DvmLockSampleItemTest.class,
     GenericItemTest.class,
     InterruptItemTest.class,
+    KernelLogItemTest.class,
+    LogcatItemTest.class,
     MemInfoItemTest.class,
     MonkeyLogItemTest.class,
     ProcrankItemTest.class,
@@ -91,6 +108,7 @@ import org.junit.runners.Suite.SuiteClasses;
     JavaCrashParserTest.class,
     KernelLogParserTest.class,
     LogcatParserTest.class,
+    LogcatTokenizerTest.class,
     MemInfoParserTest.class,
     MonkeyLogParserTest.class,
     NativeCrashParserTest.class,
@@ -103,9 +121,16 @@ import org.junit.runners.Suite.SuiteClasses;
 
     // util
     ArrayUtilTest.class,
+    CompositeKeyMapTest.class,
+    JsonWriterTest.class,
     LogPatternUtilTest.class,
+    LogReaderUtilTest.class,
     LogTailUtilTest.class,
+    MappedLineReaderTest.class,
+    PatternSetTest.class,
     RegexTrieTest.class,
+    SectionIndexTest.class,
+    TimestampDecoderTest.class,
 
     // util.config
     ArgsOptionParserTest.class,
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.item;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link AttributeSchema}.
+ */
+public class AttributeSchemaTest extends TestCase {
+
+    /**
+     * Test that each attribute is given its own slot.
+     */
+    public void testIndexOf() {
+        AttributeSchema schema = new AttributeSchema(Arrays.asList("b", "a", "c", "a"));
+        assertEquals(3, schema.size());
+        for (String attribute : Arrays.asList("a", "b", "c")) {
+            int index = schema.indexOf(attribute);
+            assertTrue(index >= 0 && index < schema.size());
+            assertEquals(attribute, schema.getName(index));
+        }
+        assertEquals(-1, schema.indexOf("d"));
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), schema.getAttributes());
+    }
+
+    /**
+     * Test that an extended schema has the attributes of both sets.
+     */
+    public void testExtend() {
+        AttributeSchema schema = new AttributeSchema(Arrays.asList("a", "b"));
+        AttributeSchema extended = schema.extend(Arrays.asList("b", "c"));
+        assertEquals(2, schema.size());
+        assertEquals(3, extended.size());
+        assertTrue(extended.indexOf("c") >= 0);
+        assertEquals(-1, schema.indexOf("c"));
+    }
+
+    /**
+     * Test that equal sets of attributes share a schema.
+     */
+    public void testForAttributes() {
+        Set<String> attributes = new HashSet<String>(Arrays.asList("x", "y"));
+        AttributeSchema schema = AttributeSchema.forAttributes(attributes);
+        assertSame(schema, AttributeSchema.forAttributes(
+                new HashSet<String>(Arrays.asList("y", "x"))));
+        assertNotSame(schema, AttributeSchema.forAttributes(
+                new HashSet<String>(Arrays.asList("x", "y", "z"))));
+
+        try {
+            schema.getAttributes().add("z");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected because the schema is immutable.
+        }
+    }
+
+    /**
+     * Test that items created from a schema and from a set of attributes behave the same.
+     */
+    public void testItems() throws ConflictingItemException {
+        Set<String> attributes = new HashSet<String>(Arrays.asList("string", "integer"));
+        GenericItem setItem = new GenericItem(attributes);
+        GenericItem schemaItem = new GenericItem(new AttributeSchema(attributes));
+        setItem.setAttribute("string", "foo");
+        schemaItem.setAttribute("string", "foo");
+
+        assertEquals(setItem, schemaItem);
+        assertEquals(setItem.hashCode(), schemaItem.hashCode());
+        assertTrue(setItem.isConsistent(schemaItem));
+
+        schemaItem.setAttribute("integer", 1);
+        GenericItem merged = (GenericItem) setItem.merge(schemaItem);
+        assertEquals("foo", merged.getAttribute("string"));
+        assertEquals(1, merged.getAttribute("integer"));
+        assertEquals(schemaItem, merged);
+    }
+}
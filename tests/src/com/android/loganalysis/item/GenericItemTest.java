@@ -263,4 +263,56 @@ public class GenericItemTest extends TestCase {
         assertTrue(output.get("item") instanceof JSONObject);
         assertFalse(output.has("null"));
     }
+
+    /**
+     * Test that a {@link LazyValue} attribute is computed once, when it is first read.
+     */
+    public void testLazyValue() throws JSONException {
+        final int[] computeCalls = {0};
+        LazyValue<String> lazy = new LazyValue<String>() {
+            @Override
+            protected String compute() {
+                computeCalls[0]++;
+                return mStringAttribute;
+            }
+        };
+        GenericItem item = new GenericItem(ATTRIBUTES);
+        item.setAttribute("string", lazy);
+        assertEquals(0, computeCalls[0]);
+        assertFalse(lazy.isComputed());
+
+        assertEquals(mStringAttribute, item.getAttribute("string"));
+        assertEquals(mStringItem, item);
+        assertEquals(mStringAttribute, item.toJson().get("string"));
+        assertTrue(lazy.isComputed());
+        assertEquals(1, computeCalls[0]);
+    }
+
+    /**
+     * Test that a {@link LazyValue} is computed again if computing it failed.
+     */
+    public void testLazyValue_exception() {
+        final int[] computeCalls = {0};
+        LazyValue<String> lazy = new LazyValue<String>() {
+            @Override
+            protected String compute() {
+                computeCalls[0]++;
+                if (computeCalls[0] == 1) {
+                    throw new IllegalStateException();
+                }
+                return null;
+            }
+        };
+
+        try {
+            lazy.get();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected because the first computation fails.
+        }
+        assertFalse(lazy.isComputed());
+        assertNull(lazy.get());
+        assertNull(lazy.get());
+        assertEquals(2, computeCalls[0]);
+    }
 }
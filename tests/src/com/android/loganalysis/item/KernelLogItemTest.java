@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.item;
+
+import com.android.loganalysis.parser.KernelLogParser;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link KernelLogItem}.
+ */
+public class KernelLogItemTest extends TestCase {
+
+    /**
+     * Test that the events are indexed by category, and that only the first kernel reset is
+     * added.
+     */
+    public void testGetMiscEvents() {
+        KernelLogItem kernelLog = new KernelLogItem();
+        MiscKernelLogItem event = new MiscKernelLogItem();
+        event.setCategory("a");
+        kernelLog.addEvent(event);
+        MiscKernelLogItem reset = new MiscKernelLogItem();
+        reset.setCategory(KernelLogParser.KERNEL_RESET);
+        kernelLog.addEvent(reset);
+        assertSame(event, kernelLog.getMiscEvents("a").get(0));
+        assertSame(reset, kernelLog.getMiscEvents(KernelLogParser.KERNEL_RESET).get(0));
+        assertTrue(kernelLog.getMiscEvents("b").isEmpty());
+
+        MiscKernelLogItem secondReset = new MiscKernelLogItem();
+        secondReset.setCategory(KernelLogParser.KERNEL_RESET);
+        kernelLog.addEvent(secondReset);
+        assertEquals(2, kernelLog.getEvents().size());
+        assertEquals(1, kernelLog.getMiscEvents(KernelLogParser.KERNEL_RESET).size());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.item;
+
+import junit.framework.TestCase;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Unit test for {@link LogcatItem}.
+ */
+public class LogcatItemTest extends TestCase {
+
+    /**
+     * Test that the events are indexed by type and category as they are added.
+     */
+    public void testAddEvent() {
+        LogcatItem logcat = new LogcatItem();
+        AnrItem anr = new AnrItem();
+        anr.setCategory("anr");
+        JavaCrashItem jc = new JavaCrashItem();
+        jc.setCategory("java");
+        NativeCrashItem nc = new NativeCrashItem();
+        nc.setCategory("native");
+        MiscLogcatItem misc1 = new MiscLogcatItem();
+        misc1.setCategory("misc");
+        MiscLogcatItem misc2 = new MiscLogcatItem();
+        misc2.setCategory("misc");
+
+        logcat.addEvent(misc1);
+        logcat.addEvent(anr);
+        logcat.addEvent(jc);
+        logcat.addEvent(nc);
+        logcat.addEvent(misc2);
+
+        assertEquals(5, logcat.getEvents().size());
+        assertSame(misc1, logcat.getEvents().get(0));
+        assertSame(misc2, logcat.getEvents().get(4));
+        assertEquals(1, logcat.getAnrs().size());
+        assertSame(anr, logcat.getAnrs().get(0));
+        assertEquals(1, logcat.getJavaCrashes().size());
+        assertSame(jc, logcat.getJavaCrashes().get(0));
+        assertEquals(1, logcat.getNativeCrashes().size());
+        assertSame(nc, logcat.getNativeCrashes().get(0));
+
+        List<MiscLogcatItem> misc = logcat.getMiscEvents("misc");
+        assertEquals(2, misc.size());
+        assertSame(misc1, misc.get(0));
+        assertSame(misc2, misc.get(1));
+        assertSame(anr, logcat.getMiscEvents("anr").get(0));
+        assertTrue(logcat.getMiscEvents("unknown").isEmpty());
+    }
+
+    /**
+     * Test that the lists of events can't be modified.
+     */
+    public void testGetEvents_unmodifiable() {
+        LogcatItem logcat = new LogcatItem();
+        MiscLogcatItem misc = new MiscLogcatItem();
+        misc.setCategory("misc");
+        logcat.addEvent(misc);
+
+        try {
+            logcat.getEvents().clear();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected because the events are only added with addEvent().
+        }
+        try {
+            logcat.getMiscEvents("misc").add(misc);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected because the events are only added with addEvent().
+        }
+        assertEquals(1, logcat.getEvents().size());
+    }
+
+    /**
+     * Test that the events of a merged logcat are indexed.
+     */
+    public void testMerge() throws ConflictingItemException {
+        LogcatItem logcat1 = new LogcatItem();
+        logcat1.setStartTime(new Date(0));
+        logcat1.setStopTime(new Date(1000));
+        AnrItem anr = new AnrItem();
+        anr.setCategory("anr");
+        anr.setEventTime(new Date(500));
+        logcat1.addEvent(anr);
+
+        LogcatItem logcat2 = new LogcatItem();
+        logcat2.setStartTime(new Date(2000));
+        logcat2.setStopTime(new Date(3000));
+        JavaCrashItem jc = new JavaCrashItem();
+        jc.setCategory("java");
+        jc.setEventTime(new Date(2500));
+        logcat2.addEvent(jc);
+
+        LogcatItem merged = logcat1.merge(logcat2);
+        assertEquals(2, merged.getEvents().size());
+        assertSame(anr, merged.getAnrs().get(0));
+        assertSame(jc, merged.getJavaCrashes().get(0));
+        assertSame(jc, merged.getMiscEvents("java").get(0));
+    }
+
+    /**
+     * Test that overlapping logcats are merged in time order with the shared events only once.
+     */
+    public void testMerge_overlap() throws ConflictingItemException {
+        MiscLogcatItem event1 = createEvent(100, "a");
+        MiscLogcatItem event2 = createEvent(300, "b");
+        MiscLogcatItem event3 = createEvent(500, "c");
+        MiscLogcatItem event4 = createEvent(700, "d");
+
+        LogcatItem logcat1 = new LogcatItem();
+        logcat1.setStartTime(new Date(0));
+        logcat1.setStopTime(new Date(600));
+        logcat1.addEvent(event1);
+        logcat1.addEvent(event2);
+        logcat1.addEvent(event3);
+
+        LogcatItem logcat2 = new LogcatItem();
+        logcat2.setStartTime(new Date(200));
+        logcat2.setStopTime(new Date(800));
+        logcat2.addEvent(createEvent(300, "b"));
+        logcat2.addEvent(createEvent(500, "c"));
+        logcat2.addEvent(event4);
+
+        LogcatItem merged = logcat1.merge(logcat2);
+        assertEquals(new Date(0), merged.getStartTime());
+        assertEquals(new Date(800), merged.getStopTime());
+        List<MiscLogcatItem> events = merged.getEvents();
+        assertEquals(4, events.size());
+        assertSame(event1, events.get(0));
+        assertSame(event2, events.get(1));
+        assertSame(event3, events.get(2));
+        assertSame(event4, events.get(3));
+
+        // The merge is in time order when the logcats don't overlap in either order.
+        LogcatItem logcat3 = new LogcatItem();
+        logcat3.setStartTime(new Date(-100));
+        logcat3.setStopTime(new Date(0));
+        MiscLogcatItem event0 = createEvent(-50, "z");
+        logcat3.addEvent(event0);
+        assertSame(event0, logcat1.merge(logcat3).getEvents().get(0));
+        assertSame(event0, logcat3.merge(logcat1).getEvents().get(0));
+    }
+
+    /**
+     * Test that logcats with different events in the overlapping span are not merged.
+     */
+    public void testMerge_conflict() {
+        LogcatItem logcat1 = new LogcatItem();
+        logcat1.setStartTime(new Date(0));
+        logcat1.setStopTime(new Date(600));
+        logcat1.addEvent(createEvent(300, "b"));
+
+        LogcatItem logcat2 = new LogcatItem();
+        logcat2.setStartTime(new Date(200));
+        logcat2.setStopTime(new Date(800));
+        logcat2.addEvent(createEvent(300, "other"));
+
+        try {
+            logcat1.merge(logcat2);
+            fail("Expected ConflictingItemException");
+        } catch (ConflictingItemException e) {
+            // Expected because the stacks are different.
+        }
+    }
+
+    private static MiscLogcatItem createEvent(long time, String stack) {
+        MiscLogcatItem event = new MiscLogcatItem();
+        event.setEventTime(new Date(time));
+        event.setPid(1);
+        event.setTid(2);
+        event.setCategory("misc");
+        event.setStack(stack);
+        return event;
+    }
+}
@@ -16,11 +16,16 @@
 package com.android.loganalysis.parser;
 
 import com.android.loganalysis.item.IItem;
+import com.android.loganalysis.item.MemInfoItem;
 
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Unit tests for {@link AbstractSectionParser}
@@ -64,6 +69,26 @@ public class AbstractSectionParserTest extends TestCase {
         }
     }
 
+    private static class RecordingParser implements IParser {
+        private List<String> mLines = Collections.synchronizedList(new ArrayList<String>());
+        private Thread mThread = null;
+
+        public List<String> getLines() {
+            return mLines;
+        }
+
+        public Thread getThread() {
+            return mThread;
+        }
+
+        @Override
+        public IItem parse(List<String> input) {
+            mLines.addAll(input);
+            mThread = Thread.currentThread();
+            return null;
+        }
+    }
+
     /**
      * Verifies that {@link AbstractSectionParser} switches between parsers as expected
      */
@@ -94,5 +119,98 @@ public class AbstractSectionParserTest extends TestCase {
                     parsers[i].getCalls());
         }
     }
-}
 
+    /**
+     * Verifies that sections are parsed on the executor and that blocks for the same parser are
+     * parsed in order.
+     */
+    public void testSwitchParsers_executor() {
+        RecordingParser initialParser = new RecordingParser();
+        RecordingParser parser1 = new RecordingParser();
+        RecordingParser parser2 = new RecordingParser();
+        mParser.setParser(initialParser);
+        mParser.addSectionParser(parser1, "section 1");
+        mParser.addSectionParser(parser2, "section 2");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            mParser.setExecutor(executor);
+            mParser.parse(Arrays.asList("header", "section 1", "a", "section 2", "b", "c",
+                    "section 1", "d"));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(Arrays.asList("header"), initialParser.getLines());
+        assertSame(Thread.currentThread(), initialParser.getThread());
+        assertEquals(Arrays.asList("a", "d"), parser1.getLines());
+        assertNotSame(Thread.currentThread(), parser1.getThread());
+        assertEquals(Arrays.asList("b", "c"), parser2.getLines());
+        assertNotSame(Thread.currentThread(), parser2.getThread());
+    }
+
+    /**
+     * Verifies that the lines of sections handled by a {@link NoopParser} are skipped instead of
+     * being buffered and passed to the parser.
+     */
+    public void testSkipNoopSections() {
+        RecordingParser parser = new RecordingParser();
+        mParser.addSectionParser(parser, "section 1");
+        mParser.addSectionParser(new NoopParser() {
+            @Override
+            public IItem parse(List<String> block) {
+                fail("Skipped section was parsed");
+                return null;
+            }
+        }, "section .*");
+
+        mParser.parse(Arrays.asList("header", "section 2", "skipped", "section 1", "a",
+                "section 3", "skipped"));
+
+        assertEquals(Arrays.asList("a"), parser.getLines());
+    }
+
+    /**
+     * Verifies that the section parsers are only added once, and that
+     * {@link AbstractSectionParser#reset()} discards the sections and resets the section parsers.
+     */
+    public void testReset() {
+        final int[] setupCalls = {0};
+        final int[] resetCalls = {0};
+        final IParser sectionParser = new IParser() {
+            @Override
+            public IItem parse(List<String> lines) {
+                return new MemInfoItem();
+            }
+
+            @Override
+            public void reset() {
+                resetCalls[0]++;
+            }
+        };
+        AbstractSectionParser parser = new AbstractSectionParser() {
+            @Override
+            protected void setup() {
+                setupCalls[0]++;
+                addSectionParser(sectionParser, "section");
+            }
+
+            @Override
+            public IItem parse(List<String> lines) {
+                ensureSetUp();
+                for (String line : lines) {
+                    parseLine(line);
+                }
+                commit();
+                return getSection(sectionParser);
+            }
+        };
+
+        assertNotNull(parser.parse(Arrays.asList("section", "a")));
+        parser.reset();
+        assertEquals(1, resetCalls[0]);
+        assertNull(parser.parse(Arrays.asList("header")));
+        assertNotNull(parser.parse(Arrays.asList("section", "b")));
+        assertEquals(1, setupCalls[0]);
+    }
+}
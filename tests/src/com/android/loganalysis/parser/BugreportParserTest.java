@@ -18,15 +18,25 @@ package com.android.loganalysis.parser;
 import com.android.loganalysis.item.BugreportItem;
 import com.android.loganalysis.item.IItem;
 import com.android.loganalysis.item.MiscKernelLogItem;
+import com.android.loganalysis.item.WakelockItem;
 import com.android.loganalysis.util.ArrayUtil;
+import com.android.loganalysis.util.MappedLineReader;
+import com.android.loganalysis.util.SectionIndex;
 
 import junit.framework.TestCase;
 
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -212,6 +222,248 @@ public class BugreportParserTest extends TestCase {
         assertEquals(parseTime("1999-01-01 01:02:04.000"), bugreport.getSystemLog().getStopTime());
     }
 
+    /**
+     * Test that sections parsed in parallel are assembled into the bugreport.
+     */
+    public void testParse_parallel() throws ParseException {
+        List<String> lines = Arrays.asList(
+                "========================================================",
+                "== dumpstate: 1999-01-01 02:03:04",
+                "========================================================",
+                "------ SYSTEM LOG (logcat -v threadtime -d *:v) ------",
+                "01-01 01:02:03.000   312   366 E ActivityManager: ANR (application not responding) in process: com.android.package",
+                "01-01 01:02:04.000   312   366 E ActivityManager: Reason: keyDispatchingTimedOut",
+                "",
+                "------ KERNEL LOG (dmesg) ------",
+                "<3>[    1.000000] benign message",
+                "",
+                "------ VM TRACES AT LAST ANR (/data/anr/traces.txt: 1999-01-01 01:02:03) ------",
+                "",
+                "----- pid 2887 at 1999-01-01 01:02:03 -----",
+                "Cmd line: com.android.package",
+                "",
+                "\"main\" prio=5 tid=1 SUSPENDED",
+                "  at class.method1(Class.java:1)",
+                "",
+                "----- end 2887 -----",
+                "");
+
+        BugreportParser parser = new BugreportParser();
+        parser.setParallel(true);
+        BugreportItem bugreport = parser.parse(lines);
+        assertNotNull(bugreport);
+        assertEquals(parseTime("1999-01-01 02:03:04.000"), bugreport.getTime());
+        assertNotNull(bugreport.getSystemLog());
+        assertEquals(parseTime("1999-01-01 01:02:03.000"), bugreport.getSystemLog().getStartTime());
+        assertEquals(1, bugreport.getSystemLog().getAnrs().size());
+        assertEquals("\"main\" prio=5 tid=1 SUSPENDED\n  at class.method1(Class.java:1)",
+                bugreport.getSystemLog().getAnrs().get(0).getTrace());
+        assertNotNull(bugreport.getKernelLog());
+        assertEquals(1.0, bugreport.getKernelLog().getStopTime(), 0.000005);
+    }
+
+    /**
+     * Test that a reset parser does not keep the results of the previous bugreport.
+     */
+    public void testParse_reset() throws ParseException {
+        BugreportParser parser = new BugreportParser();
+        BugreportItem first = parser.parse(getResetBugreport("2012-04-25", "key=value",
+                "com.android.first", "FirstWakeLock"));
+        assertEquals(1, first.getCommandLine().size());
+
+        parser.reset();
+        BugreportItem second = parser.parse(getResetBugreport("1999-01-01", "",
+                "com.android.second", "SecondWakeLock"));
+        assertNotSame(first, second);
+        assertEquals(parseTime("1999-01-01 02:03:04.000"), second.getTime());
+        assertTrue(second.getCommandLine().isEmpty());
+        assertEquals(1, second.getSystemLog().getAnrs().size());
+        assertEquals("com.android.second", second.getSystemLog().getAnrs().get(0).getApp());
+        assertEquals(parseTime("1999-01-01 01:02:03.000"), second.getSystemLog().getStartTime());
+        WakelockItem wakelocks = second.getDumpsys().getBatteryStats()
+                .getDetailedBatteryStatsItem().getWakelockItem();
+        assertEquals(1, wakelocks.getWakeLocks().size());
+        assertEquals("SecondWakeLock", wakelocks.getWakeLocks().get(0).getName());
+
+        // The first bugreport is not changed by parsing the second.
+        assertEquals(1, first.getCommandLine().size());
+        assertEquals("com.android.first", first.getSystemLog().getAnrs().get(0).getApp());
+    }
+
+    /**
+     * Test that parsing with a {@link SectionIndex} gives the same result as reading the whole
+     * bugreport.
+     */
+    public void testParse_index() throws IOException, JSONException {
+        List<String> lines = Arrays.asList(
+                "========================================================",
+                "== dumpstate: 1999-01-01 02:03:04",
+                "========================================================",
+                "Command line: key=value",
+                "------ SYSTEM LOG (logcat -v threadtime -d *:v) ------",
+                "01-01 01:02:03.000   312   366 E ActivityManager: ANR in com.android.package",
+                "01-01 01:02:04.000   312   366 E ActivityManager: Reason: keyDispatchingTimedOut",
+                "------ SKIPPED SECTION ------",
+                "skipped",
+                "------ KERNEL LOG (dmesg) ------",
+                "<3>[    1.000000] benign message",
+                "");
+        File file = File.createTempFile("bugreport", ".txt");
+        try {
+            FileOutputStream stream = new FileOutputStream(file);
+            try {
+                stream.write(ArrayUtil.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            } finally {
+                stream.close();
+            }
+
+            BugreportParser parser = new BugreportParser();
+            SectionIndex index = parser.buildIndex(file);
+            assertEquals(3, index.getSections().size());
+            assertEquals("------ SKIPPED SECTION ------", index.getSections().get(1).getHeader());
+
+            BugreportItem expected = new BugreportParser().parse(new MappedLineReader(file));
+            BugreportItem indexed = parser.parse(new MappedLineReader(file), index);
+            assertEquals(expected.toJson().toString(), indexed.toJson().toString());
+            assertEquals(1, indexed.getSystemLog().getAnrs().size());
+            assertEquals("value", indexed.getCommandLine().get("key"));
+
+            // An edit which keeps the length and modification time is found by the hashes.
+            final long lastModified = file.lastModified();
+            FileOutputStream edit = new FileOutputStream(file);
+            try {
+                edit.write(ArrayUtil.join("\n", lines).replace("com.android.package",
+                        "com.android.packagf").getBytes(StandardCharsets.UTF_8));
+            } finally {
+                edit.close();
+            }
+            assertTrue(file.setLastModified(lastModified));
+            assertTrue(index.isValidFor(file));
+            parser.reset();
+            try {
+                parser.parse(new MappedLineReader(file), index);
+                fail("Expected StaleIndexException");
+            } catch (SectionIndex.StaleIndexException e) {
+                // Expected because the system log has changed.
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that lazy sections are only parsed when they are read, and that they are the same as
+     * sections which are parsed with the rest of the bugreport.
+     */
+    public void testParse_lazy() throws IOException, JSONException {
+        List<String> lines = Arrays.asList(
+                "========================================================",
+                "== dumpstate: 1999-01-01 02:03:04",
+                "========================================================",
+                "------ MEMORY INFO (/proc/meminfo) ------",
+                "MemTotal:         353332 kB",
+                "------ SYSTEM LOG (logcat -v threadtime -d *:v) ------",
+                "01-01 01:02:03.000   312   366 E ActivityManager: ANR in com.android.package",
+                "------ DUMPSYS (dumpsys) ------",
+                "DUMP OF SERVICE batterystats:",
+                "Statistics since last charge:",
+                " Time on battery: 2h 21m 5s 622ms (12.0%) realtime, 7m 54s 146ms (0.7%) uptime",
+                " All partial wake locks:",
+                " Wake lock u0a7 NlpWakeLock: 8m 13s 203ms (1479 times) realtime",
+                "");
+        File file = File.createTempFile("bugreport", ".txt");
+        try {
+            FileOutputStream stream = new FileOutputStream(file);
+            try {
+                stream.write(ArrayUtil.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            } finally {
+                stream.close();
+            }
+
+            BugreportParser parser = new BugreportParser();
+            parser.setLazy(true);
+            BugreportItem expected = new BugreportParser().parse(new MappedLineReader(file));
+            BugreportItem lazy = parser.parse(new MappedLineReader(file), parser.buildIndex(file));
+            assertEquals(1, lazy.getSystemLog().getAnrs().size());
+            assertNull(lazy.getTop());
+            assertEquals(353332L, (long) lazy.getMemInfo().get("MemTotal"));
+            assertEquals(expected.toJson().toString(), lazy.toJson().toString());
+
+            // The file can't be read again once it has changed.
+            parser.reset();
+            lazy = parser.parse(new MappedLineReader(file), parser.buildIndex(file));
+            assertTrue(file.setLastModified(file.lastModified() - 10000));
+            try {
+                lazy.getDumpsys();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                // Expected because the dumpsys section was not parsed with the bugreport.
+            }
+            assertNotNull(lazy.getSystemLog());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that only the selected sections are parsed, and that the selection can be changed.
+     */
+    public void testParse_sections() {
+        List<String> lines = getResetBugreport("2012-04-25", "", "com.android.app", "WakeLock");
+        BugreportParser parser = new BugreportParser();
+        parser.setSections(new HashSet<String>(Arrays.asList("dumpsys:batterystats")));
+        BugreportItem bugreport = parser.parse(lines);
+        assertNotNull(bugreport.getTime());
+        assertNull(bugreport.getSystemLog());
+        assertNotNull(bugreport.getDumpsys().getBatteryStats());
+
+        parser.reset();
+        parser.setSections(new HashSet<String>(Arrays.asList("system-log")));
+        bugreport = parser.parse(lines);
+        assertEquals(1, bugreport.getSystemLog().getAnrs().size());
+        assertNull(bugreport.getDumpsys());
+
+        parser.reset();
+        parser.setSections(null);
+        bugreport = parser.parse(lines);
+        assertNotNull(bugreport.getSystemLog());
+        assertNotNull(bugreport.getDumpsys().getBatteryStats());
+
+        try {
+            parser.setSections(new HashSet<String>(Arrays.asList("system-log", "unknown")));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected because there is no such section.
+        }
+        try {
+            parser.setSections(new HashSet<String>(Arrays.asList("dumpsys:unknown")));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected because there is no such dumpsys service.
+        }
+    }
+
+    private List<String> getResetBugreport(String date, String commandLine, String app,
+            String wakelock) {
+        return Arrays.asList(
+                "========================================================",
+                "== dumpstate: " + date + " 02:03:04",
+                "========================================================",
+                "Command line: " + commandLine,
+                "------ SYSTEM LOG (logcat -v threadtime -d *:v) ------",
+                "01-01 01:02:03.000   312   366 E ActivityManager: ANR in " + app,
+                "01-01 01:02:04.000   312   366 E ActivityManager: Reason: keyDispatchingTimedOut",
+                "",
+                "------ DUMPSYS (dumpsys) ------",
+                "DUMP OF SERVICE batterystats:",
+                "Statistics since last charge:",
+                " Time on battery: 2h 21m 5s 622ms (12.0%) realtime, 7m 54s 146ms (0.7%) uptime",
+                " All partial wake locks:",
+                " Wake lock u0a7 " + wakelock + ": 8m 13s 203ms (1479 times) realtime",
+                " ",
+                "");
+    }
+
     /**
      * Test that the command line is parsed
      */
@@ -20,6 +20,7 @@ import com.android.loganalysis.item.DumpsysItem;
 import junit.framework.TestCase;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -125,5 +126,30 @@ public class DumpsysParserTest extends TestCase {
         assertNotNull(dumpsys.getProcStats());
         assertNotNull(dumpsys.getWifiStats());
     }
-}
 
+    /**
+     * Test that only the selected services are parsed.
+     */
+    public void testSetServices() {
+        List<String> inputBlock = Arrays.asList(
+                "DUMP OF SERVICE batterystats:",
+                "Statistics since last charge:",
+                " Time on battery: 2h 21m 5s 622ms (12.0%) realtime, 7m 54s 146ms (0.7%) uptime",
+                "DUMP OF SERVICE procstats:",
+                "COMMITTED STATS FROM 2015-03-20-02-01-02 (checked in):",
+                "  * com.android.systemui / u0a22 / v22:",
+                "           TOTAL: 100% (159MB-160MB-161MB/153MB-153MB-154MB over 13)");
+
+        DumpsysParser parser = new DumpsysParser();
+        parser.setServices(new HashSet<String>(Arrays.asList("procstats")));
+        DumpsysItem dumpsys = parser.parse(inputBlock);
+        assertNull(dumpsys.getBatteryStats());
+        assertNotNull(dumpsys.getProcStats());
+
+        parser.reset();
+        parser.setServices(null);
+        dumpsys = parser.parse(inputBlock);
+        assertNotNull(dumpsys.getBatteryStats());
+        assertNotNull(dumpsys.getProcStats());
+    }
+}
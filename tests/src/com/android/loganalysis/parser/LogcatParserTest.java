@@ -19,15 +19,25 @@ import com.android.loganalysis.item.JavaCrashItem;
 import com.android.loganalysis.item.LogcatItem;
 import com.android.loganalysis.item.MiscLogcatItem;
 import com.android.loganalysis.util.ArrayUtil;
+import com.android.loganalysis.util.MappedLineReader;
 
 import junit.framework.TestCase;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 /**
@@ -585,6 +595,90 @@ public class LogcatParserTest extends TestCase {
                 logcat.getNativeCrashes().get(1).getEventTime());
     }
 
+    /**
+     * Test that events are passed to a {@link LogcatEventListener} in the same order as they are
+     * added to the {@link LogcatItem} without one.
+     */
+    public void testParse_listener() throws ParseException {
+        List<String> lines = Arrays.asList(
+                "04-25 09:55:47.799  3064  3082 E AndroidRuntime: java.lang.Exception",
+                "04-25 09:55:47.799   115   115 I DEBUG   : *** *** *** *** *** *** *** *** *** *** *** *** *** *** *** ***",
+                "04-25 09:55:47.799  3064  3082 E AndroidRuntime: \tat class.method1(Class.java:1)",
+                "04-25 09:55:47.799   115   115 I DEBUG   : Build fingerprint: 'product:build:target'",
+                "04-25 09:55:47.799   115   115 I DEBUG   : pid: 3112, tid: 3112  >>> com.google.android.browser <<<",
+                "04-25 09:55:48.000   312   366 E ActivityManager: ANR (application not responding) in process: com.android.package",
+                "04-25 09:55:48.000   312   366 E ActivityManager: Reason: keyDispatchingTimedOut",
+                "04-25 09:55:48.000   312   366 E ActivityManager: ANR (application not responding) in process: com.android.package",
+                "04-25 09:55:48.000   312   366 E ActivityManager: Reason: keyDispatchingTimedOut",
+                "04-25 09:55:48.100   100   100 W Watchdog: *** WATCHDOG KILLING SYSTEM PROCESS: null",
+                "04-25 09:55:48.200  3064  3082 E AndroidRuntime: \tat class.method2(Class.java:2)");
+
+        LogcatItem expected = new LogcatParser("2012").parse(lines);
+        assertEquals(5, expected.getEvents().size());
+
+        final List<MiscLogcatItem> events = new ArrayList<MiscLogcatItem>();
+        LogcatParser parser = new LogcatParser("2012");
+        parser.setEventListener(new LogcatEventListener() {
+            @Override
+            public void onEvent(MiscLogcatItem item) {
+                events.add(item);
+            }
+        });
+        LogcatItem logcat = parser.parse(lines);
+
+        assertEquals(0, logcat.getEvents().size());
+        assertEquals(expected.getStartTime(), logcat.getStartTime());
+        assertEquals(expected.getStopTime(), logcat.getStopTime());
+        assertEquals(expected.getEvents(), events);
+    }
+
+    /**
+     * Test that events are passed to a {@link LogcatEventListener} once they are complete, and
+     * that a group of lines is complete once it has been quiet for long enough.
+     */
+    public void testParse_listenerQuiet() throws IOException {
+        String input = ArrayUtil.join("\n",
+                "04-25 09:55:47.799  3064  3082 E AndroidRuntime: java.lang.Exception",
+                "04-25 09:55:47.799  3064  3082 E AndroidRuntime: \tat class.method1(Class.java:1)",
+                "04-25 09:55:47.800  1000  1000 I Tag: line 1",
+                "04-25 09:55:47.800  1000  1000 I Tag: line 2",
+                "04-25 09:55:47.800  1000  1000 I Tag: line 3",
+                "04-25 09:55:47.900  3064  3082 E AndroidRuntime: java.lang.IllegalStateException",
+                "04-25 09:55:47.900  3064  3082 E AndroidRuntime: \tat class.method2(Class.java:2)");
+        final int[] linesRead = new int[1];
+        BufferedReader reader = new BufferedReader(new StringReader(input)) {
+            @Override
+            public String readLine() throws IOException {
+                linesRead[0]++;
+                return super.readLine();
+            }
+        };
+
+        final List<MiscLogcatItem> events = new ArrayList<MiscLogcatItem>();
+        final List<Integer> linesReadAtEvent = new ArrayList<Integer>();
+        LogcatParser parser = new LogcatParser("2012");
+        parser.setQuietLineCount(2);
+        parser.setEventListener(new LogcatEventListener() {
+            @Override
+            public void onEvent(MiscLogcatItem item) {
+                events.add(item);
+                linesReadAtEvent.add(linesRead[0]);
+            }
+        });
+        parser.parse(reader);
+
+        assertEquals(2, events.size());
+        assertEquals("java.lang.Exception", ((JavaCrashItem) events.get(0)).getException());
+        assertEquals(5, linesReadAtEvent.get(0).intValue());
+        assertEquals("java.lang.IllegalStateException",
+                ((JavaCrashItem) events.get(1)).getException());
+        assertEquals(8, linesReadAtEvent.get(1).intValue());
+
+        // Without a listener, the lines are grouped into a single crash.
+        assertEquals(1, new LogcatParser("2012").parse(new BufferedReader(new StringReader(
+                input))).getJavaCrashes().size());
+    }
+
     /**
      * Test that the preambles are set correctly.
      */
@@ -699,6 +793,94 @@ public class LogcatParserTest extends TestCase {
         assertEquals("java.lang.Exception2", logcat.getJavaCrashes().get(0).getException());
     }
 
+    /**
+     * Test that parsing a file in chunks gives the same result as parsing it in order, for events
+     * and reboots which span chunks.
+     */
+    public void testParse_chunks() throws IOException {
+        List<String> lines = Arrays.asList(
+                "--------- beginning of main",
+                "04-25 09:15:47.799   123  3082 I ShutdownThread: Rebooting, reason: null",
+                "04-25 09:55:47.799  3064  3082 E AndroidRuntime: java.lang.Exception",
+                "04-25 09:55:47.799  3064  3082 E AndroidRuntime: \tat class.method1(Class.java:1)",
+                "--------- beginning of main",
+                "04-25 17:17:08.445   312   366 E ActivityManager: ANR (application not responding) in process: com.android.package",
+                "04-25 09:55:47.799  3065  3090 E AndroidRuntime: java.lang.Exception",
+                "04-25 09:55:47.799   115   115 I DEBUG   : *** *** *** *** *** *** *** *** *** *** *** *** *** *** *** ***",
+                "04-25 17:17:08.445   312   366 E ActivityManager: Reason: keyDispatchingTimedOut",
+                "",
+                "04-25 09:55:47.799  3065  3090 E AndroidRuntime: \tat class.method1(Class.java:1)",
+                "04-25 09:55:47.799   115   115 I DEBUG   : Build fingerprint: 'product:build:target'",
+                "04-25 17:17:08.445   312   366 E ActivityManager: Load: 0.71 / 0.83 / 1.51",
+                "04-25 09:55:47.799   115   115 I DEBUG   : pid: 3112, tid: 3112  >>> com.google.android.browser <<<",
+                "04-25 09:55:47.799  3065  3090 E AndroidRuntime: \tat class.method2(Class.java:2)",
+                "04-25 09:55:47.799   115   115 I DEBUG   : signal 11 (SIGSEGV), code 1 (SEGV_MAPERR), fault addr 00000000",
+                "04-25 18:00:00.000   555   555 W Watchdog: *** WATCHDOG KILLING SYSTEM PROCESS: null");
+
+        File file = File.createTempFile("logcat", ".txt");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            FileOutputStream stream = new FileOutputStream(file);
+            try {
+                // Mix the line terminators, so chunks can start inside a terminator.
+                for (int i = 0; i < lines.size(); i++) {
+                    stream.write(lines.get(i).getBytes(StandardCharsets.UTF_8));
+                    stream.write((i % 2 == 0 ? "\r\n" : "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            } finally {
+                stream.close();
+            }
+
+            MappedLineReader reader = new MappedLineReader(file);
+            LogcatItem expected;
+            try {
+                expected = new LogcatParser("2012").parse(reader);
+            } finally {
+                reader.close();
+            }
+            assertEquals(4, expected.getEvents().size());
+
+            for (long chunkSize : new long[] {1, 2, 3, 50, 77, 200, 1000, file.length()}) {
+                LogcatItem logcat = new LogcatParser("2012").parse(file, executor, chunkSize);
+                assertEquals(expected.toJson().toString(), logcat.toJson().toString());
+            }
+        } finally {
+            executor.shutdownNow();
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that events created on an executor are added in the same order as without one.
+     */
+    public void testParse_executor() {
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 300; i++) {
+            lines.add(String.format(
+                    "04-25 09:55:47.799  3064 %5d E AndroidRuntime: java.lang.Exception%d", i, i));
+            lines.add(String.format(
+                    "04-25 09:55:47.799   115 %5d I DEBUG   : Build fingerprint: 'a:b:c'", i));
+            lines.add(String.format(
+                    "04-25 09:55:47.799  3064 %5d E AndroidRuntime: \tat class.method%d(C.java:1)",
+                    i, i));
+        }
+
+        LogcatItem expected = new LogcatParser("2012").parse(lines);
+        assertEquals(600, expected.getEvents().size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            LogcatParser parser = new LogcatParser("2012");
+            parser.setExecutor(executor);
+            LogcatItem logcat = parser.parse(lines);
+            assertEquals(expected.toJson().toString(), logcat.toJson().toString());
+            assertEquals("java.lang.Exception299",
+                    logcat.getJavaCrashes().get(299).getException());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Test that the time logcat format can be parsed.
      */
@@ -721,6 +903,28 @@ public class LogcatParserTest extends TestCase {
                 logcat.getJavaCrashes().get(0).getEventTime());
     }
 
+    /**
+     * Test that the year and epoch timestamp formats can be parsed.
+     */
+    public void testParse_timeFormats() throws ParseException {
+        List<String> lines = Arrays.asList(
+                "2011-04-25 09:55:47.799  3064  3082 E AndroidRuntime: java.lang.Exception",
+                "2011-04-25 09:55:47.799  3064  3082 E AndroidRuntime: \tat class.method1(Class.java:1)");
+
+        LogcatItem logcat = new LogcatParser("2012").parse(lines);
+        assertEquals(parseTime("2011-04-25 09:55:47.799"), logcat.getStartTime());
+        assertEquals(1, logcat.getJavaCrashes().size());
+        assertEquals(3082, logcat.getJavaCrashes().get(0).getTid().intValue());
+
+        lines = Arrays.asList(
+                "1303725347.799  3064  3082 E AndroidRuntime: java.lang.Exception",
+                "1303725348.001 E/AndroidRuntime( 3064): \tat class.method1(Class.java:1)");
+
+        logcat = new LogcatParser().parse(lines);
+        assertEquals(new Date(1303725347799L), logcat.getStartTime());
+        assertEquals(new Date(1303725348001L), logcat.getStopTime());
+    }
+
     /**
      * Test that we can add and find custom patterns that match based on logcat Tags only.
      */
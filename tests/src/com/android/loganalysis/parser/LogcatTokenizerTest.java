@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.parser;
+
+import com.android.loganalysis.parser.LogcatTokenizer.Layout;
+import com.android.loganalysis.parser.LogcatTokenizer.TimeFormat;
+
+import junit.framework.TestCase;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link LogcatTokenizer}.
+ */
+public class LogcatTokenizerTest extends TestCase {
+
+    /** The pattern previously used by {@link LogcatParser} for the threadtime format. */
+    private static final Pattern THREADTIME_LINE = Pattern.compile(
+            "^(\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}.\\d{3})"
+            + "(?:\\s+[0-9A-Za-z]+)?\\s+(\\d+)\\s+(\\d+)\\s+([A-Z])\\s+"
+            + "(.+?)\\s*: (.*)$");
+
+    /** The pattern previously used by {@link LogcatParser} for the time format. */
+    private static final Pattern TIME_LINE = Pattern.compile(
+            "^(\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}.\\d{3})\\s+"
+            + "(\\w)/(.+?)\\(\\s*(\\d+)\\): (.*)$");
+
+    private LogcatTokenizer mTokenizer = null;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mTokenizer = new LogcatTokenizer();
+    }
+
+    /**
+     * Test tokenizing the threadtime format.
+     */
+    public void testTokenize_threadtime() {
+        assertTrue(mTokenizer.tokenize(
+                "05-26 11:02:36.886  5689  5690 D AndroidRuntime: CheckJNI is OFF."));
+        assertEquals(TimeFormat.MONTH_DAY, mTokenizer.getTimeFormat());
+        assertEquals(Layout.THREADTIME, mTokenizer.getLayout());
+        assertEquals(5, mTokenizer.getMonth());
+        assertEquals(26, mTokenizer.getDay());
+        assertEquals(11, mTokenizer.getHour());
+        assertEquals(2, mTokenizer.getMinute());
+        assertEquals(36, mTokenizer.getSecond());
+        assertEquals(886, mTokenizer.getMillis());
+        assertEquals(-1, mTokenizer.getYear());
+        assertFalse(mTokenizer.hasUid());
+        assertEquals(5689, mTokenizer.getPid());
+        assertEquals(5690, mTokenizer.getTid());
+        assertEquals("D", mTokenizer.getLevel());
+        assertEquals("AndroidRuntime", mTokenizer.getTag());
+        assertEquals("CheckJNI is OFF.", mTokenizer.getMessage());
+    }
+
+    /**
+     * Test tokenizing the threadtime format with a uid.
+     */
+    public void testTokenize_uid() {
+        assertTrue(mTokenizer.tokenize(
+                "05-26 11:02:36.886  1000  5689  5690 D AndroidRuntime: message"));
+        assertEquals("1000", mTokenizer.getUid());
+        assertEquals(5689, mTokenizer.getPid());
+        assertEquals(5690, mTokenizer.getTid());
+
+        assertTrue(mTokenizer.tokenize(
+                "05-26 11:02:36.886 system  5689  5690 D AndroidRuntime: message"));
+        assertEquals("system", mTokenizer.getUid());
+        assertEquals(5689, mTokenizer.getPid());
+    }
+
+    /**
+     * Test tokenizing the time format.
+     */
+    public void testTokenize_time() {
+        assertTrue(mTokenizer.tokenize(
+                "06-04 02:32:14.002 D/dalvikvm(  236): GC_CONCURRENT freed 580K"));
+        assertEquals(Layout.TIME, mTokenizer.getLayout());
+        assertEquals(236, mTokenizer.getPid());
+        assertFalse(mTokenizer.hasTid());
+        assertEquals("D", mTokenizer.getLevel());
+        assertEquals("dalvikvm", mTokenizer.getTag());
+        assertEquals("GC_CONCURRENT freed 580K", mTokenizer.getMessage());
+    }
+
+    /**
+     * Test tokenizing the year, epoch, and monotonic timestamp formats.
+     */
+    public void testTokenize_timeFormats() {
+        assertTrue(mTokenizer.tokenize(
+                "2017-05-26 11:02:36.886  5689  5690 D AndroidRuntime: message"));
+        assertEquals(TimeFormat.YEAR, mTokenizer.getTimeFormat());
+        assertEquals(2017, mTokenizer.getYear());
+        assertEquals(5, mTokenizer.getMonth());
+        assertEquals(886, mTokenizer.getMillis());
+        assertEquals("AndroidRuntime", mTokenizer.getTag());
+
+        assertTrue(mTokenizer.tokenize("1495796556.886  5689  5690 D AndroidRuntime: message"));
+        assertEquals(TimeFormat.SECONDS, mTokenizer.getTimeFormat());
+        assertEquals(1495796556L, mTokenizer.getSeconds());
+        assertEquals(886, mTokenizer.getMillis());
+
+        assertTrue(mTokenizer.tokenize("    5.012 D/AndroidRuntime( 5689): message"));
+        assertEquals(TimeFormat.SECONDS, mTokenizer.getTimeFormat());
+        assertEquals(Layout.TIME, mTokenizer.getLayout());
+        assertEquals(5L, mTokenizer.getSeconds());
+        assertEquals(12, mTokenizer.getMillis());
+        assertEquals(5689, mTokenizer.getPid());
+
+        // Switching back to the default format
+        assertTrue(mTokenizer.tokenize("05-26 11:02:36.886  5689  5690 D AndroidRuntime: m"));
+        assertEquals(TimeFormat.MONTH_DAY, mTokenizer.getTimeFormat());
+        assertEquals(Layout.THREADTIME, mTokenizer.getLayout());
+    }
+
+    /**
+     * Test that lines which are not logcat are rejected.
+     */
+    public void testTokenize_invalid() {
+        assertFalse(mTokenizer.tokenize(""));
+        assertFalse(mTokenizer.tokenize("--------- beginning of main"));
+        assertFalse(mTokenizer.tokenize("05-26 11:02:36.886"));
+        assertFalse(mTokenizer.tokenize("05-26 11:02:36.886  5689  5690 D AndroidRuntime"));
+        assertFalse(mTokenizer.tokenize("05-26 11:02:36.886  5689  5690 DD AndroidRuntime: m"));
+        assertFalse(mTokenizer.tokenize("05-26 11:02:36.886  99999999999 1 D AndroidRuntime: m"));
+        assertFalse(mTokenizer.tokenize("5.012"));
+    }
+
+    /**
+     * Test that the tokenizer splits lines exactly as the patterns it replaced, including their
+     * backtracking behavior.
+     */
+    public void testTokenize_matchesPatterns() {
+        String[] lines = {
+            "05-26 11:02:36.886  5689  5690 D AndroidRuntime: CheckJNI is OFF.",
+            "05-26 11:02:36.886  5689  5690 D AndroidRuntime   : spaces before colon",
+            "05-26 11:02:36.886  5689  5690 D tag: with: colons",
+            "05-26 11:02:36.886  5689  5690 D tag:no space: after first colon",
+            "05-26 11:02:36.886  5689  5690 D   : empty tag",
+            "05-26 11:02:36.886  5689  5690 D  : ",
+            "05-26 11:02:36.886  5689  5690 D tag:  ",
+            "05-26 11:02:36.886  5689  5690 D tag with spaces: message",
+            "05-26 11:02:36.886  1000  5689  5690 D tag: uid",
+            "05-26 11:02:36.886  u0_a12  5689  5690 D tag: string uid",
+            "05-26 11:02:36.886  5689  5690  D tag: no uid",
+            "05-26 11:02:36.886  5689  D  5690 D tag: bad",
+            "05-26 11:02:36.886  1000  5689  5690  E  E tag: levels",
+            "05-26 11:02:36.886\t5689\t5690\tD\ttag\t: tabs",
+            "05-26 11:02:36,886  5689  5690 D tag: comma",
+            "05-26 11:02:36.886  5689  5690 D tag: line\u2028separator",
+            "05-26 11:02:36.886  5689  5690 D tag: a \n: newline in tag",
+            "05-26 11:02:36.886  5689  5690 D ta\u2028g: b: c",
+            "05-26 11:02:36.886  5689  5690 d tag: lower case level",
+            "05-26 11:02:36.886 D/tag(123): time",
+            "05-26 11:02:36.886 D/tag(  123): time",
+            "05-26 11:02:36.886 D/tag(x)(123): nested",
+            "05-26 11:02:36.886 D/tag(123) (456): two pids",
+            "05-26 11:02:36.886 D/tag(123):no space",
+            "05-26 11:02:36.886 _/tag(123): underscore level",
+            "05-26 11:02:36.886 D/(123): empty tag",
+            "05-26 11:02:36.886 D/tag(123): time\u0085",
+            "05-26 11:02:36.886 D/tag(123)\n(4): newline",
+        };
+
+        for (String line : lines) {
+            Matcher m = THREADTIME_LINE.matcher(line);
+            Matcher tm = TIME_LINE.matcher(line);
+            if (m.matches()) {
+                assertTrue(line, mTokenizer.tokenize(line));
+                assertEquals(line, Layout.THREADTIME, mTokenizer.getLayout());
+                assertEquals(line, Integer.parseInt(m.group(2)), mTokenizer.getPid());
+                assertEquals(line, Integer.parseInt(m.group(3)), mTokenizer.getTid());
+                assertEquals(line, m.group(4), mTokenizer.getLevel());
+                assertEquals(line, m.group(5), mTokenizer.getTag());
+                assertEquals(line, m.group(6), mTokenizer.getMessage());
+            } else if (tm.matches()) {
+                assertTrue(line, mTokenizer.tokenize(line));
+                assertEquals(line, Layout.TIME, mTokenizer.getLayout());
+                assertEquals(line, tm.group(2), mTokenizer.getLevel());
+                assertEquals(line, tm.group(3), mTokenizer.getTag());
+                assertEquals(line, Integer.parseInt(tm.group(4)), mTokenizer.getPid());
+                assertEquals(line, tm.group(5), mTokenizer.getMessage());
+            } else {
+                assertFalse(line, mTokenizer.tokenize(line));
+            }
+        }
+    }
+}
@@ -26,6 +26,10 @@ import junit.framework.TestCase;
 
 import org.json.JSONObject;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Unit tests for {@link LocationUsageRule}
  */
@@ -97,4 +101,18 @@ public class LocationUsageRuleTest extends TestCase {
         assertEquals(analysis.getString("LOCATION_USAGE_ANALYSIS"),
                 "No apps requested for frequent location updates.");
     }
+
+    /**
+     * Test that the rule requires the activity service section as well as the power sections.
+     */
+    public void testGetRequiredSections() {
+        Set<String> sections = new LocationUsageRule(mBugreport).getRequiredSections();
+        assertTrue(sections.contains("activity-service"));
+        assertTrue(sections.contains("dumpsys:batterystats"));
+        assertFalse(sections.contains("system-log"));
+
+        Set<String> powerSections = RuleEngine.getRequiredSections(RuleEngine.RuleType.POWER);
+        assertEquals(new HashSet<String>(Arrays.asList("activity-service",
+                "dumpsys:batterystats", "dumpsys:procstats", "dumpsys:wifi")), powerSections);
+    }
 }
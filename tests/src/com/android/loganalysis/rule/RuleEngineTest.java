@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.rule;
+
+import com.android.loganalysis.item.BugreportItem;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for {@link RuleEngine}
+ */
+public class RuleEngineTest extends TestCase {
+
+    /**
+     * A rule which waits for a latch, so that it can be made to run past the timeout.
+     */
+    private static class TestRule implements IRule {
+        private final String mName;
+        private final CountDownLatch mLatch;
+        private boolean mApplied = false;
+
+        public TestRule(String name, CountDownLatch latch) {
+            mName = name;
+            mLatch = latch;
+        }
+
+        @Override
+        public void applyRule() {
+            try {
+                mLatch.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            mApplied = true;
+        }
+
+        @Override
+        public JSONObject getAnalysis() {
+            JSONObject analysis = new JSONObject();
+            try {
+                analysis.put(mName, mApplied);
+            } catch (JSONException e) {
+                // do nothing
+            }
+            return analysis;
+        }
+    }
+
+    /**
+     * Test that rules applied concurrently are reported in order, with their runtimes.
+     */
+    public void testExecuteRules_concurrent() throws JSONException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CountDownLatch done = new CountDownLatch(0);
+            RuleEngine ruleEngine = new RuleEngine(new BugreportItem());
+            ruleEngine.addRule(new TestRule("A", done));
+            ruleEngine.addRule(new TestRule("B", done));
+            ruleEngine.setExecutor(executor);
+            ruleEngine.setRecordRuntimes(true);
+            ruleEngine.executeRules();
+
+            JSONArray analysis = ruleEngine.getAnalysis();
+            assertEquals(2, analysis.length());
+            assertTrue(analysis.getJSONObject(0).getBoolean("A"));
+            assertEquals("TestRule", analysis.getJSONObject(0).getString(RuleEngine.RULE));
+            assertTrue(analysis.getJSONObject(0).has(RuleEngine.RUNTIME_MS));
+            assertTrue(analysis.getJSONObject(1).getBoolean("B"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that a rule which does not finish before the timeout is reported as timed out, and the
+     * other rules are still reported.  The timeout is long enough for rule A to be scheduled and
+     * finish on a loaded machine, while rule B waits for a latch which is never released.
+     */
+    public void testExecuteRules_timeout() throws JSONException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            RuleEngine ruleEngine = new RuleEngine(new BugreportItem());
+            ruleEngine.addRule(new TestRule("A", new CountDownLatch(0)));
+            ruleEngine.addRule(new TestRule("B", new CountDownLatch(1)));
+            ruleEngine.setExecutor(executor);
+            ruleEngine.setTimeout(2000);
+            ruleEngine.executeRules();
+
+            JSONArray analysis = ruleEngine.getAnalysis();
+            assertEquals(2, analysis.length());
+            assertTrue(analysis.getJSONObject(0).getBoolean("A"));
+            assertFalse(analysis.getJSONObject(0).has(RuleEngine.RUNTIME_MS));
+            assertFalse(analysis.getJSONObject(1).has("B"));
+            assertTrue(analysis.getJSONObject(1).getBoolean(RuleEngine.TIMED_OUT));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that the analysis is unchanged when the rules are applied one at a time.
+     */
+    public void testExecuteRules_sequential() throws JSONException {
+        RuleEngine ruleEngine = new RuleEngine(new BugreportItem());
+        ruleEngine.addRule(new TestRule("A", new CountDownLatch(0)));
+        ruleEngine.executeRules();
+
+        JSONArray analysis = ruleEngine.getAnalysis();
+        assertEquals(1, analysis.length());
+        assertEquals(1, analysis.getJSONObject(0).length());
+        assertTrue(analysis.getJSONObject(0).getBoolean("A"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link CompositeKeyMap}.
+ */
+public class CompositeKeyMapTest extends TestCase {
+
+    /**
+     * Test that values are found by both parts of the key.
+     */
+    public void testPutGet() {
+        CompositeKeyMap<String> map = new CompositeKeyMap<String>();
+        assertNull(map.put(1, 2, "a"));
+        assertNull(map.put(1, 3, "b"));
+        assertNull(map.put(2, 2, "c"));
+        assertEquals("a", map.put(1, 2, "d"));
+
+        assertEquals(3, map.size());
+        assertEquals("d", map.get(1, 2));
+        assertEquals("b", map.get(1, 3));
+        assertEquals("c", map.get(2, 2));
+        assertNull(map.get(2, 3));
+    }
+
+    /**
+     * Test that a removed key is not found and the other keys still are.
+     */
+    public void testRemove() {
+        CompositeKeyMap<String> map = new CompositeKeyMap<String>();
+        map.put(1, 2, "a");
+        map.put(1, 3, "b");
+        assertEquals("a", map.remove(1, 2));
+        assertNull(map.remove(1, 2));
+        assertNull(map.get(1, 2));
+        assertEquals("b", map.get(1, 3));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1, 3));
+    }
+
+    /**
+     * Test that null values are rejected.
+     */
+    public void testPut_null() {
+        try {
+            new CompositeKeyMap<String>().put(1, 2, null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected because null marks an empty slot.
+        }
+    }
+
+    /**
+     * Test random puts and removes against a {@link HashMap}, so that the map is resized and the
+     * probe sequences are moved back when keys are removed.
+     */
+    public void testRandom() {
+        CompositeKeyMap<Integer> map = new CompositeKeyMap<Integer>();
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            long key = ((long) random.nextInt(64) << 32) | random.nextInt(16);
+            int id = random.nextInt(4);
+            String expectedKey = key + "|" + id;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(expectedKey), map.remove(key, id));
+            } else {
+                assertEquals(expected.put(expectedKey, i), map.put(key, id, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long pid = 0; pid < 64; pid++) {
+            for (int tid = 0; tid < 16; tid++) {
+                for (int id = 0; id < 4; id++) {
+                    long key = (pid << 32) | tid;
+                    assertEquals(expected.get(key + "|" + id), map.get(key, id));
+                }
+            }
+        }
+    }
+}
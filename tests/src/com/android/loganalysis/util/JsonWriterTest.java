@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import com.android.loganalysis.item.BugreportItem;
+import com.android.loganalysis.item.IItem;
+import com.android.loganalysis.item.JavaCrashItem;
+import com.android.loganalysis.item.LogcatItem;
+import com.android.loganalysis.item.MemInfoItem;
+import com.android.loganalysis.item.ProcrankItem;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for {@link JsonWriter}.
+ */
+public class JsonWriterTest extends TestCase {
+
+    /**
+     * Test that nested objects and arrays are separated correctly.
+     */
+    public void testStructure() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("a").value(1);
+        writer.name("b").beginArray().value("x").beginObject().endObject().beginArray().endArray()
+                .value(null).endArray();
+        writer.name("c").beginObject().name("d").value(true).endObject();
+        writer.endObject();
+        writer.flush();
+
+        assertEquals("{\"a\":1,\"b\":[\"x\",{},[],null],\"c\":{\"d\":true}}", out.toString());
+    }
+
+    /**
+     * Test that values are formatted the same as {@link JSONObject#toString()}.
+     */
+    public void testValue() throws IOException, JSONException {
+        Object[] values = {"quote\" slash/ \\ \n\u2028", 2.5, 3.0, 1L, -7, 1.5f, false,
+                new Date(0), Arrays.asList(1, "a"), new JSONObject().put("k", "v"),
+                new JSONArray().put(1)};
+        for (Object value : values) {
+            StringWriter out = new StringWriter();
+            new JsonWriter(out).beginObject().name("key").value(value).endObject();
+            assertEquals(new JSONObject().put("key", value).toString(), out.toString());
+        }
+
+        try {
+            new JsonWriter(new StringWriter()).value(Double.NaN);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected because NaN cannot be represented in JSON.
+        }
+        assertFalse(JsonWriter.isValid(Double.POSITIVE_INFINITY));
+        assertFalse(JsonWriter.isValid(Float.NaN));
+        assertTrue(JsonWriter.isValid(1.0));
+    }
+
+    /**
+     * Test that values rendered concurrently are written in order.
+     */
+    public void testRender() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            StringWriter out = new StringWriter();
+            JsonWriter writer = new JsonWriter(out);
+            writer.setExecutor(executor);
+
+            List<Future<String>> rendered = new ArrayList<Future<String>>();
+            for (int i = 0; i < 20; i++) {
+                final int value = i;
+                rendered.add(writer.render(new JsonWriter.Writable() {
+                    @Override
+                    public void writeJson(JsonWriter itemWriter) throws IOException {
+                        itemWriter.beginArray().value(value).endArray();
+                    }
+                }));
+            }
+            writer.beginArray();
+            for (Future<String> json : rendered) {
+                writer.renderedValue(json);
+            }
+            writer.endArray();
+
+            StringBuilder expected = new StringBuilder("[");
+            for (int i = 0; i < rendered.size(); i++) {
+                expected.append(i == 0 ? "" : ",").append("[").append(i).append("]");
+            }
+            assertEquals(expected.append("]").toString(), out.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that items write the same JSON as {@link IItem#toJson()}, with and without concurrent
+     * rendering.
+     */
+    public void testWriteItems() throws IOException, JSONException {
+        LogcatItem logcat = new LogcatItem();
+        logcat.setStartTime(new Date(0));
+        JavaCrashItem crash = new JavaCrashItem();
+        crash.setPid(123);
+        crash.setStack("java.lang.Exception\n\tat class.method(Class.java:1)");
+        logcat.addEvent(crash);
+
+        MemInfoItem memInfo = new MemInfoItem();
+        memInfo.put("MemFree", 1000L);
+        memInfo.setText("MemFree: 1000 kB");
+
+        ProcrankItem procrank = new ProcrankItem();
+        procrank.addProcrankLine(1, "init", 100, 50, 25, 10);
+        procrank.setText("text");
+
+        BugreportItem bugreport = new BugreportItem();
+        bugreport.setTime(new Date(0));
+        bugreport.setSystemLog(logcat);
+        bugreport.setMemInfo(memInfo);
+        bugreport.setProcrank(procrank);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (IItem item : Arrays.<IItem>asList(logcat, memInfo, procrank, bugreport)) {
+                assertSameJson(item.toJson(), write(item, null));
+                assertSameJson(item.toJson(), write(item, executor));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String write(IItem item, ExecutorService executor) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setExecutor(executor);
+        item.writeJson(writer);
+        writer.flush();
+        return out.toString();
+    }
+
+    /**
+     * Assert that JSON text is the same as a {@link JSONObject}, ignoring the order of keys.
+     */
+    private static void assertSameJson(JSONObject expected, String actual) throws JSONException {
+        assertEquals(toJava(new JSONObject(expected.toString())),
+                toJava(new JSONObject(actual)));
+    }
+
+    /**
+     * Convert parsed JSON into {@link Map}s and {@link List}s, which can be compared.
+     */
+    private static Object toJava(Object json) throws JSONException {
+        if (json instanceof JSONObject) {
+            JSONObject object = (JSONObject) json;
+            Map<String, Object> map = new HashMap<String, Object>();
+            Iterator<?> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = (String) keys.next();
+                map.put(key, toJava(object.get(key)));
+            }
+            return map;
+        } else if (json instanceof JSONArray) {
+            JSONArray array = (JSONArray) json;
+            List<Object> list = new ArrayList<Object>();
+            for (int i = 0; i < array.length(); i++) {
+                list.add(toJava(array.get(i)));
+            }
+            return list;
+        }
+        return json;
+    }
+}
@@ -54,4 +54,23 @@ public class LogPatternUtilTest extends TestCase {
         assertEquals("cat2", patternUtil.checkMessage("123", "E/tag1"));
         assertEquals("cat3", patternUtil.checkMessage("123", "E/tag2"));
     }
+
+    /**
+     * Test that patterns are checked in the order they were added.
+     */
+    public void testPatternOrder() {
+        LogPatternUtil patternUtil = new LogPatternUtil();
+        for (int i = 0; i < 20; i++) {
+            patternUtil.addPattern(Pattern.compile(".*abc.*"), "cat" + i);
+        }
+        assertEquals("cat0", patternUtil.checkMessage("xabcx"));
+
+        patternUtil = new LogPatternUtil();
+        patternUtil.addPattern(Pattern.compile("123"), "E/tag1", "cat1");
+        patternUtil.addPattern(Pattern.compile(".*"), "cat2");
+        assertEquals("cat2", patternUtil.checkMessage("123"));
+        patternUtil.addPattern(Pattern.compile("123"), "cat3");
+        assertEquals("cat1", patternUtil.checkMessage("123", "E/tag1"));
+        assertEquals("cat2", patternUtil.checkMessage("123", "E/tag2"));
+    }
 }
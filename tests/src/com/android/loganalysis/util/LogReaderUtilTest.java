@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Unit tests for {@link LogReaderUtil}.
+ */
+public class LogReaderUtilTest extends TestCase {
+    private File mFile = null;
+
+    @Override
+    public void tearDown() throws Exception {
+        if (mFile != null) {
+            mFile.delete();
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Test that a gzipped log is decompressed as it is read.
+     */
+    public void testOpenReader_gzip() throws IOException {
+        mFile = File.createTempFile("log", ".txt.gz");
+        GZIPOutputStream stream = new GZIPOutputStream(new FileOutputStream(mFile));
+        try {
+            write(stream, "line 1\nline 2\n");
+        } finally {
+            stream.close();
+        }
+
+        assertTrue(LogReaderUtil.isStream(mFile.getPath()));
+        assertEquals("line 1\nline 2\n", read(mFile.getPath()));
+    }
+
+    /**
+     * Test that the entry named by {@code main_entry.txt} is read from a bugreport zip.
+     */
+    public void testOpenReader_zipMainEntry() throws IOException {
+        mFile = File.createTempFile("bugreport", ".zip");
+        ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(mFile));
+        try {
+            addEntry(stream, "bugreport-old.txt", "old\n");
+            addEntry(stream, "main_entry.txt", "bugreport-new.txt");
+            addEntry(stream, "bugreport-new.txt", "new\n");
+            addEntry(stream, "FS/data/anr/traces.txt", "traces\n");
+        } finally {
+            stream.close();
+        }
+
+        assertTrue(LogReaderUtil.isStream(mFile.getPath()));
+        assertEquals("new\n", read(mFile.getPath()));
+    }
+
+    /**
+     * Test that the largest bugreport entry is read from a zip without {@code main_entry.txt}.
+     */
+    public void testOpenReader_zipWithoutMainEntry() throws IOException {
+        mFile = File.createTempFile("bugreport", ".zip");
+        ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(mFile));
+        try {
+            addEntry(stream, "version.txt", "1.0\n");
+            addEntry(stream, "bugreport-small.txt", "small\n");
+            addEntry(stream, "bugreport-large.txt", "large\nlarge\n");
+        } finally {
+            stream.close();
+        }
+
+        assertEquals("large\nlarge\n", read(mFile.getPath()));
+    }
+
+    /**
+     * Test that a zip without a bugreport and a missing file are rejected.
+     */
+    public void testOpenReader_invalid() throws IOException {
+        mFile = File.createTempFile("bugreport", ".zip");
+        ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(mFile));
+        try {
+            addEntry(stream, "version.txt", "1.0\n");
+        } finally {
+            stream.close();
+        }
+
+        try {
+            LogReaderUtil.openReader(mFile.getPath());
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected because the zip does not contain a bugreport.
+        }
+        try {
+            LogReaderUtil.openReader(mFile.getPath() + ".missing.gz");
+            fail("Expected FileNotFoundException");
+        } catch (FileNotFoundException e) {
+            // Expected because the file does not exist.
+        }
+    }
+
+    /**
+     * Test that plain files are not streams.
+     */
+    public void testIsStream() {
+        assertTrue(LogReaderUtil.isStream("-"));
+        assertFalse(LogReaderUtil.isStream("bugreport.txt"));
+    }
+
+    private static void addEntry(ZipOutputStream stream, String name, String contents)
+            throws IOException {
+        stream.putNextEntry(new ZipEntry(name));
+        write(stream, contents);
+        stream.closeEntry();
+    }
+
+    private static void write(OutputStream stream, String contents) throws IOException {
+        stream.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(String path) throws IOException {
+        BufferedReader reader = LogReaderUtil.openReader(path);
+        try {
+            StringBuilder contents = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                contents.append(line).append('\n');
+            }
+            return contents.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
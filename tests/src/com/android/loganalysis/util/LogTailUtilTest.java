@@ -63,4 +63,63 @@ public class LogTailUtilTest extends TestCase {
         // The first line should roll off the end of the buffer.
         assertEquals("", preambleUtil.getIdTail(1));
     }
+
+    /**
+     * Test that a snapshot is not changed by lines added after it was taken.
+     */
+    public void testSnapshot() {
+        LogTailUtil preambleUtil = new LogTailUtil(500, 2, 2);
+        preambleUtil.addLine(1, "line 1");
+        preambleUtil.addLine(2, "line 2");
+        CharSequence last = preambleUtil.getLastTailSnapshot();
+        CharSequence id = preambleUtil.getIdTailSnapshot(1);
+
+        preambleUtil.addLine(1, "line 3");
+        preambleUtil.addLine(2, "line 4");
+
+        assertEquals("line 1\nline 2", last.toString());
+        assertEquals(last.toString().length(), last.length());
+        assertEquals('\n', last.charAt(6));
+        assertEquals("line 1", id.toString());
+        assertEquals("line 3\nline 4", preambleUtil.getLastTail());
+    }
+
+    /**
+     * Test that id tails are correct after the ring buffer wraps around.
+     */
+    public void testIdTail_wrapAround() {
+        LogTailUtil preambleUtil = new LogTailUtil(4, 3, 3);
+        for (int i = 1; i <= 10; i++) {
+            preambleUtil.addLine(i % 2, "line " + i);
+        }
+        assertEquals("line 7\nline 8\nline 9\nline 10", preambleUtil.getLastTail(4));
+        assertEquals("line 7\nline 9", preambleUtil.getIdTail(1));
+        assertEquals("line 8\nline 10", preambleUtil.getIdTail(0));
+        assertEquals("", preambleUtil.getIdTail(2));
+    }
+
+    /**
+     * Test that ids whose lines have left the buffer are forgotten, so that the number of ids
+     * stays bounded when there are more distinct ids than lines in the buffer.
+     */
+    public void testIdTail_manyIds() {
+        LogTailUtil preambleUtil = new LogTailUtil(10, 3, 3);
+        for (int i = 0; i < 1000; i++) {
+            preambleUtil.addLine(i, "line " + i);
+            assertTrue(preambleUtil.getIdCount() <= 20);
+        }
+        assertEquals("line 999", preambleUtil.getIdTail(999));
+        assertEquals("line 990", preambleUtil.getIdTail(990));
+        assertEquals("", preambleUtil.getIdTail(989));
+    }
+
+    /**
+     * Test that a buffer with no lines returns empty tails.
+     */
+    public void testRingBufferSize_zero() {
+        LogTailUtil preambleUtil = new LogTailUtil(0, 3, 3);
+        preambleUtil.addLine(1, "line 1");
+        assertEquals("", preambleUtil.getLastTail());
+        assertEquals("", preambleUtil.getIdTail(1));
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link MappedLineReader}.
+ */
+public class MappedLineReaderTest extends TestCase {
+    private File mFile = null;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mFile = File.createTempFile("mapped_line_reader", ".txt");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that lines are split on all line terminators.
+     */
+    public void testReadLine() throws IOException {
+        write("line 1\nline 2\r\nline 3\rline 4\n\nline 6");
+        assertEquals(Arrays.asList("line 1", "line 2", "line 3", "line 4", "", "line 6"),
+                readLines(new MappedLineReader(mFile)));
+    }
+
+    /**
+     * Test that a trailing newline does not produce an extra line.
+     */
+    public void testReadLine_trailingNewline() throws IOException {
+        write("line 1\nline 2\n");
+        assertEquals(Arrays.asList("line 1", "line 2"), readLines(new MappedLineReader(mFile)));
+    }
+
+    /**
+     * Test that an empty file has no lines.
+     */
+    public void testReadLine_empty() throws IOException {
+        write("");
+        assertEquals(0, readLines(new MappedLineReader(mFile)).size());
+    }
+
+    /**
+     * Test that lines which are not ASCII are decoded as UTF-8.
+     */
+    public void testReadLine_utf8() throws IOException {
+        write("caf\u00e9\n\u65e5\u672c\nascii");
+        MappedLineReader reader = new MappedLineReader(mFile);
+        try {
+            CharSequence line = reader.readLine();
+            assertEquals(4, line.length());
+            assertEquals('\u00e9', line.charAt(3));
+            assertEquals("caf\u00e9", line.toString());
+            assertEquals("\u65e5\u672c", reader.readLine().toString());
+            line = reader.readLine();
+            assertEquals('a', line.charAt(0));
+            assertEquals("sc", line.subSequence(1, 3).toString());
+            assertNull(reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Test that lines which span multiple mapped windows are read correctly.
+     */
+    public void testReadLine_smallWindow() throws IOException {
+        write("a long line which does not fit\r\nshort\nanother long line\r\nend");
+        assertEquals(Arrays.asList("a long line which does not fit", "short", "another long line",
+                "end"), readLines(new MappedLineReader(mFile, 4)));
+    }
+
+    /**
+     * Test that the byte offsets of lines are returned.
+     */
+    public void testGetLineOffset() throws IOException {
+        write("ab\r\ncd\nef");
+        MappedLineReader reader = new MappedLineReader(mFile, 3);
+        try {
+            reader.readLine();
+            assertEquals(0, reader.getLineOffset());
+            assertEquals(4, reader.getPosition());
+            reader.readLine();
+            assertEquals(4, reader.getLineOffset());
+            reader.readLine();
+            assertEquals(7, reader.getLineOffset());
+            assertEquals(9, reader.getPosition());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Test that the reader can seek forwards and backwards, outside the mapped window.
+     */
+    public void testSeek() throws IOException {
+        write("line 1\nline 2\nline 3\n");
+        MappedLineReader reader = new MappedLineReader(mFile, 8);
+        try {
+            reader.seek(14);
+            assertEquals("line 3", reader.readLine().toString());
+            reader.seek(0);
+            assertEquals("line 1", reader.readLine().toString());
+            reader.seek(21);
+            assertNull(reader.readLine());
+        } finally {
+            reader.close();
+        }
+
+        try {
+            reader.seek(22);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected because the offset is past the end of the file.
+        }
+    }
+
+    private void write(String contents) throws IOException {
+        FileOutputStream stream = new FileOutputStream(mFile);
+        try {
+            stream.write(contents.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static List<String> readLines(MappedLineReader reader) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        try {
+            CharSequence line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line.toString());
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
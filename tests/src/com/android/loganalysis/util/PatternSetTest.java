@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+/**
+ * Unit tests for {@link PatternSet}.
+ */
+public class PatternSetTest extends TestCase {
+
+    /**
+     * Test that the required literal is the longest literal every match must contain.
+     */
+    public void testGetRequiredLiteral() {
+        assertEquals("scontext=", literal(".*avc:\\s.*scontext=\\w*:\\w*:([\\w\\s]*):\\w*\\s.*"));
+        assertEquals("allocation", literal(".*page\\s+allocation\\s+failure:\\s+order:(\\d+).*"));
+        assertEquals("Last boot reason: ", literal("Last boot reason: (?:PowerKey|normal)"));
+        assertEquals("PVR_K:(Fatal): Debug assertion failed! [",
+                literal("PVR_K:\\(Fatal\\): Debug assertion failed! \\[.*\\]"));
+        assertEquals("abc", literal("x?abcd*e"));
+        assertEquals("abcd", literal("x?abcd+e"));
+        assertEquals("xyz", literal("ab{2}xyz"));
+        assertEquals("bc", literal("[a]]bc"));
+        assertEquals("", literal("alpha|beta"));
+        assertEquals("", literal(".*"));
+        assertEquals("", RegexLiterals.getRequiredLiteral(
+                Pattern.compile("abc", Pattern.CASE_INSENSITIVE)));
+    }
+
+    /**
+     * Test that only patterns whose literals appear in the input are candidates.
+     */
+    public void testGetCandidates() {
+        PatternSet patterns = new PatternSet(Arrays.asList(
+                Pattern.compile(".*Killing '(.*)'.*"),
+                Pattern.compile(".*"),
+                Pattern.compile("Kernel panic.*"),
+                Pattern.compile(".*panic.*"),
+                Pattern.compile(".*nic.*")));
+
+        assertEquals(bits(1), patterns.getCandidates("nothing"));
+        assertEquals(bits(0, 1), patterns.getCandidates("lowmemorykiller: Killing 'a'"));
+        assertEquals(bits(1, 2, 3, 4), patterns.getCandidates("Kernel panic - not syncing"));
+        assertEquals(bits(1, 3, 4), patterns.getCandidates("pani\u00e9 panic"));
+        assertEquals(bits(1, 4), patterns.getCandidates("pa\u00e9nic"));
+    }
+
+    /**
+     * Test that the first matching pattern is returned in the order the patterns were given.
+     */
+    public void testMatches() {
+        PatternSet patterns = new PatternSet(Arrays.asList(
+                Pattern.compile("abc.*"),
+                Pattern.compile(".*def"),
+                Pattern.compile("abcdef"),
+                Pattern.compile("xyz")));
+
+        assertEquals(0, patterns.matches("abcdef"));
+        assertEquals(1, patterns.matches("def"));
+        assertEquals(3, patterns.matches("xyz"));
+        assertEquals(-1, patterns.matches("xyzdef0"));
+    }
+
+    private static String literal(String regex) {
+        return RegexLiterals.getRequiredLiteral(Pattern.compile(regex));
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -280,5 +280,60 @@ public class RegexTrieTest {
         assertTrue(map.containsKey(cp2));
         assertTrue(map.containsKey(cpOther));
     }
-}
 
+    /**
+     * Make sure that the literal prefix of a pattern is only what every match must start with.
+     */
+    @Test
+    public void testCompPattern_prefix() {
+        assertEquals("------ ", prefix("^------ (SYSTEM|MAIN) LOG .*"));
+        assertEquals("DUMP OF SERVICE ", prefix("DUMP OF SERVICE \\S+:"));
+        assertEquals("(a) ", prefix("\\(a\\) .*"));
+        assertEquals("ab", prefix("abc?d"));
+        assertEquals("abc", prefix("abc+d"));
+        assertEquals("ab", prefix("abc{2}"));
+        assertEquals("", prefix("alpha|beta"));
+        assertEquals("", prefix("[p]art1"));
+        assertEquals("", prefix("(?i)abc"));
+        assertEquals("", new CompPattern(Pattern.compile("abc", Pattern.CASE_INSENSITIVE))
+                .getPrefix());
+    }
+
+    /**
+     * Make sure that patterns are still tried in insertion order when some have literal prefixes
+     * and some do not.
+     */
+    @Test
+    public void testPrefixDispatch_order() {
+        mTrie.put(STORED_VAL + 1, "ab.*");
+        mTrie.put(STORED_VAL + 2, ".*");
+        mTrie.put(STORED_VAL + 3, "abc");
+        mTrie.put(STORED_VAL + 4, "x.*");
+
+        assertEquals((Integer) (STORED_VAL + 1), mTrie.retrieve("abc"));
+        assertEquals((Integer) (STORED_VAL + 2), mTrie.retrieve("xyz"));
+        assertEquals((Integer) (STORED_VAL + 2), mTrie.retrieve("a"));
+        assertEquals((Integer) (STORED_VAL + 2), mTrie.retrieve(""));
+    }
+
+    /**
+     * Make sure that strings which cannot match any prefix fall through to the wildcard.
+     */
+    @Test
+    public void testPrefixDispatch_wildcard() {
+        mTrie.put(STORED_VAL, "------ (.*) ------");
+        mTrie.put(STORED_VAL + 1, (String) null);
+
+        assertEquals(STORED_VAL, mTrie.retrieve("------ a ------"));
+        assertEquals((Integer) (STORED_VAL + 1), mTrie.retrieve("------ a"));
+        assertEquals((Integer) (STORED_VAL + 1), mTrie.retrieve("other"));
+        assertEquals((Integer) (STORED_VAL + 1), mTrie.retrieve(""));
+
+        mTrie.clear();
+        assertNull(mTrie.retrieve("------ a ------"));
+    }
+
+    private static String prefix(String regex) {
+        return new CompPattern(Pattern.compile(regex)).getPrefix();
+    }
+}
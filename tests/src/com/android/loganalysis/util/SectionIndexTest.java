@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Unit tests for {@link SectionIndex}.
+ */
+public class SectionIndexTest extends TestCase {
+    private static final SectionIndex.HeaderFilter FILTER = new SectionIndex.HeaderFilter() {
+        @Override
+        public boolean isHeader(CharSequence line) {
+            return line.toString().startsWith("--- ");
+        }
+    };
+
+    private File mFile = null;
+    private File mIndexFile = null;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mFile = File.createTempFile("section_index", ".txt");
+        mIndexFile = SectionIndex.getIndexFile(mFile);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        mFile.delete();
+        mIndexFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test that the offsets, lengths and hashes of the sections are found.
+     */
+    public void testBuild() throws IOException {
+        write("header\n--- A\r\na\n--- B\nb\nb\n");
+        SectionIndex index = SectionIndex.build(mFile, FILTER);
+
+        assertEquals(7, index.getPreambleLength());
+        List<SectionIndex.Section> sections = index.getSections();
+        assertEquals(2, sections.size());
+        assertEquals("--- A", sections.get(0).getHeader());
+        assertEquals(7, sections.get(0).getOffset());
+        assertEquals(9, sections.get(0).getLength());
+        assertEquals(hash("--- A\r\na\n"), sections.get(0).getHash());
+        assertEquals("--- B", sections.get(1).getHeader());
+        assertEquals(16, sections.get(1).getOffset());
+        assertEquals(10, sections.get(1).getLength());
+        assertEquals(hash("--- B\nb\nb\n"), sections.get(1).getHash());
+        assertTrue(index.isValidFor(mFile));
+    }
+
+    /**
+     * Test that a file without sections is all preamble.
+     */
+    public void testBuild_noSections() throws IOException {
+        write("header\n");
+        SectionIndex index = SectionIndex.build(mFile, FILTER);
+        assertEquals(7, index.getPreambleLength());
+        assertTrue(index.getSections().isEmpty());
+    }
+
+    /**
+     * Test that a saved index is loaded with the same sections.
+     */
+    public void testSaveLoad() throws IOException {
+        write("--- A with spaces\na\n--- B\n");
+        SectionIndex index = SectionIndex.build(mFile, FILTER);
+        index.save(mIndexFile);
+
+        SectionIndex loaded = SectionIndex.load(mIndexFile);
+        assertTrue(loaded.isValidFor(mFile));
+        assertEquals(index.getSections().size(), loaded.getSections().size());
+        for (int i = 0; i < index.getSections().size(); i++) {
+            SectionIndex.Section expected = index.getSections().get(i);
+            SectionIndex.Section actual = loaded.getSections().get(i);
+            assertEquals(expected.getHeader(), actual.getHeader());
+            assertEquals(expected.getOffset(), actual.getOffset());
+            assertEquals(expected.getLength(), actual.getLength());
+            assertEquals(expected.getHash(), actual.getHash());
+        }
+    }
+
+    /**
+     * Test that a section which has changed without changing the length of the file is found by
+     * its hash.
+     */
+    public void testVerify() throws IOException {
+        write("--- A\na\n--- B\nb\n");
+        SectionIndex index = SectionIndex.build(mFile, FILTER);
+        write("--- A\na\n--- B\nc\n");
+
+        MappedLineReader reader = new MappedLineReader(mFile);
+        try {
+            index.verify(reader, index.getSections().get(0));
+            try {
+                index.verify(reader, index.getSections().get(1));
+                fail("Expected StaleIndexException");
+            } catch (SectionIndex.StaleIndexException e) {
+                // Expected because section B has changed.
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Test that an index is not valid for a file which has changed.
+     */
+    public void testIsValidFor_changed() throws IOException {
+        write("--- A\na\n");
+        SectionIndex index = SectionIndex.build(mFile, FILTER);
+        write("--- A\nab\n");
+        assertFalse(index.isValidFor(mFile));
+    }
+
+    /**
+     * Test that a file which is not an index is rejected.
+     */
+    public void testLoad_invalid() throws IOException {
+        FileOutputStream stream = new FileOutputStream(mIndexFile);
+        try {
+            stream.write("not an index\n".getBytes(StandardCharsets.UTF_8));
+        } finally {
+            stream.close();
+        }
+
+        try {
+            SectionIndex.load(mIndexFile);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected because the file is not an index.
+        }
+    }
+
+    /**
+     * Test that saved indexes and their temporary files are recognized.
+     */
+    public void testIsIndexFile() {
+        assertTrue(SectionIndex.isIndexFile(mIndexFile));
+        assertTrue(SectionIndex.isIndexFile(new File("bugreport.txt.idx1234.tmp")));
+        assertFalse(SectionIndex.isIndexFile(mFile));
+        assertFalse(SectionIndex.isIndexFile(new File("bugreport.tmp")));
+    }
+
+    private void write(String contents) throws IOException {
+        FileOutputStream stream = new FileOutputStream(mFile);
+        try {
+            stream.write(contents.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static long hash(String contents) {
+        CRC32 crc = new CRC32();
+        crc.update(contents.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
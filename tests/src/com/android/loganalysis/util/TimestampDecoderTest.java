@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.loganalysis.util;
+
+import junit.framework.TestCase;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * Unit tests for {@link TimestampDecoder}.
+ */
+public class TimestampDecoderTest extends TestCase {
+
+    /**
+     * Test that timestamps are decoded the same as {@link SimpleDateFormat}, including when the
+     * cached minute changes and when fields are out of range.
+     */
+    public void testDecode() throws ParseException {
+        TimestampDecoder decoder = new TimestampDecoder();
+        String[] timestamps = {
+            "2012-04-26 12:13:14.000",
+            "2012-04-26 12:13:59.999",
+            "2012-04-26 12:14:00.001",
+            "2012-04-26 12:13:14.500",
+            "2012-12-31 23:59:59.999",
+            "2013-01-01 00:00:00.000",
+            "2012-02-30 24:60:61.000",
+            "2012-13-00 00:00:99.999",
+            "2012-03-11 02:30:00.000",
+            "2012-11-04 01:30:00.000",
+        };
+        for (String timestamp : timestamps) {
+            assertEquals(timestamp, parse("yyyy-MM-dd HH:mm:ss.SSS", timestamp),
+                    decoder.decode(timestamp));
+        }
+        assertEquals(parse("yyyy-MM-dd HH:mm:ss", "2012-04-26 12:13:14"),
+                decoder.decode("2012-04-26 12:13:14"));
+    }
+
+    /**
+     * Test decoding timestamps without a year.
+     */
+    public void testDecodeMonthDay() throws ParseException {
+        TimestampDecoder decoder = new TimestampDecoder();
+        assertEquals(parse("yyyy-MM-dd HH:mm:ss.SSS", "2012-04-26 12:13:14.015"),
+                decoder.decodeMonthDay(2012, "04-26 12:13:14.015  1  2 I tag: msg", 0));
+        assertEquals(parse("yyyy-MM-dd HH:mm:ss.SSS", "2011-04-26 12:13:14.015"),
+                decoder.decodeMonthDay(2011, "x 04-26 12:13:14.015", 2));
+    }
+
+    /**
+     * Test that text which is not a timestamp is not decoded.
+     */
+    public void testDecode_invalid() {
+        TimestampDecoder decoder = new TimestampDecoder();
+        assertEquals(TimestampDecoder.NO_TIME, decoder.decode(""));
+        assertEquals(TimestampDecoder.NO_TIME, decoder.decode("2012-04-26 12:13"));
+        assertEquals(TimestampDecoder.NO_TIME, decoder.decode("2012-04-26 12:13:14,000"));
+        assertEquals(TimestampDecoder.NO_TIME, decoder.decode("2012-04-26 12:13:14.00"));
+        assertEquals(TimestampDecoder.NO_TIME, decoder.decode("2012-4-26 12:13:14"));
+        assertEquals(TimestampDecoder.NO_TIME, decoder.decodeMonthDay(2012, "04-26 12:13:14", 0));
+        assertEquals(TimestampDecoder.NO_TIME,
+                decoder.decodeMonthDay(2012, "04-26 12:13:14:015", 0));
+        assertNull(TimestampDecoder.toDate(TimestampDecoder.NO_TIME));
+    }
+
+    private static long parse(String format, String timestamp) throws ParseException {
+        return new SimpleDateFormat(format).parse(timestamp).getTime();
+    }
+}